@@ -8,8 +8,12 @@ import java.util.Arrays;
 import org.omg.Messaging.SyncScopeHelper;
 
 import algorithm.ann.MultiLabelAnn;
+import algorithm.density.ApproximateDensityPeaks;
+import algorithm.density.DensityPeaks;
+import algorithm.density.DensitySweep;
+import algorithm.density.RepresentativenessCache;
 import data.*;
-import util.SimpleTools;
+import util.IndexSorter;
 
 /**
  * Cost-sensitive multi-label active learning.
@@ -58,6 +62,51 @@ public class Cmale {
 	 */
 	int[] representativenessRankArray;
 
+	/**
+	 * How pairwise distances are kept while computing representativeness, e.g.,
+	 * DistanceEngine.HEAP_CACHE to compute each distance only once.
+	 */
+	int distanceCacheMode = DistanceEngine.NO_CACHE;
+
+	/**
+	 * The number of threads for computing representativeness. Non-positive for
+	 * all processors.
+	 */
+	int numThreads = 0;
+
+	/**
+	 * Neighbors beyond densityCutoffRatio * dc are ignored in density.
+	 * Non-positive for the exact density.
+	 */
+	double densityCutoffRatio = 0;
+
+	/**
+	 * The number of landmarks for approximate representativeness. Non-positive
+	 * for the exact one.
+	 */
+	int numApproximateLandmarks = 0;
+
+	/**
+	 * The number of probed cells for approximate representativeness.
+	 */
+	int numApproximateProbes = 4;
+
+	/**
+	 * Reuse representativeness of earlier runs on the same data and dc or not.
+	 */
+	boolean useRepresentativenessCache = true;
+
+	/**
+	 * The mini-batch size of the network. 1 for per-instance SGD.
+	 */
+	int annBatchSize = 1;
+
+	/**
+	 * The number of threads of data-parallel mini-batch training.
+	 * Non-positive for all processors.
+	 */
+	int annNumThreads = 1;
+
 	/**
 	 ********************** 
 	 * The first constructor. Data and labels are stored in one file.
@@ -116,8 +165,15 @@ public class Cmale {
 	public void initializeMultiLabelAnn(int[] paraFullConnectLayerNodes,
 			int[] paraParallelLayerNodes, double paraLearningRate, double paraMobp,
 			String paraActivators) {
+		if (multiLabelAnn != null) {
+			multiLabelAnn.shutdown();
+		} // Of if
 		multiLabelAnn = new MultiLabelAnn(dataset, paraFullConnectLayerNodes,
 				paraParallelLayerNodes, paraLearningRate, paraMobp, paraActivators);
+		multiLabelAnn.setBatchSize(annBatchSize);
+		if (annNumThreads != 1) {
+			multiLabelAnn.setNumThreads(annNumThreads);
+		} // Of if
 	}// Of initializeMultiLabelAnn
 
 	/**
@@ -217,58 +273,177 @@ public class Cmale {
 
 	/**
 	 ********************** 
-	 * Compute instance representativeness.
+	 * Setter.
+	 * 
+	 * @param paraDistanceCacheMode
+	 *            DistanceEngine.NO_CACHE, HEAP_CACHE or MAPPED_CACHE.
+	 ********************** 
+	 */
+	public void setDistanceCacheMode(int paraDistanceCacheMode) {
+		distanceCacheMode = paraDistanceCacheMode;
+	}// Of setDistanceCacheMode
+
+	/**
+	 ********************** 
+	 * Setter.
+	 * 
+	 * @param paraNumThreads
+	 *            The number of threads. Non-positive for all processors.
+	 ********************** 
+	 */
+	public void setNumThreads(int paraNumThreads) {
+		numThreads = paraNumThreads;
+	}// Of setNumThreads
+
+	/**
+	 ********************** 
+	 * Setter.
+	 * 
+	 * @param paraDensityCutoffRatio
+	 *            Neighbors beyond paraDensityCutoffRatio * dc are ignored in
+	 *            density, e.g., 3. Non-positive for the exact density. It is
+	 *            ignored with approximation or sparse data.
+	 ********************** 
+	 */
+	public void setDensityCutoffRatio(double paraDensityCutoffRatio) {
+		densityCutoffRatio = paraDensityCutoffRatio;
+	}// Of setDensityCutoffRatio
+
+	/**
+	 ********************** 
+	 * Setter. See ApproximateDensityPeaks.
+	 * 
+	 * @param paraNumLandmarks
+	 *            The number of landmarks, e.g., 2 * sqrt(numInstances).
+	 *            Non-positive for the exact representativeness.
+	 * @param paraNumProbes
+	 *            The number of probed cells, the accuracy/speed knob, e.g., 4.
+	 ********************** 
+	 */
+	public void setApproximation(int paraNumLandmarks, int paraNumProbes) {
+		numApproximateLandmarks = paraNumLandmarks;
+		numApproximateProbes = paraNumProbes;
+	}// Of setApproximation
+
+	/**
+	 ********************** 
+	 * Setter.
+	 * 
+	 * @param paraUseRepresentativenessCache
+	 *            Reuse representativeness of earlier runs on the same data and
+	 *            dc or not.
+	 ********************** 
+	 */
+	public void setUseRepresentativenessCache(boolean paraUseRepresentativenessCache) {
+		useRepresentativenessCache = paraUseRepresentativenessCache;
+	}// Of setUseRepresentativenessCache
+
+	/**
+	 ********************** 
+	 * Setter. It takes effect on the next initializeMultiLabelAnn.
+	 * 
+	 * @param paraAnnBatchSize
+	 *            The mini-batch size of the network, e.g., 32. 1 for
+	 *            per-instance SGD.
+	 ********************** 
+	 */
+	public void setAnnBatchSize(int paraAnnBatchSize) {
+		annBatchSize = paraAnnBatchSize;
+	}// Of setAnnBatchSize
+
+	/**
+	 ********************** 
+	 * Setter. It takes effect on the next initializeMultiLabelAnn, and only
+	 * with mini-batches.
+	 * 
+	 * @param paraAnnNumThreads
+	 *            The number of threads of the network training. Non-positive
+	 *            for all processors.
+	 ********************** 
+	 */
+	public void setAnnNumThreads(int paraAnnNumThreads) {
+		annNumThreads = paraAnnNumThreads;
+	}// Of setAnnNumThreads
+
+	/**
+	 ********************** 
+	 * Compute instance representativeness. Row blocks run in parallel, and the
+	 * result does not depend on the number of threads. Results are cached by
+	 * RepresentativenessCache.
 	 * 
 	 * @param paraDc
 	 *            The dc ratio.
 	 ********************** 
 	 */
 	public void computeInstanceRepresentativeness(double paraDc) {
-		// Step 1. Calculate density using Gaussian kernel.
-		double[] tempDensityArray = new double[numInstances];
-		double tempDistance = 0;
-		for (int i = 0; i < numInstances; i++) {
-			tempDensityArray[i] = 0;
-			for (int j = 0; j < numInstances; j++) {
-				tempDistance = dataset.distance(i, j);
-				tempDensityArray[i] += Math.exp(-tempDistance * tempDistance / paraDc / paraDc);
-			} // Of for j
-		} // Of for i
-
-		// Step 2. Calculate distance to its master.
-		int[] tempMasterArray = new int[numInstances];
-		double tempNewDistance = 0;
-		double[] tempDistanceToMasterArray = new double[numInstances];
-		for (int i = 0; i < numInstances; i++) {
-			tempMasterArray[i] = -1;
-			double tempNearestDistance = 100000;
-			for (int j = 0; j < numInstances; j++) {
-				if (tempDensityArray[j] <= tempDensityArray[i]) {
-					continue;
-				} // Of if
+		// Step 1. Try the cache.
+		String tempMethod;
+		if (numApproximateLandmarks > 0) {
+			tempMethod = "approx" + numApproximateLandmarks + "x" + numApproximateProbes;
+		} else if (densityCutoffRatio > 0 && !dataset.isSparse()) {
+			tempMethod = "exact-c" + distanceCacheMode + "-r" + densityCutoffRatio;
+		} else {
+			tempMethod = "exact-c" + distanceCacheMode;
+		} // Of if
+		if (useRepresentativenessCache) {
+			RepresentativenessCache.Result tempResult = RepresentativenessCache.lookup(dataset,
+					paraDc, tempMethod);
+			if (tempResult != null) {
+				representativenessArray = tempResult.representativenessArray;
+				representativenessRankArray = tempResult.representativenessRankArray;
+				return;
+			} // Of if
+		} // Of if
 
-				// Is this one closer?
-				tempNewDistance = dataset.distance(i, j);
-				if (tempNewDistance < tempNearestDistance) {
-					tempNearestDistance = tempNewDistance;
-					tempDistanceToMasterArray[i] = tempNewDistance;
-					tempMasterArray[i] = j;
-				} // of if
-			} // Of for j
-		} // Of for i
-
-		// Step 3. Representativeness.
-		for (int i = 0; i < numInstances; i++) {
-			representativenessArray[i] = tempDensityArray[i] * tempDistanceToMasterArray[i];
-		} // Of for i
-
-		// Step 4. Sort instances according to representativeness.
-		representativenessRankArray = SimpleTools.mergeSortToIndices(representativenessArray);
+		// Step 2. Density, masters and representativeness.
+		DensityPeaks tempPeaks;
+		boolean tempTruncated = false;
+		if (numApproximateLandmarks > 0) {
+			tempPeaks = new ApproximateDensityPeaks(dataset, numThreads, numApproximateLandmarks,
+					numApproximateProbes, 0);
+		} else {
+			tempPeaks = new DensityPeaks(dataset, distanceCacheMode, numThreads);
+			tempPeaks.setCutoffRatio(densityCutoffRatio);
+			tempTruncated = densityCutoffRatio > 0 && !dataset.isSparse();
+		} // Of if
+		tempPeaks.compute(paraDc);
+		representativenessArray = tempPeaks.getRepresentativenessArray();
+		if (tempTruncated) {
+			System.out.println("Density error bound: " + tempPeaks.getDensityErrorBound()
+					+ " (relative " + tempPeaks.getRelativeDensityErrorBound() + ")");
+		} // Of if
+
+		// Step 3. Sort instances according to representativeness.
+		representativenessRankArray = IndexSorter.parallelSortDescending(representativenessArray,
+				numThreads);
+		if (useRepresentativenessCache) {
+			RepresentativenessCache.store(dataset, paraDc, tempMethod, representativenessArray,
+					representativenessRankArray);
+		} // Of if
 	}// Of computeInstanceRepresentativeness
 
 	/**
 	 ********************** 
-	 * Learn the classifier
+	 * Compute representativeness rankings for a number of dc values in one
+	 * pass, e.g., for tuning dc. The current rankings are unchanged. The
+	 * density is always exact: the density cutoff and the approximation are
+	 * ignored. Hence each ranking is the same as that of
+	 * computeInstanceRepresentativeness only when neither is set.
+	 * 
+	 * @param paraDcArray
+	 *            The dc values.
+	 * @return One ranking per dc, instances in descending representativeness.
+	 ********************** 
+	 */
+	public int[][] computeRepresentativenessRankings(double[] paraDcArray) {
+		DensitySweep tempSweep = new DensitySweep(dataset, distanceCacheMode, numThreads);
+		return tempSweep.compute(paraDcArray);
+	}// Of computeRepresentativenessRankings
+
+	/**
+	 ********************** 
+	 * Learn the classifier. The thread pools of the network are released at
+	 * the end.
 	 * 
 	 * @param paraColdStartRounds
 	 *            Cold start rounds not considering label uncertainty.
@@ -295,63 +470,69 @@ public class Cmale {
 			System.exit(0);
 		} // Of if
 
-		// Step 2. Calculate the representativeness of each instance.
-		computeInstanceRepresentativeness(paraDc);
-
-		// Step 3. Cold start stage. Only consider instance representativeness
-		// and label scarcity/diversity
-		int[] tempLabelIndices = new int[paraLabelBatch];
-
-		outputFile.writeBytes("Here is the whole process of learn(): \r\n");
-		outputFile.writeBytes("Cold start: \r\n");
-		// Query the scare k labels of most representative p instances.
-		for (int i = 0; i < paraColdStartRounds; i++) {
-			tempLabelIndices = dataset.getScareLabels(paraLabelBatch);
-			dataset.queryLabels(representativenessRankArray[i], tempLabelIndices);
-			outputFile.writeBytes("Query instance #" + representativenessRankArray[i]
-					+ " with labels #" + Arrays.toString(tempLabelIndices) + "\r\n");
-		} // Of for i
-
-		// Pre-train an ANN. At least 1000 rounds.
-		boundedTrain(1000, paraPretrainRounds, 200, paraAccuracyThreshold);
-
-		// Step 4. Regular learning.
-		// Now only one instance at a time.
-		//multiLabelAnn.setLearningRate(0.02);
-		int[] tempInstanceIndices = new int[1];
-		outputFile.writeBytes("Query and learning process: \r\n");
-		// int[] tempIndices;
-		int[][] tempInstanceLabelIndicesMatrix;
-		int tempInstanceIndex;
-		for (int q = 0; q < paraNumAdditionalQueries; q++) {
-			// tempIndices =
-			// multiLabelAnn.getMostUncertainLabelIndices(paraLabelBatchSize);
-			// for (int j = 0; j < tempLabelIndices.length; j++) {
-			// tempLabelIndices[j] = tempIndices[j + 1];
-			// } // Of for j
-			tempInstanceLabelIndicesMatrix = multiLabelAnn.getUncertainLabelBatch(paraInstanceBatch,
-					paraLabelBatch);
-			for (int i = 0; i < paraInstanceBatch; i++) {
-				tempInstanceIndex = tempInstanceLabelIndicesMatrix[i][0];
-				for (int j = 0; j < paraLabelBatch; j++) {
-					tempLabelIndices[j] = tempInstanceLabelIndicesMatrix[i][j + 1];
-				} // Of for j
-
-				dataset.queryLabels(tempInstanceIndex, tempLabelIndices);
-				outputFile.writeBytes("Query instance #" + tempInstanceIndex + " with labels #"
-						+ Arrays.toString(tempLabelIndices) + "\r\n");
+		try {
+			// Step 2. Calculate the representativeness of each instance.
+			computeInstanceRepresentativeness(paraDc);
+
+			// Step 3. Cold start stage. Only consider instance representativeness
+			// and label scarcity/diversity
+			int[] tempLabelIndices = new int[paraLabelBatch];
+
+			outputFile.writeBytes("Here is the whole process of learn(): \r\n");
+			outputFile.writeBytes("Cold start: \r\n");
+			// Query the scare k labels of most representative p instances.
+			for (int i = 0; i < paraColdStartRounds; i++) {
+				tempLabelIndices = dataset.getScareLabels(paraLabelBatch);
+				dataset.queryLabels(representativenessRankArray[i], tempLabelIndices);
+				outputFile.writeBytes("Query instance #" + representativenessRankArray[i]
+						+ " with labels #" + Arrays.toString(tempLabelIndices) + "\r\n");
 			} // Of for i
 
-			// tempInstanceIndices[0] = tempIndices[0];
-			boundedEmphasizedTrain(5000, 200, 10, tempInstanceIndices, paraAccuracyThreshold);
-		} // Of for q
-
-		outputSummary();
+			// Pre-train an ANN. At least 1000 rounds.
+			boundedTrain(1000, paraPretrainRounds, 200, paraAccuracyThreshold);
+
+			// Step 4. Regular learning.
+			// Now only one instance at a time.
+			//multiLabelAnn.setLearningRate(0.02);
+			int[] tempInstanceIndices = new int[1];
+			outputFile.writeBytes("Query and learning process: \r\n");
+			// int[] tempIndices;
+			int[][] tempInstanceLabelIndicesMatrix;
+			int tempInstanceIndex;
+			for (int q = 0; q < paraNumAdditionalQueries; q++) {
+				// tempIndices =
+				// multiLabelAnn.getMostUncertainLabelIndices(paraLabelBatchSize);
+				// for (int j = 0; j < tempLabelIndices.length; j++) {
+				// tempLabelIndices[j] = tempIndices[j + 1];
+				// } // Of for j
+				tempInstanceLabelIndicesMatrix = multiLabelAnn.getUncertainLabelBatch(
+						paraInstanceBatch, paraLabelBatch);
+				for (int i = 0; i < paraInstanceBatch; i++) {
+					tempInstanceIndex = tempInstanceLabelIndicesMatrix[i][0];
+					for (int j = 0; j < paraLabelBatch; j++) {
+						tempLabelIndices[j] = tempInstanceLabelIndicesMatrix[i][j + 1];
+					} // Of for j
+
+					dataset.queryLabels(tempInstanceIndex, tempLabelIndices);
+					outputFile.writeBytes("Query instance #" + tempInstanceIndex + " with labels #"
+							+ Arrays.toString(tempLabelIndices) + "\r\n");
+				} // Of for i
+
+				// tempInstanceIndices[0] = tempIndices[0];
+				boundedEmphasizedTrain(5000, 200, 10, tempInstanceIndices, paraAccuracyThreshold);
+			} // Of for q
+
+			outputSummary();
+		} finally {
+			// Release the thread pools of the network.
+			multiLabelAnn.shutdown();
+		} // Of try
 	}// Of learn
 
 	/**
 	 ********************** 
-	 * Learn with randomly selected labels.
+	 * Learn with randomly selected labels. The thread pools of the network are
+	 * released at the end.
 	 * 
 	 * @param paraNumQueriedLabels
 	 *            The number of queried labels.
@@ -368,15 +549,20 @@ public class Cmale {
 			double paraAccuracyThreshold) throws IOException {
 		dataset.reset();
 
-		// Step 1. randomly select labels to query.
-		// Here I present a trick converting the matrix to an array to assure
-		// the number of queries.
-		dataset.randomQuery(paraNumQueriedLabels);
-
-		// Step 2. Train an ANN.
-		boundedTrain(1000, paraTrainRounds, 200, paraAccuracyThreshold);
-
-		outputSummary();
+		try {
+			// Step 1. randomly select labels to query.
+			// Here I present a trick converting the matrix to an array to assure
+			// the number of queries.
+			dataset.randomQuery(paraNumQueriedLabels);
+
+			// Step 2. Train an ANN.
+			boundedTrain(1000, paraTrainRounds, 200, paraAccuracyThreshold);
+
+			outputSummary();
+		} finally {
+			// Release the thread pools of the network.
+			multiLabelAnn.shutdown();
+		} // Of try
 	}// Of randomSelectionLearn
 
 	/**
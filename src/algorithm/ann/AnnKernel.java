@@ -0,0 +1,179 @@
+package algorithm.ann;
+
+/**
+ * The inner loops of the ANN layers on flat weight arrays: the dot product of
+ * forward prediction, and the fused error, momentum and weight update of back
+ * propagation. This is the plain scalar implementation, and subclasses may
+ * provide faster ones. Kernels have no state, hence they can be shared.
+ * 
+ * @author Fan Min. minfanphd@163.com, minfan@swpu.edu.cn.
+ */
+public class AnnKernel {
+	/**
+	 * The scalar kernel. It keeps the summation order of the original loops.
+	 */
+	public static final char SCALAR = 's';
+
+	/**
+	 * The unrolled kernel with independent accumulators.
+	 */
+	public static final char UNROLLED = 'u';
+
+	/**
+	 * The shared scalar kernel.
+	 */
+	static final AnnKernel SCALAR_KERNEL = new AnnKernel();
+
+	/**
+	 * The shared unrolled kernel.
+	 */
+	static final AnnKernel UNROLLED_KERNEL = new UnrolledAnnKernel();
+
+	/**
+	 ********************
+	 * Get a kernel.
+	 * 
+	 * @param paraType
+	 *            SCALAR or UNROLLED.
+	 * @return The kernel.
+	 ********************
+	 */
+	public static AnnKernel getKernel(char paraType) {
+		switch (paraType) {
+		case SCALAR:
+			return SCALAR_KERNEL;
+		case UNROLLED:
+			return UNROLLED_KERNEL;
+		default:
+			throw new IllegalArgumentException("Unsupported kernel: " + paraType);
+		}// Of switch
+	}// Of getKernel
+
+	/**
+	 ********************
+	 * The dot product of a weight row and an input.
+	 * 
+	 * @param paraWeights
+	 *            The weights.
+	 * @param paraWeightStart
+	 *            The start position of the row.
+	 * @param paraInput
+	 *            The input.
+	 * @param paraInputStart
+	 *            The start position of the input.
+	 * @param paraLength
+	 *            The length.
+	 * @param paraInitial
+	 *            The initial value of the sum, e.g., the bias.
+	 * @return The sum.
+	 ********************
+	 */
+	public double dot(double[] paraWeights, int paraWeightStart, double[] paraInput,
+			int paraInputStart, int paraLength, double paraInitial) {
+		double resultSum = paraInitial;
+		for (int i = 0; i < paraLength; i++) {
+			resultSum += paraInput[paraInputStart + i] * paraWeights[paraWeightStart + i];
+		} // Of for i
+		return resultSum;
+	}// Of dot
+
+	/**
+	 ********************
+	 * Back propagate the error of one output through its weight row, and update
+	 * the row with momentum. The error of each input uses the weight before its
+	 * update.
+	 * 
+	 * @param paraWeights
+	 *            The weights.
+	 * @param paraDeltaWeights
+	 *            The delta weights with the same layout.
+	 * @param paraWeightStart
+	 *            The start position of the row.
+	 * @param paraInput
+	 *            The input.
+	 * @param paraInputErrors
+	 *            The errors of the input to accumulate, with the same layout as
+	 *            the input.
+	 * @param paraInputStart
+	 *            The start position of the input.
+	 * @param paraLength
+	 *            The length.
+	 * @param paraError
+	 *            The adjusted error of the output.
+	 * @param paraStep
+	 *            The learning rate times the error.
+	 * @param paraMobp
+	 *            The momentum coefficient.
+	 ********************
+	 */
+	public void update(double[] paraWeights, double[] paraDeltaWeights, int paraWeightStart,
+			double[] paraInput, double[] paraInputErrors, int paraInputStart, int paraLength,
+			double paraError, double paraStep, double paraMobp) {
+		int tempIndex;
+		for (int i = 0; i < paraLength; i++) {
+			tempIndex = paraWeightStart + i;
+			paraInputErrors[paraInputStart + i] += paraError * paraWeights[tempIndex];
+			paraDeltaWeights[tempIndex] = paraMobp * paraDeltaWeights[tempIndex]
+					+ paraStep * paraInput[paraInputStart + i];
+			paraWeights[tempIndex] += paraDeltaWeights[tempIndex];
+		} // Of for i
+	}// Of update
+
+	/**
+	 ********************
+	 * Add a scaled vector to another one, y += a * x.
+	 * 
+	 * @param paraY
+	 *            The array to change.
+	 * @param paraYStart
+	 *            The start position of y.
+	 * @param paraA
+	 *            The scale.
+	 * @param paraX
+	 *            The array to add.
+	 * @param paraXStart
+	 *            The start position of x.
+	 * @param paraLength
+	 *            The length.
+	 ********************
+	 */
+	public void axpy(double[] paraY, int paraYStart, double paraA, double[] paraX,
+			int paraXStart, int paraLength) {
+		for (int i = 0; i < paraLength; i++) {
+			paraY[paraYStart + i] += paraA * paraX[paraXStart + i];
+		} // Of for i
+	}// Of axpy
+
+	/**
+	 ********************
+	 * Update the weights with momentum from gradients.
+	 * 
+	 * @param paraWeights
+	 *            The weights.
+	 * @param paraDeltaWeights
+	 *            The delta weights with the same layout.
+	 * @param paraGradients
+	 *            The gradients with the same layout.
+	 * @param paraStep
+	 *            The learning rate, divided by the batch size for the mean.
+	 * @param paraMobp
+	 *            The momentum coefficient.
+	 ********************
+	 */
+	public void momentum(double[] paraWeights, double[] paraDeltaWeights,
+			double[] paraGradients, double paraStep, double paraMobp) {
+		for (int i = 0; i < paraWeights.length; i++) {
+			paraDeltaWeights[i] = paraMobp * paraDeltaWeights[i] + paraStep * paraGradients[i];
+			paraWeights[i] += paraDeltaWeights[i];
+		} // Of for i
+	}// Of momentum
+
+	/**
+	 ********************
+	 * Show me.
+	 ********************
+	 */
+	public String toString() {
+		return "scalar";
+	}// Of toString
+}// Of class AnnKernel
@@ -23,14 +23,66 @@ public class FullConnectAnnLayer extends GeneralAnnLayer {
 	int numOutput;
 
 	/**
-	 * The weight matrix.
+	 * The number of weights of each output, i.e., numInput + 1 with the bias.
 	 */
-	double[][] weights;
+	int rowLength;
 
 	/**
-	 * The delta weight matrix.
+	 * The weight matrix in one contiguous array, output-major. The weight from
+	 * input i to output j is weights[j * rowLength + i], and the bias of output
+	 * j is weights[j * rowLength + numInput]. Hence both the forward dot product
+	 * and the back propagation update run with unit stride.
 	 */
-	double[][] deltaWeights;
+	double[] weights;
+
+	/**
+	 * The delta weight matrix with the same layout as weights.
+	 */
+	double[] deltaWeights;
+
+	/**
+	 * Is the last input sparse? If so, the back propagation only visits the
+	 * non-zero inputs.
+	 */
+	boolean sparseInput;
+
+	/**
+	 * The column indices of the sparse input.
+	 */
+	int[] sparseInputColumns;
+
+	/**
+	 * The values of the sparse input.
+	 */
+	double[] sparseInputValues;
+
+	/**
+	 * The start position of the sparse input.
+	 */
+	int sparseInputStart;
+
+	/**
+	 * The end position (exclusive) of the sparse input.
+	 */
+	int sparseInputEnd;
+
+	/**
+	 * The number of sparse back propagation steps.
+	 */
+	int numSparseSteps;
+
+	/**
+	 * The number of sparse steps applied to the weights of each input. Weights
+	 * with zero input only move with their momentum, which is applied lazily
+	 * when the input is visited again.
+	 */
+	int[] rowSparseSteps;
+
+	/**
+	 * The errors of the input returned by the sparse back propagation. It is
+	 * never written, hence stays all zeros without refilling for each step.
+	 */
+	double[] sparseErrors;
 
 	/**
 	 *********************
@@ -47,15 +99,19 @@ public class FullConnectAnnLayer extends GeneralAnnLayer {
 		numInput = paraNumInput;
 		numOutput = paraNumOutput;
 
-		weights = new double[numInput + 1][numOutput];
-		deltaWeights = new double[numInput + 1][numOutput];
-		for (int i = 0; i < numInput + 1; i++) {
+		rowLength = numInput + 1;
+		weights = new double[numOutput * rowLength];
+		deltaWeights = new double[numOutput * rowLength];
+		// The same random sequence as the former input-major layout.
+		for (int i = 0; i < rowLength; i++) {
 			for (int j = 0; j < numOutput; j++) {
-				weights[i][j] = SimpleTools.random.nextDouble();
+				weights[j * rowLength + i] = SimpleTools.random.nextDouble();
 			} // Of for j
 		} // Of for i
 
 		errors = new double[numInput];
+		rowSparseSteps = new int[numInput];
+		sparseErrors = new double[numInput];
 
 		input = new double[numInput];
 		output = new double[numOutput];
@@ -74,24 +130,85 @@ public class FullConnectAnnLayer extends GeneralAnnLayer {
 	public double[] forward(double[] paraInput) {
 		// System.out.println("Ann layer forward " +
 		// Arrays.toString(paraInput));
+		catchUpAll();
+		sparseInput = false;
+
 		// Copy data.
 		for (int i = 0; i < numInput; i++) {
 			input[i] = paraInput[i];
 		} // Of for i
 
 		// Calculate the weighted sum for each output.
+		double tempSum;
+		int tempBase;
 		for (int i = 0; i < numOutput; i++) {
-			output[i] = weights[numInput][i];
-			for (int j = 0; j < numInput; j++) {
-				output[i] += input[j] * weights[j][i];
-			} // Of for j
-
-			activatedOutput[i] = activator.activate(output[i]);
+			tempBase = i * rowLength;
+			tempSum = kernel.dot(weights, tempBase, input, 0, numInput,
+					weights[tempBase + numInput]);
+			output[i] = tempSum;
+			activatedOutput[i] = activator.activate(tempSum);
 		} // Of for i
 
 		return activatedOutput;
 	}// Of forward
 
+	/**
+	 ********************
+	 * Inference of one instance. Pending momentum of the sparse path is not
+	 * seen, hence catchUpAll() should be called first.
+	 * 
+	 * @param paraInput
+	 *            The input data of one instance.
+	 * @param paraOutput
+	 *            The array for the data at the output end.
+	 * @return paraOutput.
+	 ********************
+	 */
+	public double[] infer(double[] paraInput, double[] paraOutput) {
+		int tempBase;
+		for (int i = 0; i < numOutput; i++) {
+			tempBase = i * rowLength;
+			paraOutput[i] = activator.activate(kernel.dot(weights, tempBase, paraInput, 0,
+					numInput, weights[tempBase + numInput]));
+		} // Of for i
+
+		return paraOutput;
+	}// Of infer
+
+	/**
+	 ********************
+	 * Inference of one instance with a sparse input. Pending momentum of the
+	 * sparse path is not seen, hence catchUpAll() should be called first.
+	 * 
+	 * @param paraColumns
+	 *            The column indices of non-zeros.
+	 * @param paraValues
+	 *            The non-zero values.
+	 * @param paraStart
+	 *            The start position in the arrays.
+	 * @param paraEnd
+	 *            The end position (exclusive) in the arrays.
+	 * @param paraOutput
+	 *            The array for the data at the output end.
+	 * @return paraOutput.
+	 ********************
+	 */
+	public double[] inferSparse(int[] paraColumns, double[] paraValues, int paraStart,
+			int paraEnd, double[] paraOutput) {
+		double tempSum;
+		int tempBase;
+		for (int i = 0; i < numOutput; i++) {
+			tempBase = i * rowLength;
+			tempSum = weights[tempBase + numInput];
+			for (int k = paraStart; k < paraEnd; k++) {
+				tempSum += paraValues[k] * weights[tempBase + paraColumns[k]];
+			} // Of for k
+			paraOutput[i] = activator.activate(tempSum);
+		} // Of for i
+
+		return paraOutput;
+	}// Of inferSparse
+
 	/**
 	 ********************
 	 * Back propagation and change the edge weights.
@@ -106,25 +223,311 @@ public class FullConnectAnnLayer extends GeneralAnnLayer {
 			paraErrors[i] = activator.derive(output[i], activatedOutput[i]) * paraErrors[i];
 		} // Of for i
 
-		// Step 2. Compute current errors.
-		for (int i = 0; i < numInput; i++) {
-			errors[i] = 0;
-			for (int j = 0; j < numOutput; j++) {
-				errors[i] += paraErrors[j] * weights[i][j];
-				deltaWeights[i][j] = mobp * deltaWeights[i][j]
-						+ learningRate * paraErrors[j] * input[i];
-				weights[i][j] += deltaWeights[i][j];
-			} // Of for j
-		} // Of for i
+		if (sparseInput) {
+			return sparseBackPropagation(paraErrors);
+		} // Of if
 
+		// Step 2. Compute current errors and update the weights in one pass over
+		// each output row. The error uses the weight before its update.
+		Arrays.fill(errors, 0);
+		double tempError;
+		double tempStep;
+		int tempBase;
 		for (int j = 0; j < numOutput; j++) {
-			deltaWeights[numInput][j] = mobp * deltaWeights[numInput][j]
-					+ learningRate * paraErrors[j];
-			weights[numInput][j] += deltaWeights[numInput][j];
+			tempError = paraErrors[j];
+			tempStep = learningRate * tempError;
+			tempBase = j * rowLength;
+			kernel.update(weights, deltaWeights, tempBase, input, errors, 0, numInput, tempError,
+					tempStep, mobp);
+
+			deltaWeights[tempBase + numInput] = mobp * deltaWeights[tempBase + numInput]
+					+ tempStep;
+			weights[tempBase + numInput] += deltaWeights[tempBase + numInput];
 		} // Of for j
 		return errors;
 	}// Of backPropagation
 
+	/**
+	 ********************
+	 * Forward prediction of a batch as a blocked matrix product. A block of
+	 * weight rows is visited by all instances before the next block, hence
+	 * the weights are read from memory once per batch instead of once per
+	 * instance.
+	 * 
+	 * @param paraInputs
+	 *            The input data, one row per instance.
+	 * @return The data at the output end, one row per instance.
+	 ********************
+	 */
+	public double[][] forward(double[][] paraInputs) {
+		catchUpAll();
+		sparseInput = false;
+		prepareBatch(paraInputs);
+
+		int tempBlockRows = getBlockRows(rowLength);
+		int tempBlockEnd;
+		int tempBase;
+		double[] tempInput;
+		double[] tempOutput;
+		for (int tempBlockStart = 0; tempBlockStart < numOutput; tempBlockStart += tempBlockRows) {
+			tempBlockEnd = Math.min(tempBlockStart + tempBlockRows, numOutput);
+			for (int k = 0; k < paraInputs.length; k++) {
+				tempInput = paraInputs[k];
+				tempOutput = batchOutput[k];
+				for (int i = tempBlockStart; i < tempBlockEnd; i++) {
+					tempBase = i * rowLength;
+					tempOutput[i] = kernel.dot(weights, tempBase, tempInput, 0, numInput,
+							weights[tempBase + numInput]);
+					batchActivatedOutput[k][i] = activator.activate(tempOutput[i]);
+				} // Of for i
+			} // Of for k
+		} // Of for tempBlockStart
+
+		return batchActivatedOutput;
+	}// Of forward
+
+	/**
+	 ********************
+	 * Back propagation of a batch as blocked matrix products. The input errors
+	 * and the gradients of a block of weight rows are accumulated by all
+	 * instances, and then the weights change once with the mean gradient.
+	 * 
+	 * @param paraErrors
+	 *            The errors of the output, one row per instance.
+	 * @return The errors of the input, one row per instance.
+	 ********************
+	 */
+	public double[][] backPropagation(double[][] paraErrors) {
+		double[][] resultErrors = accumulateGradients(paraErrors);
+		applyGradients(gradients, paraErrors.length);
+		return resultErrors;
+	}// Of backPropagation
+
+	/**
+	 ********************
+	 * Accumulate the input errors and the sum of the gradients of a batch
+	 * without changing the weights.
+	 * 
+	 * @param paraErrors
+	 *            The errors of the output, one row per instance.
+	 * @return The errors of the input, one row per instance.
+	 ********************
+	 */
+	public double[][] accumulateGradients(double[][] paraErrors) {
+		// Step 1. Adjust the errors.
+		deriveBatchErrors(paraErrors);
+		if (gradients == null) {
+			gradients = new double[weights.length];
+		} else {
+			Arrays.fill(gradients, 0);
+		} // Of if
+
+		// Step 2. Accumulate the input errors and the gradients with the
+		// weights before the update.
+		int tempBlockRows = getBlockRows(rowLength);
+		int tempBlockEnd;
+		int tempBase;
+		double tempError;
+		for (int tempBlockStart = 0; tempBlockStart < numOutput; tempBlockStart += tempBlockRows) {
+			tempBlockEnd = Math.min(tempBlockStart + tempBlockRows, numOutput);
+			for (int k = 0; k < paraErrors.length; k++) {
+				for (int j = tempBlockStart; j < tempBlockEnd; j++) {
+					tempError = paraErrors[k][j];
+					if (tempError == 0) {
+						continue;
+					} // Of if
+
+					tempBase = j * rowLength;
+					kernel.axpy(batchErrors[k], 0, tempError, weights, tempBase, numInput);
+					kernel.axpy(gradients, tempBase, tempError, batchInput[k], 0, numInput);
+					gradients[tempBase + numInput] += tempError;
+				} // Of for j
+			} // Of for k
+		} // Of for tempBlockStart
+
+		return batchErrors;
+	}// Of accumulateGradients
+
+	/**
+	 ********************
+	 * Change the weights once with the mean of summed gradients.
+	 * 
+	 * @param paraGradients
+	 *            The sum of the gradients of a batch.
+	 * @param paraNumRows
+	 *            The number of instances of the batch.
+	 ********************
+	 */
+	public void applyGradients(double[] paraGradients, int paraNumRows) {
+		kernel.momentum(weights, deltaWeights, paraGradients, learningRate / paraNumRows, mobp);
+	}// Of applyGradients
+
+	/**
+	 ********************
+	 * Forward prediction with a sparse input. The cost is proportional to the
+	 * number of non-zeros instead of numInput. The arrays are not copied and
+	 * should be unchanged until the back propagation.
+	 * 
+	 * @param paraColumns
+	 *            The column indices of non-zeros.
+	 * @param paraValues
+	 *            The non-zero values.
+	 * @param paraStart
+	 *            The start position in the arrays.
+	 * @param paraEnd
+	 *            The end position (exclusive) in the arrays.
+	 * @return The data at the output end.
+	 ********************
+	 */
+	public double[] forwardSparse(int[] paraColumns, double[] paraValues, int paraStart,
+			int paraEnd) {
+		sparseInput = true;
+		sparseInputColumns = paraColumns;
+		sparseInputValues = paraValues;
+		sparseInputStart = paraStart;
+		sparseInputEnd = paraEnd;
+
+		for (int k = paraStart; k < paraEnd; k++) {
+			catchUp(paraColumns[k]);
+		} // Of for k
+
+		// Output by output to visit the weights in order.
+		double tempSum;
+		int tempBase;
+		for (int i = 0; i < numOutput; i++) {
+			tempBase = i * rowLength;
+			tempSum = weights[tempBase + numInput];
+			for (int k = paraStart; k < paraEnd; k++) {
+				tempSum += paraValues[k] * weights[tempBase + paraColumns[k]];
+			} // Of for k
+			output[i] = tempSum;
+		} // Of for i
+
+		for (int i = 0; i < numOutput; i++) {
+			activatedOutput[i] = activator.activate(output[i]);
+		} // Of for i
+
+		return activatedOutput;
+	}// Of forwardSparse
+
+	/**
+	 ********************
+	 * Back propagation for the sparse input. Only the weights of non-zero inputs
+	 * and the bias are updated now. Errors of the input are not
+	 * computed, hence it only works for the first layer.
+	 * 
+	 * @param paraErrors
+	 *            The adjusted errors of the output.
+	 * @return The errors of the input, all zeros. They are shared and must not
+	 *         be changed.
+	 ********************
+	 */
+	double[] sparseBackPropagation(double[] paraErrors) {
+		int tempIndex;
+		double tempStep;
+		int tempBase;
+		numSparseSteps++;
+		for (int j = 0; j < numOutput; j++) {
+			tempStep = learningRate * paraErrors[j];
+			tempBase = j * rowLength;
+			for (int k = sparseInputStart; k < sparseInputEnd; k++) {
+				tempIndex = tempBase + sparseInputColumns[k];
+				deltaWeights[tempIndex] = mobp * deltaWeights[tempIndex]
+						+ tempStep * sparseInputValues[k];
+				weights[tempIndex] += deltaWeights[tempIndex];
+			} // Of for k
+
+			tempIndex = tempBase + numInput;
+			deltaWeights[tempIndex] = mobp * deltaWeights[tempIndex] + tempStep;
+			weights[tempIndex] += deltaWeights[tempIndex];
+		} // Of for j
+
+		for (int k = sparseInputStart; k < sparseInputEnd; k++) {
+			rowSparseSteps[sparseInputColumns[k]] = numSparseSteps;
+		} // Of for k
+
+		return sparseErrors;
+	}// Of sparseBackPropagation
+
+	/**
+	 ********************
+	 * Set mobp. The pending momentum steps were taken with the old mobp, hence
+	 * they are applied first.
+	 * 
+	 * @param paraMobp
+	 *            The new mobp.
+	 ********************
+	 */
+	public void setMobp(double paraMobp) {
+		catchUpAll();
+		super.setMobp(paraMobp);
+	}// Of setMobp
+
+	/**
+	 ********************
+	 * Apply the pending momentum steps of the weights of one input, one per
+	 * output with stride rowLength. With zero input, each step multiplies the
+	 * delta by mobp and adds it to the weight, so p steps add
+	 * delta * (m + m^2 + ... + m^p).
+	 * 
+	 * @param paraRow
+	 *            The input index.
+	 ********************
+	 */
+	void catchUp(int paraRow) {
+		int tempPending = numSparseSteps - rowSparseSteps[paraRow];
+		if (tempPending == 0) {
+			return;
+		} // Of if
+
+		double tempDecay = Math.pow(mobp, tempPending);
+		double tempSum;
+		if (mobp == 1) {
+			tempSum = tempPending;
+		} else {
+			tempSum = mobp * (1 - tempDecay) / (1 - mobp);
+		} // Of if
+
+		for (int j = paraRow; j < weights.length; j += rowLength) {
+			weights[j] += deltaWeights[j] * tempSum;
+			deltaWeights[j] *= tempDecay;
+		} // Of for j
+		rowSparseSteps[paraRow] = numSparseSteps;
+	}// Of catchUp
+
+	/**
+	 ********************
+	 * Apply all pending momentum steps before the weights are used densely.
+	 ********************
+	 */
+	void catchUpAll() {
+		if (numSparseSteps == 0) {
+			return;
+		} // Of if
+
+		for (int i = 0; i < numInput; i++) {
+			catchUp(i);
+		} // Of for i
+		numSparseSteps = 0;
+		Arrays.fill(rowSparseSteps, 0);
+	}// Of catchUpAll
+
+	/**
+	 ********************
+	 * Create a replica. The sparse steps are not shared, otherwise the replica
+	 * would apply the pending momentum to the shared weights again. Hence
+	 * catchUpAll() should be called first.
+	 * 
+	 * @return The replica.
+	 ********************
+	 */
+	public GeneralAnnLayer replicate() {
+		FullConnectAnnLayer resultLayer = (FullConnectAnnLayer) super.replicate();
+		resultLayer.numSparseSteps = 0;
+		resultLayer.rowSparseSteps = new int[numInput];
+		return resultLayer;
+	}// Of replicate
+
 	/**
 	 ********************
 	 * Implement the method defined in the super-class.
@@ -150,9 +553,10 @@ public class FullConnectAnnLayer extends GeneralAnnLayer {
 	 ********************
 	 */
 	public String toString() {
+		catchUpAll();
 		String resultString = "";
 		resultString += "Activator: " + activator;
-		resultString += "\r\n weights = " + Arrays.deepToString(weights);
+		resultString += "\r\n weights = " + Arrays.toString(weights);
 		return resultString;
 	}// Of toString
 
@@ -174,6 +578,126 @@ public class FullConnectAnnLayer extends GeneralAnnLayer {
 		System.out.println("Back propagation, the error is: " + Arrays.toString(tempError));
 	}// Of unitTest
 
+	/**
+	 ********************
+	 * Measure the time of one forward and back propagation step.
+	 * 
+	 * @param paraNumInput
+	 *            The number of input.
+	 * @param paraNumOutput
+	 *            The number of output.
+	 * @param paraNumSamples
+	 *            The number of samples of each round.
+	 * @param paraKernel
+	 *            The kernel, e.g., AnnKernel.SCALAR.
+	 * @return The best time of five rounds in nanoseconds per sample.
+	 ********************
+	 */
+	public static double benchmark(int paraNumInput, int paraNumOutput, int paraNumSamples,
+			char paraKernel) {
+		FullConnectAnnLayer tempLayer = new FullConnectAnnLayer(paraNumInput, paraNumOutput, 's',
+				0.01, 0.5);
+		tempLayer.setKernel(paraKernel);
+		double[] tempInput = new double[paraNumInput];
+		for (int i = 0; i < paraNumInput; i++) {
+			tempInput[i] = SimpleTools.random.nextDouble();
+		} // Of for i
+
+		double[] tempErrors = new double[paraNumOutput];
+		double[] tempOutput;
+		long resultBest = Long.MAX_VALUE;
+		for (int round = 0; round < 5; round++) {
+			long tempStart = System.nanoTime();
+			for (int k = 0; k < paraNumSamples; k++) {
+				tempOutput = tempLayer.forward(tempInput);
+				for (int j = 0; j < paraNumOutput; j++) {
+					tempErrors[j] = 0.5 - tempOutput[j];
+				} // Of for j
+				tempLayer.backPropagation(tempErrors);
+			} // Of for k
+			resultBest = Math.min(resultBest, System.nanoTime() - tempStart);
+		} // Of for round
+
+		return (double) resultBest / paraNumSamples;
+	}// Of benchmark
+
+	/**
+	 ********************
+	 * The same measurement for the former layout, i.e., input-major jagged
+	 * arrays weights[numInput + 1][numOutput] with the bias in the last row,
+	 * and the former loops of forward() and backPropagation(). It is the
+	 * "before" of the flat layout.
+	 * 
+	 * @param paraNumInput
+	 *            The number of input.
+	 * @param paraNumOutput
+	 *            The number of output.
+	 * @param paraNumSamples
+	 *            The number of samples of each round.
+	 * @return The best time of five rounds in nanoseconds per sample.
+	 ********************
+	 */
+	public static double jaggedBenchmark(int paraNumInput, int paraNumOutput,
+			int paraNumSamples) {
+		Activator tempActivator = new Activator('s');
+		double tempLearningRate = 0.01;
+		double tempMobp = 0.5;
+		double[][] tempWeights = new double[paraNumInput + 1][paraNumOutput];
+		double[][] tempDeltaWeights = new double[paraNumInput + 1][paraNumOutput];
+		for (int i = 0; i < paraNumInput + 1; i++) {
+			for (int j = 0; j < paraNumOutput; j++) {
+				tempWeights[i][j] = SimpleTools.random.nextDouble();
+			} // Of for j
+		} // Of for i
+
+		double[] tempInput = new double[paraNumInput];
+		for (int i = 0; i < paraNumInput; i++) {
+			tempInput[i] = SimpleTools.random.nextDouble();
+		} // Of for i
+		double[] tempOutput = new double[paraNumOutput];
+		double[] tempActivatedOutput = new double[paraNumOutput];
+		double[] tempErrors = new double[paraNumOutput];
+		double[] tempInputErrors = new double[paraNumInput];
+
+		long resultBest = Long.MAX_VALUE;
+		for (int round = 0; round < 5; round++) {
+			long tempStart = System.nanoTime();
+			for (int k = 0; k < paraNumSamples; k++) {
+				// Forward.
+				for (int i = 0; i < paraNumOutput; i++) {
+					tempOutput[i] = tempWeights[paraNumInput][i];
+					for (int j = 0; j < paraNumInput; j++) {
+						tempOutput[i] += tempInput[j] * tempWeights[j][i];
+					} // Of for j
+					tempActivatedOutput[i] = tempActivator.activate(tempOutput[i]);
+				} // Of for i
+
+				// Back propagation.
+				for (int j = 0; j < paraNumOutput; j++) {
+					tempErrors[j] = tempActivator.derive(tempOutput[j], tempActivatedOutput[j])
+							* (0.5 - tempActivatedOutput[j]);
+				} // Of for j
+				for (int i = 0; i < paraNumInput; i++) {
+					tempInputErrors[i] = 0;
+					for (int j = 0; j < paraNumOutput; j++) {
+						tempInputErrors[i] += tempErrors[j] * tempWeights[i][j];
+						tempDeltaWeights[i][j] = tempMobp * tempDeltaWeights[i][j]
+								+ tempLearningRate * tempErrors[j] * tempInput[i];
+						tempWeights[i][j] += tempDeltaWeights[i][j];
+					} // Of for j
+				} // Of for i
+				for (int j = 0; j < paraNumOutput; j++) {
+					tempDeltaWeights[paraNumInput][j] = tempMobp
+							* tempDeltaWeights[paraNumInput][j] + tempLearningRate * tempErrors[j];
+					tempWeights[paraNumInput][j] += tempDeltaWeights[paraNumInput][j];
+				} // Of for j
+			} // Of for k
+			resultBest = Math.min(resultBest, System.nanoTime() - tempStart);
+		} // Of for round
+
+		return (double) resultBest / paraNumSamples;
+	}// Of jaggedBenchmark
+
 	/**
 	 ********************
 	 * Test the algorithm.
@@ -181,5 +705,20 @@ public class FullConnectAnnLayer extends GeneralAnnLayer {
 	 */
 	public static void main(String[] args) {
 		unitTest();
+
+		int[][] tempShapes = { { 103, 40 }, { 40, 40 }, { 300, 200 } };
+		char[] tempKernels = { AnnKernel.SCALAR, AnnKernel.UNROLLED };
+		for (int i = 0; i < tempShapes.length; i++) {
+			System.out.println(tempShapes[i][0] + " x " + tempShapes[i][1]
+					+ ", former jagged layout: "
+					+ jaggedBenchmark(tempShapes[i][0], tempShapes[i][1], 20000)
+					+ " ns per sample");
+			for (int j = 0; j < tempKernels.length; j++) {
+				System.out.println(tempShapes[i][0] + " x " + tempShapes[i][1] + ", "
+						+ AnnKernel.getKernel(tempKernels[j]) + ": "
+						+ benchmark(tempShapes[i][0], tempShapes[i][1], 20000, tempKernels[j])
+						+ " ns per sample");
+			} // Of for j
+		} // Of for i
 	}// Of main
 }// Of class AnnLayer
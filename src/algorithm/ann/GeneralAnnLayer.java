@@ -1,13 +1,23 @@
 package algorithm.ann;
 
+import java.util.Arrays;
 import java.util.Random;
 
+import data.MultiLabelData;
+
 /**
  * General ANN.
  * 
  * @author Fan Min. minfanphd@163.com, minfan@swpu.edu.cn.
  */
-public abstract class GeneralAnnLayer {
+public abstract class GeneralAnnLayer implements Cloneable {
+	/**
+	 * The number of weights in one block of the batch products, 32K bytes, so
+	 * that a block of weight rows stays in the L1/L2 cache while all instances
+	 * of the batch visit it.
+	 */
+	static final int BLOCK_WEIGHTS = 4096;
+
 	/**
 	 * The learning rate.
 	 */
@@ -43,6 +53,37 @@ public abstract class GeneralAnnLayer {
 	 */
 	Activator activator;
 
+	/**
+	 * The kernel of the inner loops.
+	 */
+	AnnKernel kernel = AnnKernel.SCALAR_KERNEL;
+
+	/**
+	 * The inputs of the last batch, one row per instance. They are not copied.
+	 */
+	double[][] batchInput;
+
+	/**
+	 * The outputs of the last batch.
+	 */
+	double[][] batchOutput;
+
+	/**
+	 * The outputs of the last batch after activate.
+	 */
+	double[][] batchActivatedOutput;
+
+	/**
+	 * The errors of the inputs of the last batch.
+	 */
+	double[][] batchErrors;
+
+	/**
+	 * The sum of the weight gradients of the last batch, with the same layout
+	 * as the weights.
+	 */
+	double[] gradients;
+
 	/**
 	 *********************
 	 * The first constructor.
@@ -67,6 +108,16 @@ public abstract class GeneralAnnLayer {
 		learningRate = paraLearningRate;
 	}//Of setLearningRate
 	
+	/**
+	 ********************
+	 * Set the kernel of the inner loops.
+	 * @param paraKernel AnnKernel.SCALAR or AnnKernel.UNROLLED.
+	 ********************
+	 */
+	public void setKernel(char paraKernel) {
+		kernel = AnnKernel.getKernel(paraKernel);
+	}//Of setKernel
+	
 	/**
 	 ********************
 	 * Set mobp.
@@ -106,6 +157,32 @@ public abstract class GeneralAnnLayer {
 	 */
 	public abstract double[] forward(double[] paraInput);
 	
+	/**
+	 ********************
+	 * Inference of one instance. Only the given arrays are written, and the
+	 * weights are only read, hence it may run in many threads as long as the
+	 * weights do not change.
+	 * 
+	 * @param paraInput
+	 *            The input data of one instance.
+	 * @param paraOutput
+	 *            The array for the data at the output end, see getNumOutput().
+	 * @return paraOutput.
+	 ********************
+	 */
+	public abstract double[] infer(double[] paraInput, double[] paraOutput);
+
+	/**
+	 ********************
+	 * Getter.
+	 * 
+	 * @return The number of output.
+	 ********************
+	 */
+	public int getNumOutput() {
+		return output.length;
+	}// Of getNumOutput
+
 	/**
 	 ********************
 	 * Back propagation and change the edge weights.
@@ -129,4 +206,184 @@ public abstract class GeneralAnnLayer {
 	public abstract double[] getLastLayerErrors(int[] paraTarget);
 	//, boolean[] paraLabelKnownArray
 
+	/**
+	 ********************
+	 * Forward prediction of a batch. The input rows are not copied and should
+	 * be unchanged until the back propagation.
+	 * 
+	 * @param paraInputs
+	 *            The input data, one row per instance.
+	 * @return The data at the output end, one row per instance.
+	 ********************
+	 */
+	public abstract double[][] forward(double[][] paraInputs);
+
+	/**
+	 ********************
+	 * Back propagation of a batch. The weights change once with the mean
+	 * gradient of the batch.
+	 * 
+	 * @param paraErrors
+	 *            The errors of the output, one row per instance. They are
+	 *            changed.
+	 * @return The errors of the input, one row per instance.
+	 ********************
+	 */
+	public abstract double[][] backPropagation(double[][] paraErrors);
+
+	/**
+	 ********************
+	 * Accumulate the input errors and the sum of the gradients of a batch into
+	 * the gradients without changing the weights.
+	 * 
+	 * @param paraErrors
+	 *            The errors of the output, one row per instance. They are
+	 *            changed.
+	 * @return The errors of the input, one row per instance.
+	 ********************
+	 */
+	public abstract double[][] accumulateGradients(double[][] paraErrors);
+
+	/**
+	 ********************
+	 * Change the weights once with the mean of summed gradients.
+	 * 
+	 * @param paraGradients
+	 *            The sum of the gradients of a batch, with the same layout as
+	 *            the weights.
+	 * @param paraNumRows
+	 *            The number of instances of the batch.
+	 ********************
+	 */
+	public abstract void applyGradients(double[] paraGradients, int paraNumRows);
+
+	/**
+	 ********************
+	 * Sum the gradients of replicas into the gradients of this layer, in the
+	 * order of the replicas, so that the result does not depend on thread
+	 * scheduling.
+	 * 
+	 * @param paraReplicas
+	 *            The replicas after accumulateGradients.
+	 ********************
+	 */
+	public void reduceGradients(GeneralAnnLayer[] paraReplicas) {
+		double[] tempFirst = paraReplicas[0].gradients;
+		if (gradients == null) {
+			gradients = new double[tempFirst.length];
+		} // Of if
+		System.arraycopy(tempFirst, 0, gradients, 0, tempFirst.length);
+
+		double[] tempGradients;
+		for (int i = 1; i < paraReplicas.length; i++) {
+			tempGradients = paraReplicas[i].gradients;
+			for (int j = 0; j < tempGradients.length; j++) {
+				gradients[j] += tempGradients[j];
+			} // Of for j
+		} // Of for i
+	}// Of reduceGradients
+
+	/**
+	 ********************
+	 * Create a replica sharing the weights, the activator and the kernel, with
+	 * its own input, output, error and gradient buffers. Replicas may run
+	 * forward and accumulateGradients in different threads.
+	 * 
+	 * @return The replica.
+	 ********************
+	 */
+	public GeneralAnnLayer replicate() {
+		GeneralAnnLayer resultLayer;
+		try {
+			resultLayer = (GeneralAnnLayer) clone();
+		} catch (CloneNotSupportedException ee) {
+			throw new IllegalStateException(ee);
+		} // Of try
+
+		resultLayer.input = new double[input.length];
+		resultLayer.output = new double[output.length];
+		resultLayer.activatedOutput = new double[activatedOutput.length];
+		resultLayer.errors = new double[errors.length];
+		resultLayer.batchInput = null;
+		resultLayer.batchOutput = null;
+		resultLayer.batchActivatedOutput = null;
+		resultLayer.batchErrors = null;
+		resultLayer.gradients = null;
+		return resultLayer;
+	}// Of replicate
+
+	/**
+	 ********************
+	 * I am the last layer, set the errors of a batch. Unknown labels have no
+	 * error.
+	 * 
+	 * @param paraTargets
+	 *            The targets, one row per instance.
+	 * @return The error matrix.
+	 ********************
+	 */
+	public double[][] getLastLayerErrors(int[][] paraTargets) {
+		double[][] resultErrors = new double[paraTargets.length][];
+		for (int i = 0; i < paraTargets.length; i++) {
+			resultErrors[i] = new double[paraTargets[i].length];
+			for (int j = 0; j < resultErrors[i].length; j++) {
+				if (paraTargets[i][j] != MultiLabelData.INVALID_LABEL) {
+					resultErrors[i][j] = paraTargets[i][j] - batchActivatedOutput[i][j];
+				} // Of if
+			} // Of for j
+		} // Of for i
+
+		return resultErrors;
+	}// Of getLastLayerErrors
+
+	/**
+	 ********************
+	 * Prepare the batch buffers. They are allocated again only if the number
+	 * of instances changes.
+	 * 
+	 * @param paraInputs
+	 *            The input data, one row per instance.
+	 ********************
+	 */
+	void prepareBatch(double[][] paraInputs) {
+		batchInput = paraInputs;
+		int tempNumRows = paraInputs.length;
+		if (batchOutput == null || batchOutput.length != tempNumRows) {
+			batchOutput = new double[tempNumRows][output.length];
+			batchActivatedOutput = new double[tempNumRows][output.length];
+			batchErrors = new double[tempNumRows][errors.length];
+		} // Of if
+	}// Of prepareBatch
+
+	/**
+	 ********************
+	 * Adjust the errors of a batch by the derivative of the activator.
+	 * 
+	 * @param paraErrors
+	 *            The errors of the output, one row per instance.
+	 ********************
+	 */
+	void deriveBatchErrors(double[][] paraErrors) {
+		for (int i = 0; i < paraErrors.length; i++) {
+			for (int j = 0; j < paraErrors[i].length; j++) {
+				paraErrors[i][j] = activator.derive(batchOutput[i][j], batchActivatedOutput[i][j])
+						* paraErrors[i][j];
+			} // Of for j
+			Arrays.fill(batchErrors[i], 0);
+		} // Of for i
+	}// Of deriveBatchErrors
+
+	/**
+	 ********************
+	 * The number of weight rows in one block of the batch products.
+	 * 
+	 * @param paraRowLength
+	 *            The length of one weight row.
+	 * @return The number of rows.
+	 ********************
+	 */
+	static int getBlockRows(int paraRowLength) {
+		return Math.max(1, BLOCK_WEIGHTS / paraRowLength);
+	}// Of getBlockRows
+
 }//Of class GeneralAnnLayer
\ No newline at end of file
@@ -1,8 +1,11 @@
 package algorithm.ann;
 
 import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
 
 import data.MultiLabelData;
+import data.SparseMatrix;
+import util.ParallelTools;
 import util.SimpleTools;
 
 /**
@@ -11,6 +14,10 @@ import util.SimpleTools;
  * @author Fan Min. minfanphd@163.com, minfan@swpu.edu.cn.
  */
 public class MultiLabelAnn {
+	/**
+	 * The number of instances of each block of parallel inference.
+	 */
+	static final int INFERENCE_BLOCK_SIZE = 256;
 
 	/**
 	 * The whole dataset.
@@ -27,6 +34,58 @@ public class MultiLabelAnn {
 	 */
 	GeneralAnnLayer[] layers;
 
+	/**
+	 * The number of instances of each mini-batch. 1 for per-instance SGD.
+	 */
+	int batchSize = 1;
+
+	/**
+	 * The number of shards of each mini-batch for data-parallel training.
+	 */
+	int numShards = 1;
+
+	/**
+	 * The thread pool of data-parallel training, null for one thread.
+	 */
+	ForkJoinPool pool;
+
+	/**
+	 * The layer replicas of each shard, sharing the weights of the layers.
+	 */
+	GeneralAnnLayer[][] replicaLayers;
+
+	/**
+	 * The thread pool of the label parts of parallel layers, null for one
+	 * thread.
+	 */
+	ForkJoinPool labelPool;
+
+	/**
+	 * Train per instance with lock-free threads on shared weights or not.
+	 */
+	boolean asynchronous = false;
+
+	/**
+	 * The version of the weights. It increases whenever the weights change.
+	 */
+	long weightVersion;
+
+	/**
+	 * The weight version of the cached predictions, -1 for none.
+	 */
+	long predictionVersion = -1;
+
+	/**
+	 * The cached margin of each instance-label pair, i.e., the output of label
+	 * value 1 minus that of 0. The predicted label is 1 iff it is not negative.
+	 */
+	double[][] marginMatrix;
+
+	/**
+	 * The cached uncertainty of each instance-label pair, queried or not.
+	 */
+	double[][] rawUncertaintyMatrix;
+
 	/**
 	 ********************
 	 * The first constructor.
@@ -46,6 +105,23 @@ public class MultiLabelAnn {
 	public MultiLabelAnn(MultiLabelData paraDataset, int[] paraFullConnectLayerNumNodes,
 			int[] paraParallelLayerNumNodes, double paraLearningRate, double paraMobp,
 			String paraActivators) {
+		this(paraDataset, paraFullConnectLayerNumNodes, paraParallelLayerNumNodes,
+				paraLearningRate, paraMobp, paraActivators, AnnKernel.SCALAR);
+	}// Of the first constructor
+
+	/**
+	 ********************
+	 * The second constructor.
+	 * 
+	 * @param paraKernel
+	 *            The kernel of the inner loops, AnnKernel.SCALAR or
+	 *            AnnKernel.UNROLLED. Others are the same as the first
+	 *            constructor.
+	 ********************
+	 */
+	public MultiLabelAnn(MultiLabelData paraDataset, int[] paraFullConnectLayerNumNodes,
+			int[] paraParallelLayerNumNodes, double paraLearningRate, double paraMobp,
+			String paraActivators, char paraKernel) {
 		dataset = paraDataset;
 		int tempNumParts = paraDataset.getNumLabels();
 
@@ -74,7 +150,11 @@ public class MultiLabelAnn {
 					paraActivators.charAt(paraFullConnectLayerNumNodes.length + i),
 					paraLearningRate, paraMobp);
 		} // Of for i
-	}// Of the first constructor
+
+		for (int i = 0; i < layers.length; i++) {
+			layers[i].setKernel(paraKernel);
+		} // Of for i
+	}// Of the second constructor
 
 	/**
 	 ********************
@@ -102,29 +182,290 @@ public class MultiLabelAnn {
 		}//Of for i
 	}//Of setMobp
 	
+	/**
+	 ********************
+	 * Set the batch size.
+	 * @param paraBatchSize The number of instances of each mini-batch. 1 for
+	 * per-instance SGD. With a larger batch, the weights change once per batch
+	 * with the mean gradient, hence the learning rate may be enlarged.
+	 ********************
+	 */
+	public void setBatchSize(int paraBatchSize) {
+		if (paraBatchSize < 1) {
+			throw new IllegalArgumentException("The batch size should be positive: "
+					+ paraBatchSize);
+		} // Of if
+		batchSize = paraBatchSize;
+	}//Of setBatchSize
+
+	/**
+	 ********************
+	 * Set the number of threads for data-parallel mini-batch training and for
+	 * inference in test() and computeLabelUncertaintyMatrix(). Each mini-batch
+	 * is split into one shard per thread. The result only depends on the
+	 * number of threads, not on the scheduling.
+	 * @param paraNumThreads The number of threads. Non-positive for all
+	 * processors.
+	 ********************
+	 */
+	public void setNumThreads(int paraNumThreads) {
+		ParallelTools.shutdown(pool);
+		if (paraNumThreads <= 0) {
+			paraNumThreads = Runtime.getRuntime().availableProcessors();
+		} // Of if
+		numShards = paraNumThreads;
+		pool = ParallelTools.createPool(numShards);
+		replicaLayers = null;
+	}//Of setNumThreads
+
+	/**
+	 ********************
+	 * Set the asynchronous mode. With more than one thread and batch size 1,
+	 * each thread trains its own part of the queried instances per instance,
+	 * and updates the shared weights without locks. Concurrent updates may
+	 * overwrite each other, hence results are not reproducible.
+	 * @param paraAsynchronous Use the asynchronous mode or not.
+	 ********************
+	 */
+	public void setAsynchronous(boolean paraAsynchronous) {
+		asynchronous = paraAsynchronous;
+	}//Of setAsynchronous
+
+	/**
+	 ********************
+	 * Set the number of threads for the label parts of parallel layers. Only
+	 * layers with many labels use more than one thread, see
+	 * ParallelAnnLayer.MIN_WEIGHTS_PER_THREAD.
+	 * @param paraNumThreads The number of threads. Non-positive for all
+	 * processors.
+	 ********************
+	 */
+	public void setNumLabelThreads(int paraNumThreads) {
+		ParallelTools.shutdown(labelPool);
+		labelPool = ParallelTools.createPool(paraNumThreads);
+		for (int i = 0; i < layers.length; i++) {
+			if (layers[i] instanceof ParallelAnnLayer) {
+				((ParallelAnnLayer) layers[i]).setPool(labelPool);
+			} // Of if
+		} // Of for i
+		replicaLayers = null;
+	}//Of setNumLabelThreads
+
+	/**
+	 ********************
+	 * Release the thread pools. Training continues with one thread.
+	 ********************
+	 */
+	public void shutdown() {
+		ParallelTools.shutdown(pool);
+		pool = null;
+		numShards = 1;
+		replicaLayers = null;
+
+		if (labelPool != null) {
+			setNumLabelThreads(1);
+		} // Of if
+	}//Of shutdown
+
 	/**
 	 ********************
 	 * Train using the dataset.
 	 ********************
 	 */
 	public void train() {
-		double[] tempInput;
+		if (batchSize > 1) {
+			if (numShards > 1) {
+				parallelBatchTrain();
+			} else {
+				batchTrain();
+			} // Of if
+			return;
+		} // Of if
+
+		if (asynchronous && numShards > 1) {
+			asynchronousTrain();
+			return;
+		} // Of if
+
 		int[] tempTarget;
 		int tempInstance;
 		for (int i = 0; i < dataset.getNumQueriedInstances(); i++) {
 			tempInstance = dataset.getQueriedInstanceIndex(i);
-			// Step 1. Fill the data.
-			tempInput = dataset.getData(tempInstance);
-
-			// Step 3. Fill the class label. Unknown labels are INVALID_VALUE.
+			// Step 1. Fill the class label. Unknown labels are INVALID_VALUE.
 			tempTarget = dataset.getQueriedLabel(tempInstance);
 
-			// Step 4. Train with this instance.
-			forward(tempInput);
+			// Step 2. Train with this instance.
+			forwardInstance(tempInstance);
 			backPropagation(tempTarget);
 		} // Of for i
 	}// Of train
 
+	/**
+	 ********************
+	 * Train using the dataset with mini-batches in the order of the queried
+	 * instances. Sparse rows enter the network as dense rows.
+	 ********************
+	 */
+	public void batchTrain() {
+		int tempNumQueriedInstances = dataset.getNumQueriedInstances();
+		int tempNumRows;
+		int tempInstance;
+		double[][] tempInputs;
+		int[][] tempTargets;
+		for (int i = 0; i < tempNumQueriedInstances; i += batchSize) {
+			tempNumRows = Math.min(batchSize, tempNumQueriedInstances - i);
+			tempInputs = new double[tempNumRows][];
+			tempTargets = new int[tempNumRows][];
+			for (int j = 0; j < tempNumRows; j++) {
+				tempInstance = dataset.getQueriedInstanceIndex(i + j);
+				tempInputs[j] = dataset.getData(tempInstance);
+				tempTargets[j] = dataset.getQueriedLabel(tempInstance);
+			} // Of for j
+
+			forward(tempInputs);
+			backPropagation(tempTargets);
+		} // Of for i
+	}// Of batchTrain
+
+	/**
+	 ********************
+	 * Train using the dataset with data-parallel mini-batches. Each shard of a
+	 * mini-batch runs forward and back propagation on its own replicas into
+	 * its own gradients. The gradients are then summed in shard order and the
+	 * weights change once, as in batchTrain.
+	 ********************
+	 */
+	public void parallelBatchTrain() {
+		weightVersion++;
+		prepareReplicas();
+
+		int tempNumQueriedInstances = dataset.getNumQueriedInstances();
+		GeneralAnnLayer[] tempLayerReplicas;
+		for (int i = 0; i < tempNumQueriedInstances; i += batchSize) {
+			int tempStart = i;
+			int tempNumRows = Math.min(batchSize, tempNumQueriedInstances - i);
+			int tempNumShards = Math.min(numShards, tempNumRows);
+
+			// Step 1. Gradients of each shard.
+			ParallelTools.forEachBlock(pool, tempNumShards,
+					paraShard -> accumulateShard(paraShard,
+							tempStart + paraShard * tempNumRows / tempNumShards,
+							tempStart + (paraShard + 1) * tempNumRows / tempNumShards));
+
+			// Step 2. Reduce in shard order and update.
+			tempLayerReplicas = new GeneralAnnLayer[tempNumShards];
+			for (int j = 0; j < layers.length; j++) {
+				for (int k = 0; k < tempNumShards; k++) {
+					tempLayerReplicas[k] = replicaLayers[k][j];
+				} // Of for k
+				layers[j].reduceGradients(tempLayerReplicas);
+				layers[j].applyGradients(layers[j].gradients, tempNumRows);
+			} // Of for j
+		} // Of for i
+	}// Of parallelBatchTrain
+
+	/**
+	 ********************
+	 * Train using the dataset with lock-free threads. Thread i trains the i-th
+	 * contiguous part of the queried instances, per instance on its own
+	 * replicas, which share the weights and the momentum. Sparse rows enter
+	 * the network as dense rows.
+	 ********************
+	 */
+	public void asynchronousTrain() {
+		weightVersion++;
+		prepareReplicas();
+
+		int tempNumQueriedInstances = dataset.getNumQueriedInstances();
+		int tempNumShards = Math.min(numShards, tempNumQueriedInstances);
+		ParallelTools.forEachBlock(pool, tempNumShards,
+				paraShard -> trainShard(paraShard,
+						paraShard * tempNumQueriedInstances / tempNumShards,
+						(paraShard + 1) * tempNumQueriedInstances / tempNumShards));
+	}// Of asynchronousTrain
+
+	/**
+	 ********************
+	 * Train one shard per instance on its replicas.
+	 * 
+	 * @param paraShard
+	 *            The shard index.
+	 * @param paraStart
+	 *            The start index among queried instances.
+	 * @param paraEnd
+	 *            The end index (exclusive) among queried instances.
+	 ********************
+	 */
+	void trainShard(int paraShard, int paraStart, int paraEnd) {
+		GeneralAnnLayer[] tempLayers = replicaLayers[paraShard];
+		int tempInstance;
+		double[] tempArray;
+		for (int i = paraStart; i < paraEnd; i++) {
+			tempInstance = dataset.getQueriedInstanceIndex(i);
+			tempArray = dataset.getData(tempInstance);
+			for (int j = 0; j < tempLayers.length; j++) {
+				tempArray = tempLayers[j].forward(tempArray);
+			} // Of for j
+
+			tempArray = tempLayers[tempLayers.length - 1]
+					.getLastLayerErrors(expandTarget(dataset.getQueriedLabel(tempInstance)));
+			for (int j = tempLayers.length - 1; j >= 0; j--) {
+				tempArray = tempLayers[j].backPropagation(tempArray);
+			} // Of for j
+		} // Of for i
+	}// Of trainShard
+
+	/**
+	 ********************
+	 * Apply the pending momentum of the sparse path which replicas do not see,
+	 * and then create the replicas of each shard if necessary.
+	 ********************
+	 */
+	void prepareReplicas() {
+		((FullConnectAnnLayer) layers[0]).catchUpAll();
+		if (replicaLayers == null) {
+			replicaLayers = new GeneralAnnLayer[numShards][layers.length];
+			for (int i = 0; i < numShards; i++) {
+				for (int j = 0; j < layers.length; j++) {
+					replicaLayers[i][j] = layers[j].replicate();
+				} // Of for j
+			} // Of for i
+		} // Of if
+	}// Of prepareReplicas
+
+	/**
+	 ********************
+	 * Accumulate the gradients of one shard on its replicas.
+	 * 
+	 * @param paraShard
+	 *            The shard index.
+	 * @param paraStart
+	 *            The start index among queried instances.
+	 * @param paraEnd
+	 *            The end index (exclusive) among queried instances.
+	 ********************
+	 */
+	void accumulateShard(int paraShard, int paraStart, int paraEnd) {
+		GeneralAnnLayer[] tempLayers = replicaLayers[paraShard];
+		double[][] tempMatrix = new double[paraEnd - paraStart][];
+		int[][] tempTargets = new int[paraEnd - paraStart][];
+		int tempInstance;
+		for (int i = paraStart; i < paraEnd; i++) {
+			tempInstance = dataset.getQueriedInstanceIndex(i);
+			tempMatrix[i - paraStart] = dataset.getData(tempInstance);
+			tempTargets[i - paraStart] = expandTarget(dataset.getQueriedLabel(tempInstance));
+		} // Of for i
+
+		for (int i = 0; i < tempLayers.length; i++) {
+			tempMatrix = tempLayers[i].forward(tempMatrix);
+		} // Of for i
+
+		tempMatrix = tempLayers[tempLayers.length - 1].getLastLayerErrors(tempTargets);
+		for (int i = tempLayers.length - 1; i >= 0; i--) {
+			tempMatrix = tempLayers[i].accumulateGradients(tempMatrix);
+		} // Of for i
+	}// Of accumulateShard
+
 	/**
 	 ********************
 	 * Train emphasizing on some instances. For example, if there are 100
@@ -140,20 +481,16 @@ public class MultiLabelAnn {
 	 ********************
 	 */
 	public void emphasizedTrain(int paraTimes, int[] paraEmphasizedInstances) {
-		double[] tempInput;
 		int[] tempTarget;
 		int tempInstance;
 		int tempNumQueriedInstance = dataset.getNumQueriedInstances();
 		for (int i = 0; i < tempNumQueriedInstance; i++) {
 			tempInstance = dataset.getQueriedInstanceIndex(i);
-			// Step 1. Fill the data.
-			tempInput = dataset.getData(tempInstance);
-
-			// Step 3. Fill the class label. Unknown labels are INVALID_VALUE.
+			// Step 1. Fill the class label. Unknown labels are INVALID_VALUE.
 			tempTarget = dataset.getQueriedLabel(tempInstance);
 
-			// Step 4. Train with this instance.
-			forward(tempInput);
+			// Step 2. Train with this instance.
+			forwardInstance(tempInstance);
 			backPropagation(tempTarget);
 
 			// Step 5. Judge emphasized train or not.
@@ -163,16 +500,13 @@ public class MultiLabelAnn {
 
 			// Step 6. Train emphasized instances.
 			for (int j = 0; j < paraEmphasizedInstances.length; j++) {
-				// Step 6.1 Fill the data.
-				tempInstance = paraEmphasizedInstances[j];
-				tempInput = dataset.getData(tempInstance);
-
-				// Step 6.2 Fill the class label. Unknown labels are
+				// Step 6.1 Fill the class label. Unknown labels are
 				// INVALID_VALUE.
+				tempInstance = paraEmphasizedInstances[j];
 				tempTarget = dataset.getQueriedLabel(tempInstance);
 
-				// Step 6.3 Train with this instance.
-				forward(tempInput);
+				// Step 6.2 Train with this instance.
+				forwardInstance(tempInstance);
 				backPropagation(tempTarget);
 			} // Of for j
 		} // Of for i
@@ -186,53 +520,136 @@ public class MultiLabelAnn {
 	 ********************
 	 */
 	public double test() {
-		double[] tempInput;
+		sweep();
+		int tempNumInstances = dataset.getNumInstances();
+		ParallelTools.forEachBlock(pool,
+				(tempNumInstances + INFERENCE_BLOCK_SIZE - 1) / INFERENCE_BLOCK_SIZE,
+				paraBlock -> testBlock(paraBlock * INFERENCE_BLOCK_SIZE,
+						Math.min((paraBlock + 1) * INFERENCE_BLOCK_SIZE, tempNumInstances)));
 
-		double[] tempPredictions;
+		return dataset.computeAccuracy();
+	}// Of test
 
-		for (int i = 0; i < dataset.getNumInstances(); i++) {
-			tempInput = dataset.getData(i);
-			tempPredictions = forward(tempInput);
+	/**
+	 ********************
+	 * Set the predicted labels of a range of instances from the margins.
+	 * 
+	 * @param paraStart
+	 *            The first instance.
+	 * @param paraEnd
+	 *            The end instance (exclusive).
+	 ********************
+	 */
+	void testBlock(int paraStart, int paraEnd) {
+		int[] tempLabels = new int[dataset.getNumLabels()];
+		for (int i = paraStart; i < paraEnd; i++) {
+			for (int j = 0; j < tempLabels.length; j++) {
+				if (marginMatrix[i][j] < 0) {
+					tempLabels[j] = 0;
+				} else {
+					tempLabels[j] = 1;
+				} // Of if
+			} // Of for j
+			dataset.setPredictedLabels(i, tempLabels);
+		} // Of for i
+	}// Of testBlock
 
-			for (int j = 0; j < dataset.getNumLabels(); j++) {
+	/**
+	 ********************
+	 * Predict all instances once for the current weights, filling the margins
+	 * and the uncertainty. Later calls reuse them until the weights change.
+	 ********************
+	 */
+	public void sweep() {
+		if (predictionVersion == weightVersion) {
+			return;
+		} // Of if
+
+		prepareInference();
+		int tempNumInstances = dataset.getNumInstances();
+		if (marginMatrix == null) {
+			marginMatrix = new double[tempNumInstances][dataset.getNumLabels()];
+			rawUncertaintyMatrix = new double[tempNumInstances][dataset.getNumLabels()];
+		} // Of if
+		ParallelTools.forEachBlock(pool,
+				(tempNumInstances + INFERENCE_BLOCK_SIZE - 1) / INFERENCE_BLOCK_SIZE,
+				paraBlock -> sweepBlock(paraBlock * INFERENCE_BLOCK_SIZE,
+						Math.min((paraBlock + 1) * INFERENCE_BLOCK_SIZE, tempNumInstances)));
+		predictionVersion = weightVersion;
+	}// Of sweep
+
+	/**
+	 ********************
+	 * Predict a range of instances into the margins and the uncertainty.
+	 * 
+	 * @param paraStart
+	 *            The first instance.
+	 * @param paraEnd
+	 *            The end instance (exclusive).
+	 ********************
+	 */
+	void sweepBlock(int paraStart, int paraEnd) {
+		double[][] tempWorkspace = createWorkspace();
+		double[] tempPredictions;
+		int tempNumLabels = dataset.getNumLabels();
+		for (int i = paraStart; i < paraEnd; i++) {
+			tempPredictions = predict(i, tempWorkspace);
+
+			for (int j = 0; j < tempNumLabels; j++) {
+				marginMatrix[i][j] = tempPredictions[2 * j + 1] - tempPredictions[2 * j];
 				if (tempPredictions[2 * j] > tempPredictions[2 * j + 1]) {
-					dataset.setPredictedLabel(i, j, 0);
+					rawUncertaintyMatrix[i][j] = 1 - tempPredictions[2 * j]
+							+ tempPredictions[2 * j + 1];
 				} else {
-					dataset.setPredictedLabel(i, j, 1);
+					rawUncertaintyMatrix[i][j] = 1 + tempPredictions[2 * j]
+							- tempPredictions[2 * j + 1];
 				} // Of if
 			} // Of for j
 		} // Of for i
+	}// Of sweepBlock
 
-		return dataset.computeAccuracy();
-	}// Of test
+	/**
+	 ********************
+	 * Getter. The margins of the current weights.
+	 * 
+	 * @return The margin of each instance-label pair, i.e., the output of label
+	 *         value 1 minus that of 0. It is shared and valid until the weights
+	 *         change.
+	 ********************
+	 */
+	public double[][] getMarginMatrix() {
+		sweep();
+		return marginMatrix;
+	}// Of getMarginMatrix
 
 	/**
 	 ********************
-	 * Compute label uncertainty matrix.
+	 * Mark the weights as changed. Call it after changing the layers directly.
+	 ********************
+	 */
+	public void weightsChanged() {
+		weightVersion++;
+	}// Of weightsChanged
+
+	/**
+	 ********************
+	 * Compute label uncertainty matrix. The predictions are reused until the
+	 * weights change, while queried labels are always up to date.
 	 * 
 	 * @return The matrix.
 	 ********************
 	 */
 	public double[][] computeLabelUncertaintyMatrix() {
-		double[][] resultMatrix = new double[dataset.getNumInstances()][dataset.getNumLabels()];
-		double[] tempInput;
-		double[] tempPredictions;
-
-		for (int i = 0; i < dataset.getNumInstances(); i++) {
-			tempInput = dataset.getData(i);
-			tempPredictions = forward(tempInput);
-
-			for (int j = 0; j < dataset.getNumLabels(); j++) {
+		sweep();
+		int tempNumInstances = dataset.getNumInstances();
+		int tempNumLabels = dataset.getNumLabels();
+		double[][] resultMatrix = new double[tempNumInstances][];
+		for (int i = 0; i < tempNumInstances; i++) {
+			resultMatrix[i] = rawUncertaintyMatrix[i].clone();
+			for (int j = 0; j < tempNumLabels; j++) {
 				// Queried label.
-				if (dataset.getQueriedLabel(i, j) != MultiLabelData.INVALID_LABEL) {
+				if (dataset.getLabelQueried(i, j)) {
 					resultMatrix[i][j] = 0;
-					continue;
-				} // Of if
-
-				if (tempPredictions[2 * j] > tempPredictions[2 * j + 1]) {
-					resultMatrix[i][j] = 1 - tempPredictions[2 * j] + tempPredictions[2 * j + 1];
-				} else {
-					resultMatrix[i][j] = 1 + tempPredictions[2 * j] - tempPredictions[2 * j + 1];
 				} // Of if
 			} // Of for j
 		} // Of for i
@@ -250,21 +667,22 @@ public class MultiLabelAnn {
 	 */
 	public int[] getMostUncertainLabelIndices(int paraNumLabels) {
 		int[] resultArray = new int[1 + paraNumLabels];
-		double[][] tempMatrix = computeLabelUncertaintyMatrix();
+		sweep();
 
 		double tempMax = -1;
 		double tempTotal;
-		int[] tempSortedIndices;
-		for (int i = 0; i < tempMatrix.length; i++) {
-			tempSortedIndices = SimpleTools.mergeSortToIndices(tempMatrix[i]);
-			if (dataset.getLabelQueried(i, tempSortedIndices[paraNumLabels - 1])) {
+		int[] tempLabelIndices = new int[paraNumLabels];
+		double[] tempValues = new double[paraNumLabels];
+		for (int i = 0; i < dataset.getNumInstances(); i++) {
+			selectUncertainLabels(i, tempLabelIndices, tempValues);
+			if (dataset.getLabelQueried(i, tempLabelIndices[paraNumLabels - 1])) {
 				// No enough unknown labels to query.
 				continue;
 			} // Of if
 
 			tempTotal = 0;
 			for (int j = 0; j < paraNumLabels; j++) {
-				tempTotal += tempMatrix[i][tempSortedIndices[j]];
+				tempTotal += tempValues[j];
 			} // Of for j
 
 			if (tempMax < tempTotal) {
@@ -272,7 +690,7 @@ public class MultiLabelAnn {
 
 				resultArray[0] = i;
 				for (int j = 0; j < paraNumLabels; j++) {
-					resultArray[j + 1] = tempSortedIndices[j];
+					resultArray[j + 1] = tempLabelIndices[j];
 				} // Of for j
 			} // Of if
 		} // Of for i
@@ -283,7 +701,16 @@ public class MultiLabelAnn {
 
 	/**
 	 ********************
-	 * Compute a batch of uncertain instances and respective labels.
+	 * Compute a batch of uncertain instances and respective labels. Instances
+	 * are scored one by one: the most uncertain labels of each instance are
+	 * kept in a small sorted array, and the best instances in a bounded heap.
+	 * The uncertainty is read from the cached sweep(), which keeps 2 n L
+	 * doubles for the margins and the uncertainty, hence the memory is O(n L).
+	 * Beyond the sweep, only O(paraInstanceBatch * paraLabelBatch) is
+	 * allocated, and the time is O(n L paraLabelBatch + n log
+	 * paraInstanceBatch). The result is the
+	 * same as fully sorting with SimpleTools.mergeSortToIndices, i.e.,
+	 * descending with ties in ascending index order.
 	 * 
 	 * @param paraInstanceBatch
 	 *            How many instances should be selected.
@@ -294,46 +721,67 @@ public class MultiLabelAnn {
 	 ********************
 	 */
 	public int[][] getUncertainLabelBatch(int paraInstanceBatch, int paraLabelBatch) {
+		int tempNumInstances = dataset.getNumInstances();
+		if (paraInstanceBatch > tempNumInstances || paraLabelBatch > dataset.getNumLabels()) {
+			throw new IllegalArgumentException("Cannot select " + paraInstanceBatch + " x "
+					+ paraLabelBatch + " from " + tempNumInstances + " x "
+					+ dataset.getNumLabels());
+		} // Of if
 		int[][] resultMatrix = new int[paraInstanceBatch][1 + paraLabelBatch];
 
 		// Step 1. Get the uncertainty for all instance-label pairs.
-		double[][] tempUncertaintyMatrix = computeLabelUncertaintyMatrix();
-
-		// Step 2. Get the uncertainty sum for each instance according to the
-		// label batch.
-		double[] tempInstanceUncertainArray = new double[dataset.getNumInstances()];
-		int[] tempSortedLabelIndices;
-		for (int i = 0; i < tempInstanceUncertainArray.length; i++) {
-			tempSortedLabelIndices = SimpleTools.mergeSortToIndices(tempUncertaintyMatrix[i]);
-			if (dataset.getLabelQueried(i, tempSortedLabelIndices[paraLabelBatch - 1])) {
-				// No enough unknown labels to query.
-				tempInstanceUncertainArray[i] = 0;
-			} else {
+		sweep();
+
+		// Step 2. Score each instance by the uncertainty sum of its label batch,
+		// and keep the best ones in a heap whose root is the worst.
+		int[] tempHeapInstances = new int[paraInstanceBatch];
+		double[] tempHeapScores = new double[paraInstanceBatch];
+		int tempHeapSize = 0;
+		int[] tempLabelIndices = new int[paraLabelBatch];
+		double[] tempValues = new double[paraLabelBatch];
+		double tempScore;
+		for (int i = 0; i < tempNumInstances; i++) {
+			selectUncertainLabels(i, tempLabelIndices, tempValues);
+			tempScore = 0;
+			if (!dataset.getLabelQueried(i, tempLabelIndices[paraLabelBatch - 1])) {
 				for (int j = 0; j < paraLabelBatch; j++) {
-					tempInstanceUncertainArray[i] += tempUncertaintyMatrix[i][tempSortedLabelIndices[j]];
+					tempScore += tempValues[j];
 				} // Of for j
 			} // Of if
+
+			if (tempHeapSize < paraInstanceBatch) {
+				tempHeapInstances[tempHeapSize] = i;
+				tempHeapScores[tempHeapSize] = tempScore;
+				siftUp(tempHeapInstances, tempHeapScores, tempHeapSize);
+				tempHeapSize++;
+			} else if (tempScore > tempHeapScores[0]) {
+				// With the same score, the earlier instance is better.
+				tempHeapInstances[0] = i;
+				tempHeapScores[0] = tempScore;
+				siftDown(tempHeapInstances, tempHeapScores, tempHeapSize);
+			} // Of if
 		} // Of for i
 
-		// Step 3. Sort the instance uncertainty.
-		int[] tempSortedInstanceIndices = SimpleTools
-				.mergeSortToIndices(tempInstanceUncertainArray);
+		// Step 3. Sort the selected instances, the best first.
+		for (int i = tempHeapSize - 1; i > 0; i--) {
+			swap(tempHeapInstances, tempHeapScores, 0, i);
+			siftDown(tempHeapInstances, tempHeapScores, i);
+		} // Of for i
 
 		// Step 4. Copy data.
 		for (int i = 0; i < resultMatrix.length; i++) {
-			resultMatrix[i][0] = tempSortedInstanceIndices[i];
+			resultMatrix[i][0] = tempHeapInstances[i];
 
-			tempSortedLabelIndices = SimpleTools
-					.mergeSortToIndices(tempUncertaintyMatrix[tempSortedInstanceIndices[i]]);
+			selectUncertainLabels(tempHeapInstances[i], tempLabelIndices, tempValues);
 			for (int j = 0; j < paraLabelBatch; j++) {
-				resultMatrix[i][j + 1] = tempSortedLabelIndices[j];
+				resultMatrix[i][j + 1] = tempLabelIndices[j];
 			}//Of for j
 		} // Of for i
 
 		System.out.print("Most uncertain: " + Arrays.deepToString(resultMatrix));
 		for (int i = 0; i < resultMatrix.length; i++) {
 			for (int j = 1; j < resultMatrix[0].length; j++) {
-				System.out.print(", " + tempUncertaintyMatrix[resultMatrix[i][0]][resultMatrix[i][j]]);
+				System.out.print(", " + getLabelUncertainty(resultMatrix[i][0], resultMatrix[i][j]));
 			}//Of for j
 		}//Of for i
 		System.out.println();
@@ -341,6 +789,136 @@ public class MultiLabelAnn {
 		return resultMatrix;
 	}// Of getUncertainLabelBatch
 
+	/**
+	 ********************
+	 * Get the uncertainty of an instance-label pair after sweep(). It is 0 for
+	 * queried labels.
+	 * 
+	 * @param paraInstance
+	 *            The instance index.
+	 * @param paraLabel
+	 *            The label index.
+	 * @return The uncertainty.
+	 ********************
+	 */
+	double getLabelUncertainty(int paraInstance, int paraLabel) {
+		if (dataset.getLabelQueried(paraInstance, paraLabel)) {
+			return 0;
+		} // Of if
+		return rawUncertaintyMatrix[paraInstance][paraLabel];
+	}// Of getLabelUncertainty
+
+	/**
+	 ********************
+	 * Select the most uncertain labels of an instance after sweep(), in
+	 * descending uncertainty with ties in ascending label order.
+	 * 
+	 * @param paraInstance
+	 *            The instance index.
+	 * @param paraIndices
+	 *            The array for the label indices. Its length is the number of
+	 *            labels to select.
+	 * @param paraValues
+	 *            The array for the uncertainty of the selected labels.
+	 ********************
+	 */
+	void selectUncertainLabels(int paraInstance, int[] paraIndices, double[] paraValues) {
+		int tempK = paraIndices.length;
+		int tempSize = 0;
+		double tempValue;
+		int tempPosition;
+		for (int j = 0; j < dataset.getNumLabels(); j++) {
+			tempValue = getLabelUncertainty(paraInstance, j);
+			if (tempSize == tempK && !(tempValue > paraValues[tempK - 1])) {
+				continue;
+			} // Of if
+
+			// Labels come in ascending order, so equal values stay before.
+			tempPosition = Math.min(tempSize, tempK - 1);
+			for (; tempPosition > 0 && paraValues[tempPosition - 1] < tempValue; tempPosition--) {
+				paraValues[tempPosition] = paraValues[tempPosition - 1];
+				paraIndices[tempPosition] = paraIndices[tempPosition - 1];
+			} // Of for tempPosition
+			paraValues[tempPosition] = tempValue;
+			paraIndices[tempPosition] = j;
+			if (tempSize < tempK) {
+				tempSize++;
+			} // Of if
+		} // Of for j
+	}// Of selectUncertainLabels
+
+	/**
+	 ********************
+	 * Is the first entry of the instance heap worse than the second? Lower
+	 * scores are worse, and so are later instances with the same score.
+	 ********************
+	 */
+	static boolean worse(int[] paraInstances, double[] paraScores, int paraFirst,
+			int paraSecond) {
+		return paraScores[paraFirst] < paraScores[paraSecond]
+				|| (paraScores[paraFirst] == paraScores[paraSecond]
+						&& paraInstances[paraFirst] > paraInstances[paraSecond]);
+	}// Of worse
+
+	/**
+	 ********************
+	 * Swap two entries of the instance heap.
+	 ********************
+	 */
+	static void swap(int[] paraInstances, double[] paraScores, int paraFirst, int paraSecond) {
+		int tempInstance = paraInstances[paraFirst];
+		paraInstances[paraFirst] = paraInstances[paraSecond];
+		paraInstances[paraSecond] = tempInstance;
+		double tempScore = paraScores[paraFirst];
+		paraScores[paraFirst] = paraScores[paraSecond];
+		paraScores[paraSecond] = tempScore;
+	}// Of swap
+
+	/**
+	 ********************
+	 * Move an entry of the instance heap up until its parent is worse.
+	 ********************
+	 */
+	static void siftUp(int[] paraInstances, double[] paraScores, int paraPosition) {
+		int tempParent;
+		while (paraPosition > 0) {
+			tempParent = (paraPosition - 1) / 2;
+			if (!worse(paraInstances, paraScores, paraPosition, tempParent)) {
+				break;
+			} // Of if
+			swap(paraInstances, paraScores, paraPosition, tempParent);
+			paraPosition = tempParent;
+		} // Of while
+	}// Of siftUp
+
+	/**
+	 ********************
+	 * Move the root of the instance heap down until its children are better.
+	 * 
+	 * @param paraSize
+	 *            The size of the heap.
+	 ********************
+	 */
+	static void siftDown(int[] paraInstances, double[] paraScores, int paraSize) {
+		int tempPosition = 0;
+		int tempChild;
+		while (true) {
+			tempChild = 2 * tempPosition + 1;
+			if (tempChild >= paraSize) {
+				break;
+			} // Of if
+			if (tempChild + 1 < paraSize
+					&& worse(paraInstances, paraScores, tempChild + 1, tempChild)) {
+				tempChild++;
+			} // Of if
+			if (!worse(paraInstances, paraScores, tempChild, tempPosition)) {
+				break;
+			} // Of if
+			swap(paraInstances, paraScores, tempPosition, tempChild);
+			tempPosition = tempChild;
+		} // Of while
+	}// Of siftDown
+
 	/**
 	 ********************
 	 * Forward prediction. This is just a stub and should be overwritten in the
@@ -359,6 +937,126 @@ public class MultiLabelAnn {
 		return resultArray;
 	}// Of forward
 
+	/**
+	 ********************
+	 * Forward prediction of a batch.
+	 * 
+	 * @param paraInputs
+	 *            The input data, one row per instance.
+	 * @return The data at the output end, one row per instance.
+	 ********************
+	 */
+	public double[][] forward(double[][] paraInputs) {
+		double[][] resultMatrix = paraInputs;
+		for (int i = 0; i < layers.length; i++) {
+			resultMatrix = layers[i].forward(resultMatrix);
+		} // Of for i
+		return resultMatrix;
+	}// Of forward
+
+	/**
+	 ********************
+	 * Forward prediction of one instance of the dataset. For sparse data only
+	 * the non-zero values enter the first layer.
+	 * 
+	 * @param paraInstance
+	 *            The instance index.
+	 * @return The data at the output end.
+	 ********************
+	 */
+	public double[] forwardInstance(int paraInstance) {
+		if (!dataset.isSparse()) {
+			return forward(dataset.getData(paraInstance));
+		} // Of if
+
+		SparseMatrix tempMatrix = dataset.getSparseMatrix();
+		int[] tempRowStarts = tempMatrix.getRowStarts();
+		// The first layer is always a full connect one.
+		double[] resultArray = ((FullConnectAnnLayer) layers[0]).forwardSparse(
+				tempMatrix.getColumns(), tempMatrix.getValues(), tempRowStarts[paraInstance],
+				tempRowStarts[paraInstance + 1]);
+		for (int i = 1; i < layers.length; i++) {
+			resultArray = layers[i].forward(resultArray);
+		} // Of for i
+		return resultArray;
+	}// Of forwardInstance
+
+	/**
+	 ********************
+	 * Create the scratch buffers of inference, one array per layer. Each thread
+	 * should own its buffers.
+	 * 
+	 * @return The buffers.
+	 ********************
+	 */
+	public double[][] createWorkspace() {
+		double[][] resultWorkspace = new double[layers.length][];
+		for (int i = 0; i < layers.length; i++) {
+			resultWorkspace[i] = new double[layers[i].getNumOutput()];
+		} // Of for i
+		return resultWorkspace;
+	}// Of createWorkspace
+
+	/**
+	 ********************
+	 * Apply the pending momentum of the sparse path, so that the weights are
+	 * complete for inference. Call it after training and before predict().
+	 ********************
+	 */
+	public void prepareInference() {
+		((FullConnectAnnLayer) layers[0]).catchUpAll();
+	}// Of prepareInference
+
+	/**
+	 ********************
+	 * Inference of one instance of the dataset. The weights are only read, and
+	 * the layer buffers are untouched, hence it may run in many threads with
+	 * their own workspaces while no training is going on.
+	 * 
+	 * @param paraInstance
+	 *            The instance index.
+	 * @param paraWorkspace
+	 *            The buffers from createWorkspace().
+	 * @return The data at the output end, the last array of the workspace.
+	 ********************
+	 */
+	public double[] predict(int paraInstance, double[][] paraWorkspace) {
+		double[] resultArray;
+		if (dataset.isSparse()) {
+			SparseMatrix tempMatrix = dataset.getSparseMatrix();
+			int[] tempRowStarts = tempMatrix.getRowStarts();
+			resultArray = ((FullConnectAnnLayer) layers[0]).inferSparse(tempMatrix.getColumns(),
+					tempMatrix.getValues(), tempRowStarts[paraInstance],
+					tempRowStarts[paraInstance + 1], paraWorkspace[0]);
+		} else {
+			resultArray = layers[0].infer(dataset.getData(paraInstance), paraWorkspace[0]);
+		} // Of if
+
+		for (int i = 1; i < layers.length; i++) {
+			resultArray = layers[i].infer(resultArray, paraWorkspace[i]);
+		} // Of for i
+		return resultArray;
+	}// Of predict
+
+	/**
+	 ********************
+	 * Inference of one input, see predict(int, double[][]).
+	 * 
+	 * @param paraInput
+	 *            The input data of one instance.
+	 * @param paraWorkspace
+	 *            The buffers from createWorkspace().
+	 * @return The data at the output end, the last array of the workspace.
+	 ********************
+	 */
+	public double[] predict(double[] paraInput, double[][] paraWorkspace) {
+		double[] resultArray = paraInput;
+		for (int i = 0; i < layers.length; i++) {
+			resultArray = layers[i].infer(resultArray, paraWorkspace[i]);
+		} // Of for i
+		return resultArray;
+	}// Of predict
+
 	/**
 	 ********************
 	 * Back propagation. This is just a stub and should be overwritten in the
@@ -369,20 +1067,8 @@ public class MultiLabelAnn {
 	 ********************
 	 */
 	public void backPropagation(int[] paraTarget) {
-		// Pre-processing.
-		int[] tempTarget = new int[paraTarget.length * 2];
-		for (int i = 0; i < paraTarget.length; i++) {
-			if (paraTarget[i] == 0) {
-				tempTarget[2 * i] = 1;
-				tempTarget[2 * i + 1] = 0;
-			} else if (paraTarget[i] == 1) {
-				tempTarget[2 * i] = 0;
-				tempTarget[2 * i + 1] = 1;
-			} else {
-				tempTarget[2 * i] = MultiLabelData.INVALID_LABEL;
-				tempTarget[2 * i + 1] = MultiLabelData.INVALID_LABEL;
-			} // Of if
-		} // Of for i
+		weightVersion++;
+		int[] tempTarget = expandTarget(paraTarget);
 
 		double[] tempErrors = layers[layers.length - 1].getLastLayerErrors(tempTarget);
 		for (int i = layers.length - 1; i >= 0; i--) {
@@ -390,6 +1076,53 @@ public class MultiLabelAnn {
 		} // Of for i
 	}// Of backPropagation
 
+	/**
+	 ********************
+	 * Back propagation of a batch after forward(double[][]).
+	 * 
+	 * @param paraTargets
+	 *            The labels, one row per instance.
+	 ********************
+	 */
+	public void backPropagation(int[][] paraTargets) {
+		weightVersion++;
+		int[][] tempTargets = new int[paraTargets.length][];
+		for (int i = 0; i < paraTargets.length; i++) {
+			tempTargets[i] = expandTarget(paraTargets[i]);
+		} // Of for i
+
+		double[][] tempErrors = layers[layers.length - 1].getLastLayerErrors(tempTargets);
+		for (int i = layers.length - 1; i >= 0; i--) {
+			tempErrors = layers[i].backPropagation(tempErrors);
+		} // Of for i
+	}// Of backPropagation
+
+	/**
+	 ********************
+	 * Expand labels to the two outputs of each label.
+	 * 
+	 * @param paraTarget
+	 *            The labels, 0, 1 or INVALID_LABEL.
+	 * @return The targets of the outputs, [1, 0] for 0 and [0, 1] for 1.
+	 ********************
+	 */
+	int[] expandTarget(int[] paraTarget) {
+		int[] resultTarget = new int[paraTarget.length * 2];
+		for (int i = 0; i < paraTarget.length; i++) {
+			if (paraTarget[i] == 0) {
+				resultTarget[2 * i] = 1;
+				resultTarget[2 * i + 1] = 0;
+			} else if (paraTarget[i] == 1) {
+				resultTarget[2 * i] = 0;
+				resultTarget[2 * i + 1] = 1;
+			} else {
+				resultTarget[2 * i] = MultiLabelData.INVALID_LABEL;
+				resultTarget[2 * i + 1] = MultiLabelData.INVALID_LABEL;
+			} // Of if
+		} // Of for i
+		return resultTarget;
+	}// Of expandTarget
+
 	/**
 	 ********************
 	 * Show me.
@@ -400,6 +1133,73 @@ public class MultiLabelAnn {
 		return resultString;
 	}// Of toString
 
+	/**
+	 ********************
+	 * Train until a training accuracy is reached.
+	 * 
+	 * @param paraThreshold
+	 *            The training accuracy to reach.
+	 * @param paraMaxRounds
+	 *            The maximal number of rounds.
+	 * @param paraCheckingRounds
+	 *            Check the training accuracy every some rounds.
+	 * @return The time in milliseconds, not including the checking, or -1 if
+	 *         the accuracy is not reached.
+	 ********************
+	 */
+	public long trainToAccuracy(double paraThreshold, int paraMaxRounds,
+			int paraCheckingRounds) {
+		long resultTime = 0;
+		long tempStart;
+		for (int round = 0; round < paraMaxRounds; round += paraCheckingRounds) {
+			tempStart = System.nanoTime();
+			for (int i = 0; i < paraCheckingRounds; i++) {
+				train();
+			} // Of for i
+			resultTime += System.nanoTime() - tempStart;
+
+			test();
+			if (dataset.computeTrainingAccuracy() >= paraThreshold) {
+				return resultTime / 1000000;
+			} // Of if
+		} // Of for round
+
+		return -1;
+	}// Of trainToAccuracy
+
+	/**
+	 ********************
+	 * Compare the time to a training accuracy of the sequential and the
+	 * asynchronous training.
+	 * 
+	 * @param paraNumThreads
+	 *            The number of threads of the asynchronous training.
+	 ********************
+	 */
+	public static void asynchronousTest(int paraNumThreads) {
+		MultiLabelData tempDataset = new MultiLabelData("data/flags.arff", 14, 12);
+		tempDataset.randomQuery(tempDataset.getNumInstances() * 12 * 8 / 10);
+		int[] tempFullConnectLayerNodes = { 14, 14, 14 };
+		int[] tempParallelLayerNodes = { 8, 2 };
+		double tempThreshold = 0.9;
+
+		for (int i = 0; i < 2; i++) {
+			SimpleTools.random.setSeed(1);
+			MultiLabelAnn tempAnn = new MultiLabelAnn(tempDataset, tempFullConnectLayerNodes,
+					tempParallelLayerNodes, 0.05, 0.6, "sssss");
+			if (i == 1) {
+				tempAnn.setNumThreads(paraNumThreads);
+				tempAnn.setAsynchronous(true);
+			} // Of if
+
+			long tempTime = tempAnn.trainToAccuracy(tempThreshold, 20000, 100);
+			System.out.println((i == 0 ? "Sequential" : "Asynchronous with " + paraNumThreads
+					+ " threads") + ": " + tempTime + " ms to training accuracy "
+					+ tempThreshold);
+			tempAnn.shutdown();
+		} // Of for i
+	}// Of asynchronousTest
+
 	/**
 	 ********************
 	 * Test the algorithm.
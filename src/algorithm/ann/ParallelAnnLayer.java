@@ -1,8 +1,10 @@
 package algorithm.ann;
 
 import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
 
 import data.MultiLabelData;
+import util.ParallelTools;
 import util.SimpleTools;
 
 /**
@@ -11,6 +13,13 @@ import util.SimpleTools;
  * @author minfanphd
  */
 public class ParallelAnnLayer extends GeneralAnnLayer {
+	/**
+	 * The minimal number of weights handled by one thread. Layers with fewer
+	 * weights run in the calling thread, since the work of each part is too
+	 * small to pay for the dispatching.
+	 */
+	public static final int MIN_WEIGHTS_PER_THREAD = 1 << 14;
+
 	/**
 	 * Number of parts.
 	 */
@@ -27,14 +36,33 @@ public class ParallelAnnLayer extends GeneralAnnLayer {
 	int numOutputEachPart;
 
 	/**
-	 * The weight cubic.
+	 * The number of weights of each output, i.e., numInputEachPart + 1 with the
+	 * bias.
 	 */
-	double[][][] weights;
+	int rowLength;
 
 	/**
-	 * The delta weight cubic.
+	 * The weight cubic in one contiguous array, output-major. Output j of part
+	 * i is q = i * numOutputEachPart + j, its weight from input k of the part is
+	 * weights[q * rowLength + k], and its bias is
+	 * weights[q * rowLength + numInputEachPart].
 	 */
-	double[][][] deltaWeights;
+	double[] weights;
+
+	/**
+	 * The delta weight cubic with the same layout as weights.
+	 */
+	double[] deltaWeights;
+
+	/**
+	 * The thread pool for the parts, null for the calling thread.
+	 */
+	ForkJoinPool pool;
+
+	/**
+	 * The number of parts handled by one thread.
+	 */
+	int partsPerBlock;
 
 	/**
 	 *********************
@@ -52,12 +80,15 @@ public class ParallelAnnLayer extends GeneralAnnLayer {
 		numInputEachPart = paraNumInputEachPart;
 		numOutputEachPart = paraNumOutputEachPart;
 
-		weights = new double[numParts][numInputEachPart + 1][numOutputEachPart];
-		deltaWeights = new double[numParts][numInputEachPart + 1][numOutputEachPart];
+		rowLength = numInputEachPart + 1;
+		weights = new double[numParts * numOutputEachPart * rowLength];
+		deltaWeights = new double[numParts * numOutputEachPart * rowLength];
+		// The same random sequence as the former cubic layout.
 		for (int i = 0; i < numParts; i++) {
-			for (int j = 0; j < numInputEachPart + 1; j++) {
+			for (int j = 0; j < rowLength; j++) {
 				for (int k = 0; k < numOutputEachPart; k++) {
-					weights[i][j][k] = SimpleTools.random.nextDouble();
+					weights[(i * numOutputEachPart + k) * rowLength + j] = SimpleTools.random
+							.nextDouble();
 				} // Of for k
 			} // Of for j
 		} // Of for i
@@ -67,8 +98,37 @@ public class ParallelAnnLayer extends GeneralAnnLayer {
 		input = new double[numParts * numInputEachPart];
 		output = new double[numParts * numOutputEachPart];
 		activatedOutput = new double[numParts * numOutputEachPart];
+
+		partsPerBlock = Math.max(1, MIN_WEIGHTS_PER_THREAD / (numOutputEachPart * rowLength));
 	}// Of the first constructor
 
+	/**
+	 ********************
+	 * Set the thread pool. Blocks of parts run in parallel if the layer has
+	 * at least 2 * MIN_WEIGHTS_PER_THREAD weights.
+	 * 
+	 * @param paraPool
+	 *            The pool, null for the calling thread.
+	 ********************
+	 */
+	public void setPool(ForkJoinPool paraPool) {
+		pool = paraPool;
+	}// Of setPool
+
+	/**
+	 ********************
+	 * The number of blocks of parts for the threads.
+	 * 
+	 * @return The number of blocks, 1 for the calling thread.
+	 ********************
+	 */
+	int getNumBlocks() {
+		if (pool == null) {
+			return 1;
+		} // Of if
+		return (numParts + partsPerBlock - 1) / partsPerBlock;
+	}// Of getNumBlocks
+
 	/**
 	 ********************
 	 * Forward prediction.
@@ -85,20 +145,73 @@ public class ParallelAnnLayer extends GeneralAnnLayer {
 			input[i] = paraInput[i];
 		} // Of for i
 
-		// Calculate the weighted sum for each output.
-		for (int i = 0; i < numParts; i++) {
+		// Calculate the weighted sum for each output, block by block of parts.
+		int tempNumBlocks = getNumBlocks();
+		if (tempNumBlocks == 1) {
+			forwardParts(0, numParts);
+		} else {
+			ParallelTools.forEachBlock(pool, tempNumBlocks,
+					paraBlock -> forwardParts(paraBlock * partsPerBlock,
+							Math.min((paraBlock + 1) * partsPerBlock, numParts)));
+		} // Of if
+
+		return activatedOutput;
+	}// Of forward
+
+	/**
+	 ********************
+	 * Forward prediction of some parts.
+	 * 
+	 * @param paraStart
+	 *            The first part.
+	 * @param paraEnd
+	 *            The end part (exclusive).
+	 ********************
+	 */
+	void forwardParts(int paraStart, int paraEnd) {
+		double tempSum;
+		int tempOutput;
+		int tempBase;
+		int tempInputStart;
+		for (int i = paraStart; i < paraEnd; i++) {
+			tempInputStart = i * numInputEachPart;
 			for (int j = 0; j < numOutputEachPart; j++) {
-				output[i * numOutputEachPart + j] = weights[i][numInputEachPart][j];
-				for (int k = 0; k < numInputEachPart; k++) {
-					output[i * numOutputEachPart + j] += input[i * numInputEachPart + k] * weights[i][k][j];
-				} // Of for j
+				tempOutput = i * numOutputEachPart + j;
+				tempBase = tempOutput * rowLength;
+				tempSum = kernel.dot(weights, tempBase, input, tempInputStart, numInputEachPart,
+						weights[tempBase + numInputEachPart]);
+				output[tempOutput] = tempSum;
+				activatedOutput[tempOutput] = activator.activate(tempSum);
+			} // Of for j
+		} // Of for i
+	}// Of forwardParts
 
-				activatedOutput[i * numOutputEachPart + j] = activator.activate(output[i * numOutputEachPart + j]);
-			} // Of for i
+	/**
+	 ********************
+	 * Inference of one instance in the calling thread.
+	 * 
+	 * @param paraInput
+	 *            The input data of one instance.
+	 * @param paraOutput
+	 *            The array for the data at the output end.
+	 * @return paraOutput.
+	 ********************
+	 */
+	public double[] infer(double[] paraInput, double[] paraOutput) {
+		int tempOutput;
+		int tempBase;
+		for (int i = 0; i < numParts; i++) {
+			for (int j = 0; j < numOutputEachPart; j++) {
+				tempOutput = i * numOutputEachPart + j;
+				tempBase = tempOutput * rowLength;
+				paraOutput[tempOutput] = activator.activate(kernel.dot(weights, tempBase,
+						paraInput, i * numInputEachPart, numInputEachPart,
+						weights[tempBase + numInputEachPart]));
+			} // Of for j
 		} // Of for i
 
-		return activatedOutput;
-	}// Of forward
+		return paraOutput;
+	}// Of infer
 
 	/**
 	 ********************
@@ -109,37 +222,180 @@ public class ParallelAnnLayer extends GeneralAnnLayer {
 	 ********************
 	 */
 	public double[] backPropagation(double[] paraErrors) {
+		int tempNumBlocks = getNumBlocks();
+		if (tempNumBlocks == 1) {
+			backPropagationParts(paraErrors, 0, numParts);
+		} else {
+			ParallelTools.forEachBlock(pool, tempNumBlocks,
+					paraBlock -> backPropagationParts(paraErrors, paraBlock * partsPerBlock,
+							Math.min((paraBlock + 1) * partsPerBlock, numParts)));
+		} // Of if
+
+		return errors;
+	}// Of backPropagation
+
+	/**
+	 ********************
+	 * Back propagation of some parts. Parts share no weights and no errors,
+	 * hence blocks of parts may run in parallel.
+	 * 
+	 * @param paraErrors
+	 *            The errors of the output.
+	 * @param paraStart
+	 *            The first part.
+	 * @param paraEnd
+	 *            The end part (exclusive).
+	 ********************
+	 */
+	void backPropagationParts(double[] paraErrors, int paraStart, int paraEnd) {
 		// Step 1. Adjust the errors.
-		for (int i = 0; i < paraErrors.length; i++) {
+		int tempOutputEnd = paraEnd * numOutputEachPart;
+		for (int i = paraStart * numOutputEachPart; i < tempOutputEnd; i++) {
 			paraErrors[i] = activator.derive(output[i], activatedOutput[i]) * paraErrors[i];
 		} // Of for i
 
-		// Step 2. Compute current errors.
-		for (int i = 0; i < numParts; i++) {
-			for (int j = 0; j < numInputEachPart; j++) {
-				errors[i * numInputEachPart + j] = 0;
-				for (int k = 0; k < numOutputEachPart; k++) {
-					// System.out.println("i * numInputEachPart + j = " + (i *
-					// numInputEachPart + j));
-					// System.out.println("j * numOutputEachPart + k = " + (i *
-					// numOutputEachPart + k));
-					errors[i * numInputEachPart + j] += paraErrors[i * numOutputEachPart + k] * weights[i][j][k];
-					deltaWeights[i][j][k] = mobp * deltaWeights[i][j][k]
-							+ learningRate * paraErrors[i * numOutputEachPart + k] * input[i * numInputEachPart + j];
-					weights[i][j][k] += deltaWeights[i][j][k];
-				} // Of for k
-			} // Of for j
-			
+		// Step 2. Compute current errors and update the weights in one pass over
+		// each output row. The error uses the weight before its update.
+		Arrays.fill(errors, paraStart * numInputEachPart, paraEnd * numInputEachPart, 0);
+		double tempError;
+		double tempStep;
+		int tempBase;
+		int tempInputStart;
+		for (int i = paraStart; i < paraEnd; i++) {
+			tempInputStart = i * numInputEachPart;
 			for (int k = 0; k < numOutputEachPart; k++) {
-				deltaWeights[i][numInputEachPart][k] = mobp * deltaWeights[i][numInputEachPart][k]
-						+ learningRate * paraErrors[i * numOutputEachPart + k];
-				weights[i][numInputEachPart][k] += deltaWeights[i][numInputEachPart][k];
+				tempError = paraErrors[i * numOutputEachPart + k];
+				tempStep = learningRate * tempError;
+				tempBase = (i * numOutputEachPart + k) * rowLength;
+				kernel.update(weights, deltaWeights, tempBase, input, errors, tempInputStart,
+						numInputEachPart, tempError, tempStep, mobp);
+
+				deltaWeights[tempBase + numInputEachPart] = mobp
+						* deltaWeights[tempBase + numInputEachPart] + tempStep;
+				weights[tempBase + numInputEachPart] += deltaWeights[tempBase + numInputEachPart];
 			} // Of for k
 		} // Of for i
+	}// Of backPropagationParts
 
-		return errors;
+	/**
+	 ********************
+	 * Forward prediction of a batch. Blocks of parts are visited by all
+	 * instances, as in FullConnectAnnLayer.
+	 * 
+	 * @param paraInputs
+	 *            The input data, one row per instance.
+	 * @return The data at the output end, one row per instance.
+	 ********************
+	 */
+	public double[][] forward(double[][] paraInputs) {
+		prepareBatch(paraInputs);
+
+		int tempNumOutput = numParts * numOutputEachPart;
+		int tempBlockRows = getBlockRows(rowLength);
+		int tempBlockEnd;
+		int tempBase;
+		double[] tempInput;
+		double[] tempOutput;
+		for (int tempBlockStart = 0; tempBlockStart < tempNumOutput;
+				tempBlockStart += tempBlockRows) {
+			tempBlockEnd = Math.min(tempBlockStart + tempBlockRows, tempNumOutput);
+			for (int k = 0; k < paraInputs.length; k++) {
+				tempInput = paraInputs[k];
+				tempOutput = batchOutput[k];
+				for (int q = tempBlockStart; q < tempBlockEnd; q++) {
+					tempBase = q * rowLength;
+					tempOutput[q] = kernel.dot(weights, tempBase, tempInput,
+							(q / numOutputEachPart) * numInputEachPart, numInputEachPart,
+							weights[tempBase + numInputEachPart]);
+					batchActivatedOutput[k][q] = activator.activate(tempOutput[q]);
+				} // Of for q
+			} // Of for k
+		} // Of for tempBlockStart
+
+		return batchActivatedOutput;
+	}// Of forward
+
+	/**
+	 ********************
+	 * Back propagation of a batch. The weights change once with the mean
+	 * gradient of the batch.
+	 * 
+	 * @param paraErrors
+	 *            The errors of the output, one row per instance.
+	 * @return The errors of the input, one row per instance.
+	 ********************
+	 */
+	public double[][] backPropagation(double[][] paraErrors) {
+		double[][] resultErrors = accumulateGradients(paraErrors);
+		applyGradients(gradients, paraErrors.length);
+		return resultErrors;
 	}// Of backPropagation
 
+	/**
+	 ********************
+	 * Accumulate the input errors and the sum of the gradients of a batch
+	 * without changing the weights.
+	 * 
+	 * @param paraErrors
+	 *            The errors of the output, one row per instance.
+	 * @return The errors of the input, one row per instance.
+	 ********************
+	 */
+	public double[][] accumulateGradients(double[][] paraErrors) {
+		// Step 1. Adjust the errors.
+		deriveBatchErrors(paraErrors);
+		if (gradients == null) {
+			gradients = new double[weights.length];
+		} else {
+			Arrays.fill(gradients, 0);
+		} // Of if
+
+		// Step 2. Accumulate the input errors and the gradients with the
+		// weights before the update.
+		int tempNumOutput = numParts * numOutputEachPart;
+		int tempBlockRows = getBlockRows(rowLength);
+		int tempBlockEnd;
+		int tempBase;
+		int tempInputStart;
+		double tempError;
+		for (int tempBlockStart = 0; tempBlockStart < tempNumOutput;
+				tempBlockStart += tempBlockRows) {
+			tempBlockEnd = Math.min(tempBlockStart + tempBlockRows, tempNumOutput);
+			for (int k = 0; k < paraErrors.length; k++) {
+				for (int q = tempBlockStart; q < tempBlockEnd; q++) {
+					tempError = paraErrors[k][q];
+					if (tempError == 0) {
+						continue;
+					} // Of if
+
+					tempBase = q * rowLength;
+					tempInputStart = (q / numOutputEachPart) * numInputEachPart;
+					kernel.axpy(batchErrors[k], tempInputStart, tempError, weights, tempBase,
+							numInputEachPart);
+					kernel.axpy(gradients, tempBase, tempError, batchInput[k], tempInputStart,
+							numInputEachPart);
+					gradients[tempBase + numInputEachPart] += tempError;
+				} // Of for q
+			} // Of for k
+		} // Of for tempBlockStart
+
+		return batchErrors;
+	}// Of accumulateGradients
+
+	/**
+	 ********************
+	 * Change the weights once with the mean of summed gradients.
+	 * 
+	 * @param paraGradients
+	 *            The sum of the gradients of a batch.
+	 * @param paraNumRows
+	 *            The number of instances of the batch.
+	 ********************
+	 */
+	public void applyGradients(double[] paraGradients, int paraNumRows) {
+		kernel.momentum(weights, deltaWeights, paraGradients, learningRate / paraNumRows, mobp);
+	}// Of applyGradients
+
 	/**
 	 ********************
 	 * Implement the method defined in the super-class.
@@ -0,0 +1,54 @@
+package algorithm.ann;
+
+/**
+ * The ANN kernel with the dot product unrolled by four. It keeps four
+ * independent accumulators, which breaks the dependency chain of the additions
+ * that the JIT must keep for a strict floating-point reduction. The summation
+ * order differs from the scalar kernel, hence results may differ in the last
+ * bits. The fused update is element-wise and already vectorized by the JIT, so
+ * it is inherited.
+ * 
+ * @author Fan Min. minfanphd@163.com, minfan@swpu.edu.cn.
+ */
+public class UnrolledAnnKernel extends AnnKernel {
+
+	/**
+	 ********************
+	 * The dot product with four accumulators.
+	 ********************
+	 */
+	public double dot(double[] paraWeights, int paraWeightStart, double[] paraInput,
+			int paraInputStart, int paraLength, double paraInitial) {
+		double tempSum0 = 0;
+		double tempSum1 = 0;
+		double tempSum2 = 0;
+		double tempSum3 = 0;
+		int tempBound = paraLength & ~3;
+		int tempWeight;
+		int tempInput;
+		int i = 0;
+		for (; i < tempBound; i += 4) {
+			tempWeight = paraWeightStart + i;
+			tempInput = paraInputStart + i;
+			tempSum0 += paraInput[tempInput] * paraWeights[tempWeight];
+			tempSum1 += paraInput[tempInput + 1] * paraWeights[tempWeight + 1];
+			tempSum2 += paraInput[tempInput + 2] * paraWeights[tempWeight + 2];
+			tempSum3 += paraInput[tempInput + 3] * paraWeights[tempWeight + 3];
+		} // Of for i
+
+		for (; i < paraLength; i++) {
+			tempSum0 += paraInput[paraInputStart + i] * paraWeights[paraWeightStart + i];
+		} // Of for i
+
+		return paraInitial + ((tempSum0 + tempSum1) + (tempSum2 + tempSum3));
+	}// Of dot
+
+	/**
+	 ********************
+	 * Show me.
+	 ********************
+	 */
+	public String toString() {
+		return "unrolled";
+	}// Of toString
+}// Of class UnrolledAnnKernel
@@ -0,0 +1,415 @@
+package algorithm.density;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import data.DistanceEngine;
+import data.MultiLabelData;
+import util.ParallelTools;
+import util.SimpleTools;
+
+/**
+ * Approximate density peaks for large pools. A random sample of instances
+ * serves as landmarks.
+ * <p>
+ * Step 1. Each instance belongs to the cell of its nearest landmark.
+ * <p>
+ * Step 2. The density of an instance sums the exact kernel values of the
+ * members of the cells of its numProbes nearest landmarks. Members of other
+ * cells are taken as if they were at their landmarks.
+ * <p>
+ * Step 3. The master is searched among the same cells. If none there has
+ * higher density, the master is the nearest one among the cell peaks with
+ * higher density.
+ * <p>
+ * The time is O(n * numLandmarks + n^2 * numProbes / numLandmarks), and
+ * numLandmarks around sqrt(n) is the fastest. numProbes is the accuracy/speed
+ * knob. See accuracyTest() for the rank correlation with the exact ranking.
+ *
+ * @author Fan Min. minfanphd@163.com, minfan@swpu.edu.cn.
+ */
+public class ApproximateDensityPeaks extends DensityPeaks {
+	/**
+	 * The number of landmarks.
+	 */
+	int numLandmarks;
+
+	/**
+	 * The number of nearest landmarks whose cells are searched for the master.
+	 */
+	int numProbes;
+
+	/**
+	 * The seed for choosing landmarks.
+	 */
+	long seed;
+
+	/**
+	 * The landmarks.
+	 */
+	int[] landmarks;
+
+	/**
+	 * The nearest landmarks (indices in landmarks) of each instance, numProbes
+	 * per instance, nearest first.
+	 */
+	int[] probeMatrix;
+
+	/**
+	 * Members of each cell in ascending order, cell after cell.
+	 */
+	int[] cellMembers;
+
+	/**
+	 * The start of each cell in cellMembers, numLandmarks + 1 values.
+	 */
+	int[] cellStarts;
+
+	/**
+	 * The densest member of each cell, the smallest index on ties.
+	 */
+	int[] cellPeaks;
+
+	/**
+	 **********************
+	 * The first constructor.
+	 *
+	 * @param paraDataset
+	 *            The dataset.
+	 * @param paraNumThreads
+	 *            The number of threads. Non-positive for all processors.
+	 * @param paraNumLandmarks
+	 *            The number of landmarks, e.g., 2 * sqrt(numInstances).
+	 * @param paraNumProbes
+	 *            The number of cells searched for each instance, e.g., 4.
+	 * @param paraSeed
+	 *            The seed for choosing landmarks.
+	 **********************
+	 */
+	public ApproximateDensityPeaks(MultiLabelData paraDataset, int paraNumThreads,
+			int paraNumLandmarks, int paraNumProbes, long paraSeed) {
+		super(paraDataset, DistanceEngine.NO_CACHE, paraNumThreads);
+		numLandmarks = Math.max(1, Math.min(paraNumLandmarks, numInstances));
+		numProbes = Math.max(1, Math.min(paraNumProbes, numLandmarks));
+		seed = paraSeed;
+	}// Of the first constructor
+
+	/**
+	 **********************
+	 * Estimate density, masters and representativeness.
+	 *
+	 * @param paraDc
+	 *            The dc ratio.
+	 **********************
+	 */
+	public void compute(double paraDc) {
+		densityArray = new double[numInstances];
+		masterArray = new int[numInstances];
+		distanceToMasterArray = new double[numInstances];
+		representativenessArray = new double[numInstances];
+		if (numInstances == 0) {
+			return;
+		} // Of if
+
+		// Step 1. Choose landmarks by a partial shuffle.
+		Random tempRandom = new Random(seed);
+		int[] tempOrder = new int[numInstances];
+		for (int i = 0; i < numInstances; i++) {
+			tempOrder[i] = i;
+		} // Of for i
+		for (int i = 0; i < numLandmarks; i++) {
+			int tempIndex = i + tempRandom.nextInt(numInstances - i);
+			int tempValue = tempOrder[i];
+			tempOrder[i] = tempOrder[tempIndex];
+			tempOrder[tempIndex] = tempValue;
+		} // Of for i
+		landmarks = Arrays.copyOf(tempOrder, numLandmarks);
+
+		int tempNumBlocks = (numInstances + DistanceEngine.TILE_SIZE - 1)
+				/ DistanceEngine.TILE_SIZE;
+		ForkJoinPool tempPool = ParallelTools.createPool(numThreads);
+		try {
+			// Step 2. Nearest landmarks.
+			probeMatrix = new int[numInstances * numProbes];
+			ParallelTools.forEachBlock(tempPool, tempNumBlocks,
+					paraBlock -> computeProbeBlock(paraBlock));
+
+			// Step 3. Cells by counting sort, members in ascending order.
+			buildCells();
+
+			// Step 4. Density.
+			ParallelTools.forEachBlock(tempPool, tempNumBlocks,
+					paraBlock -> computeCellDensityBlock(paraBlock, paraDc));
+			computeCellPeaks();
+
+			// Step 5. Masters.
+			ParallelTools.forEachBlock(tempPool, tempNumBlocks,
+					paraBlock -> computeCellMasterBlock(paraBlock));
+		} finally {
+			ParallelTools.shutdown(tempPool);
+		} // Of try
+
+		// Step 6. Representativeness.
+		for (int i = 0; i < numInstances; i++) {
+			representativenessArray[i] = densityArray[i] * distanceToMasterArray[i];
+		} // Of for i
+	}// Of compute
+
+	/**
+	 **********************
+	 * Find the nearest landmarks of one block of rows.
+	 *
+	 * @param paraBlock
+	 *            The block index.
+	 **********************
+	 */
+	void computeProbeBlock(int paraBlock) {
+		int tempRowStart = paraBlock * DistanceEngine.TILE_SIZE;
+		int tempRowEnd = Math.min(tempRowStart + DistanceEngine.TILE_SIZE, numInstances);
+		double[] tempProbeDistances = new double[numProbes];
+		double tempDistance;
+		for (int i = tempRowStart; i < tempRowEnd; i++) {
+			int tempOffset = i * numProbes;
+			Arrays.fill(tempProbeDistances, Double.MAX_VALUE);
+			for (int j = 0; j < numLandmarks; j++) {
+				tempDistance = dataset.distance(i, landmarks[j]);
+				if (tempDistance >= tempProbeDistances[numProbes - 1]) {
+					continue;
+				} // Of if
+
+				// Insert into the sorted probes.
+				int k = numProbes - 1;
+				for (; k > 0 && tempProbeDistances[k - 1] > tempDistance; k--) {
+					tempProbeDistances[k] = tempProbeDistances[k - 1];
+					probeMatrix[tempOffset + k] = probeMatrix[tempOffset + k - 1];
+				} // Of for k
+				tempProbeDistances[k] = tempDistance;
+				probeMatrix[tempOffset + k] = j;
+			} // Of for j
+		} // Of for i
+	}// Of computeProbeBlock
+
+	/**
+	 **********************
+	 * Estimate the density of one block of rows.
+	 *
+	 * @param paraBlock
+	 *            The block index.
+	 * @param paraDc
+	 *            The dc ratio.
+	 **********************
+	 */
+	void computeCellDensityBlock(int paraBlock, double paraDc) {
+		int tempRowStart = paraBlock * DistanceEngine.TILE_SIZE;
+		int tempRowEnd = Math.min(tempRowStart + DistanceEngine.TILE_SIZE, numInstances);
+		boolean[] tempProbed = new boolean[numLandmarks];
+		double tempDistance;
+		for (int i = tempRowStart; i < tempRowEnd; i++) {
+			double tempDensity = 0;
+
+			// Exact values of the probed cells.
+			for (int k = 0; k < numProbes; k++) {
+				int tempCell = probeMatrix[i * numProbes + k];
+				tempProbed[tempCell] = true;
+				for (int j = cellStarts[tempCell]; j < cellStarts[tempCell + 1]; j++) {
+					tempDistance = dataset.distance(i, cellMembers[j]);
+					tempDensity += Math.exp(-tempDistance * tempDistance / paraDc / paraDc);
+				} // Of for j
+			} // Of for k
+
+			// Other cells through their landmarks.
+			for (int j = 0; j < numLandmarks; j++) {
+				if (tempProbed[j]) {
+					tempProbed[j] = false;
+					continue;
+				} // Of if
+				tempDistance = dataset.distance(i, landmarks[j]);
+				tempDensity += (cellStarts[j + 1] - cellStarts[j])
+						* Math.exp(-tempDistance * tempDistance / paraDc / paraDc);
+			} // Of for j
+			densityArray[i] = tempDensity;
+		} // Of for i
+	}// Of computeCellDensityBlock
+
+	/**
+	 **********************
+	 * Group instances by their nearest landmarks.
+	 **********************
+	 */
+	void buildCells() {
+		cellStarts = new int[numLandmarks + 1];
+		for (int i = 0; i < numInstances; i++) {
+			cellStarts[probeMatrix[i * numProbes] + 1]++;
+		} // Of for i
+		for (int i = 0; i < numLandmarks; i++) {
+			cellStarts[i + 1] += cellStarts[i];
+		} // Of for i
+
+		cellMembers = new int[numInstances];
+		int[] tempFills = Arrays.copyOf(cellStarts, numLandmarks);
+		for (int i = 0; i < numInstances; i++) {
+			int tempCell = probeMatrix[i * numProbes];
+			cellMembers[tempFills[tempCell]] = i;
+			tempFills[tempCell]++;
+		} // Of for i
+	}// Of buildCells
+
+	/**
+	 **********************
+	 * Find the peak of each cell.
+	 **********************
+	 */
+	void computeCellPeaks() {
+		cellPeaks = new int[numLandmarks];
+		for (int i = 0; i < numLandmarks; i++) {
+			cellPeaks[i] = -1;
+			for (int j = cellStarts[i]; j < cellStarts[i + 1]; j++) {
+				if (cellPeaks[i] == -1
+						|| densityArray[cellMembers[j]] > densityArray[cellPeaks[i]]) {
+					cellPeaks[i] = cellMembers[j];
+				} // Of if
+			} // Of for j
+		} // Of for i
+	}// Of computeCellPeaks
+
+	/**
+	 **********************
+	 * Find the masters of one block of rows.
+	 *
+	 * @param paraBlock
+	 *            The block index.
+	 **********************
+	 */
+	void computeCellMasterBlock(int paraBlock) {
+		int tempRowStart = paraBlock * DistanceEngine.TILE_SIZE;
+		int tempRowEnd = Math.min(tempRowStart + DistanceEngine.TILE_SIZE, numInstances);
+		double tempDistance;
+		for (int i = tempRowStart; i < tempRowEnd; i++) {
+			double tempNearestDistance = NO_MASTER_DISTANCE;
+			int tempMaster = -1;
+
+			// Step 1. Members of the probed cells.
+			for (int k = 0; k < numProbes; k++) {
+				int tempCell = probeMatrix[i * numProbes + k];
+				for (int j = cellStarts[tempCell]; j < cellStarts[tempCell + 1]; j++) {
+					int tempCandidate = cellMembers[j];
+					if (densityArray[tempCandidate] <= densityArray[i]) {
+						continue;
+					} // Of if
+
+					tempDistance = dataset.distance(i, tempCandidate);
+					if (tempDistance < tempNearestDistance) {
+						tempNearestDistance = tempDistance;
+						tempMaster = tempCandidate;
+					} // Of if
+				} // Of for j
+			} // Of for k
+
+			// Step 2. Peaks of all cells.
+			if (tempMaster == -1) {
+				for (int j = 0; j < numLandmarks; j++) {
+					int tempCandidate = cellPeaks[j];
+					if (tempCandidate == -1 || densityArray[tempCandidate] <= densityArray[i]) {
+						continue;
+					} // Of if
+
+					tempDistance = dataset.distance(i, tempCandidate);
+					if (tempDistance < tempNearestDistance) {
+						tempNearestDistance = tempDistance;
+						tempMaster = tempCandidate;
+					} // Of if
+				} // Of for j
+			} // Of if
+
+			masterArray[i] = tempMaster;
+			if (tempMaster != -1) {
+				distanceToMasterArray[i] = tempNearestDistance;
+			} // Of if
+		} // Of for i
+	}// Of computeCellMasterBlock
+
+	/**
+	 **********************
+	 * Spearman's rank correlation of two rankings.
+	 *
+	 * @param paraFirstRank
+	 *            Instances in the first order, e.g., representativenessRankArray.
+	 * @param paraSecondRank
+	 *            Instances in the second order.
+	 * @return The correlation in [-1, 1].
+	 **********************
+	 */
+	public static double rankCorrelation(int[] paraFirstRank, int[] paraSecondRank) {
+		int tempLength = paraFirstRank.length;
+		if (tempLength < 2) {
+			return 1;
+		} // Of if
+
+		int[] tempPositions = new int[tempLength];
+		for (int i = 0; i < tempLength; i++) {
+			tempPositions[paraFirstRank[i]] = i;
+		} // Of for i
+
+		double tempSum = 0;
+		double tempDifference;
+		for (int i = 0; i < tempLength; i++) {
+			tempDifference = tempPositions[paraSecondRank[i]] - i;
+			tempSum += tempDifference * tempDifference;
+		} // Of for i
+
+		return 1 - 6 * tempSum / ((double) tempLength * ((double) tempLength * tempLength - 1));
+	}// Of rankCorrelation
+
+	/**
+	 **********************
+	 * Compare with the exact ranking on a small dataset.
+	 *
+	 * @param paraArffFilename
+	 *            The data filename.
+	 * @param paraNumConditions
+	 *            The number of conditional attributes.
+	 * @param paraNumLabels
+	 *            The number of labels.
+	 * @param paraDc
+	 *            The dc ratio.
+	 **********************
+	 */
+	public static void accuracyTest(String paraArffFilename, int paraNumConditions,
+			int paraNumLabels, double paraDc) {
+		MultiLabelData tempDataset = new MultiLabelData(paraArffFilename, paraNumConditions,
+				paraNumLabels);
+		long tempStartTime = System.currentTimeMillis();
+		DensityPeaks tempExact = new DensityPeaks(tempDataset, DistanceEngine.NO_CACHE, 0);
+		tempExact.compute(paraDc);
+		int[] tempExactRank = SimpleTools.mergeSortToIndices(tempExact.getRepresentativenessArray());
+		System.out.println(paraArffFilename + ", exact: "
+				+ (System.currentTimeMillis() - tempStartTime) + "ms");
+
+		int tempNumLandmarks = (int) (2 * Math.sqrt(tempDataset.getNumInstances()));
+		for (int tempNumProbes = 1; tempNumProbes <= 16; tempNumProbes *= 2) {
+			tempStartTime = System.currentTimeMillis();
+			ApproximateDensityPeaks tempApproximate = new ApproximateDensityPeaks(tempDataset, 0,
+					tempNumLandmarks, tempNumProbes, 0);
+			tempApproximate.compute(paraDc);
+			int[] tempRank = SimpleTools
+					.mergeSortToIndices(tempApproximate.getRepresentativenessArray());
+			System.out.println(tempNumLandmarks + " landmarks, " + tempNumProbes + " probes: "
+					+ (System.currentTimeMillis() - tempStartTime) + "ms, rank correlation "
+					+ rankCorrelation(tempExactRank, tempRank));
+		} // Of for tempNumProbes
+	}// Of accuracyTest
+
+	/**
+	 **********************
+	 * The entrance of the program.
+	 *
+	 * @param args
+	 *            Not used now.
+	 **********************
+	 */
+	public static void main(String[] args) {
+		accuracyTest("data/mliris.arff", 4, 3, 0.12);
+		accuracyTest("data/flags.arff", 14, 12, 0.12);
+	}// Of main
+}// Of class ApproximateDensityPeaks
@@ -0,0 +1,408 @@
+package algorithm.density;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import data.DistanceEngine;
+import data.MultiLabelData;
+import util.ParallelTools;
+
+/**
+ * Density peaks of instances. The density is computed by the Gaussian kernel,
+ * and the master of an instance is the nearest one with higher density. The
+ * representativeness is the product of the density and the distance to the
+ * master. Rows are processed in blocks of DistanceEngine.TILE_SIZE, and blocks
+ * may run in parallel. Each row visits columns in ascending order, hence the
+ * results are bit-identical for any number of threads.
+ * <p>
+ * With a positive cutoff ratio, the density of dense data is computed through a
+ * KD-tree, and only neighbors within cutoffRatio * dc are counted. Each missed
+ * neighbor would contribute less than exp(-cutoffRatio^2), which gives the
+ * reported error bound.
+ * <p>
+ * On request, masters of dense data are found by MasterSearch in descending
+ * density order, which gives the same masters as the scan of all tiles. It
+ * runs in one thread and without the distance cache, hence it is used only
+ * when neither is set.
+ *
+ * @author Fan Min. minfanphd@163.com, minfan@swpu.edu.cn.
+ */
+public class DensityPeaks {
+	/**
+	 * The distance to the master of the densest instance, which has no master.
+	 */
+	public static final double NO_MASTER_DISTANCE = 100000;
+
+	/**
+	 * The dataset.
+	 */
+	MultiLabelData dataset;
+
+	/**
+	 * The number of instances.
+	 */
+	int numInstances;
+
+	/**
+	 * How pairwise distances are kept, e.g., DistanceEngine.HEAP_CACHE.
+	 */
+	int distanceCacheMode;
+
+	/**
+	 * The number of threads. Non-positive for all processors.
+	 */
+	int numThreads;
+
+	/**
+	 * Neighbors beyond cutoffRatio * dc are ignored in density. Non-positive
+	 * for the exact density.
+	 */
+	double cutoffRatio;
+
+	/**
+	 * The maximal absolute error of the truncated density over all instances.
+	 */
+	double densityErrorBound;
+
+	/**
+	 * The maximal relative error of the truncated density over all instances.
+	 */
+	double relativeDensityErrorBound;
+
+	/**
+	 * Find masters through a growing KD-tree instead of scanning all tiles.
+	 * Ignored for sparse data, for more than one thread, or with a distance
+	 * cache.
+	 */
+	boolean useMasterSearch = false;
+
+	/**
+	 * The density of each instance.
+	 */
+	double[] densityArray;
+
+	/**
+	 * The master of each instance, -1 for none.
+	 */
+	int[] masterArray;
+
+	/**
+	 * The distance to the master of each instance, 0 for none.
+	 */
+	double[] distanceToMasterArray;
+
+	/**
+	 * The representativeness of each instance.
+	 */
+	double[] representativenessArray;
+
+	/**
+	 **********************
+	 * The first constructor.
+	 *
+	 * @param paraDataset
+	 *            The dataset.
+	 * @param paraDistanceCacheMode
+	 *            DistanceEngine.NO_CACHE, HEAP_CACHE or MAPPED_CACHE.
+	 * @param paraNumThreads
+	 *            The number of threads. Non-positive for all processors.
+	 **********************
+	 */
+	public DensityPeaks(MultiLabelData paraDataset, int paraDistanceCacheMode,
+			int paraNumThreads) {
+		dataset = paraDataset;
+		numInstances = dataset.getNumInstances();
+		distanceCacheMode = paraDistanceCacheMode;
+		numThreads = paraNumThreads;
+	}// Of the first constructor
+
+	/**
+	 **********************
+	 * Setter. The cutoff is ignored for sparse data, for which the KD-tree
+	 * does not pay off.
+	 *
+	 * @param paraCutoffRatio
+	 *            Neighbors beyond paraCutoffRatio * dc are ignored in density,
+	 *            e.g., 3 for a kernel value below 1.3e-4. Non-positive for the
+	 *            exact density.
+	 **********************
+	 */
+	public void setCutoffRatio(double paraCutoffRatio) {
+		cutoffRatio = paraCutoffRatio;
+	}// Of setCutoffRatio
+
+	/**
+	 **********************
+	 * Setter.
+	 *
+	 * @param paraUseMasterSearch
+	 *            Find masters through MasterSearch, or by scanning all tiles.
+	 *            MasterSearch pays off only on clustered, low dimensional data.
+	 *            It is ignored for sparse data, for more than one thread, or
+	 *            with a distance cache, where the tiles are scanned.
+	 **********************
+	 */
+	public void setUseMasterSearch(boolean paraUseMasterSearch) {
+		useMasterSearch = paraUseMasterSearch;
+	}// Of setUseMasterSearch
+
+	/**
+	 **********************
+	 * Compute density, masters and representativeness.
+	 *
+	 * @param paraDc
+	 *            The dc ratio.
+	 **********************
+	 */
+	public void compute(double paraDc) {
+		ForkJoinPool tempPool = ParallelTools.createPool(numThreads);
+		boolean tempTreeDensity = cutoffRatio > 0 && !dataset.isSparse();
+		// MasterSearch is sequential and reads no cache.
+		boolean tempTreeMaster = useMasterSearch && !dataset.isSparse() && tempPool == null
+				&& distanceCacheMode == DistanceEngine.NO_CACHE;
+		int tempNumBlocks = (numInstances + DistanceEngine.TILE_SIZE - 1)
+				/ DistanceEngine.TILE_SIZE;
+
+		KdTree tempTree = null;
+		DistanceEngine tempEngine = null;
+		try {
+			if (tempTreeDensity || tempTreeMaster) {
+				tempTree = KdTree.build(dataset);
+			} // Of if
+			if (!tempTreeDensity || !tempTreeMaster) {
+				tempEngine = new DistanceEngine(dataset, distanceCacheMode, tempPool);
+			} // Of if
+
+			// Step 1. Calculate density using Gaussian kernel.
+			densityArray = new double[numInstances];
+			densityErrorBound = 0;
+			relativeDensityErrorBound = 0;
+			if (tempTreeDensity) {
+				computeTruncatedDensity(tempPool, tempTree, tempNumBlocks, paraDc);
+			} else {
+				DistanceEngine tempDensityEngine = tempEngine;
+				ParallelTools.forEachBlock(tempPool, tempNumBlocks,
+						paraBlock -> computeDensityBlock(tempDensityEngine, paraBlock, paraDc));
+			} // Of if
+
+			// Step 2. Calculate distance to its master.
+			if (tempTreeMaster) {
+				MasterSearch tempSearch = new MasterSearch(tempTree, NO_MASTER_DISTANCE);
+				tempSearch.search(densityArray);
+				masterArray = tempSearch.getMasterArray();
+				distanceToMasterArray = tempSearch.getDistanceToMasterArray();
+			} else {
+				masterArray = new int[numInstances];
+				distanceToMasterArray = new double[numInstances];
+				DistanceEngine tempMasterEngine = tempEngine;
+				ParallelTools.forEachBlock(tempPool, tempNumBlocks,
+						paraBlock -> computeMasterBlock(tempMasterEngine, paraBlock));
+			} // Of if
+		} finally {
+			if (tempEngine != null) {
+				tempEngine.release();
+			} // Of if
+			ParallelTools.shutdown(tempPool);
+		} // Of try
+
+		// Step 3. Representativeness.
+		representativenessArray = new double[numInstances];
+		for (int i = 0; i < numInstances; i++) {
+			representativenessArray[i] = densityArray[i] * distanceToMasterArray[i];
+		} // Of for i
+	}// Of compute
+
+	/**
+	 **********************
+	 * Compute the density of one block of rows.
+	 *
+	 * @param paraEngine
+	 *            The distance engine.
+	 * @param paraBlock
+	 *            The block index.
+	 * @param paraDc
+	 *            The dc ratio.
+	 **********************
+	 */
+	void computeDensityBlock(DistanceEngine paraEngine, int paraBlock, double paraDc) {
+		int tempTileSize = DistanceEngine.TILE_SIZE;
+		double[] tempTile = new double[tempTileSize * tempTileSize];
+		int tempRowStart = paraBlock * tempTileSize;
+		int tempRowEnd = Math.min(tempRowStart + tempTileSize, numInstances);
+		double tempDistance;
+		for (int tempColumnStart = 0; tempColumnStart < numInstances;
+				tempColumnStart += tempTileSize) {
+			int tempColumnEnd = Math.min(tempColumnStart + tempTileSize, numInstances);
+			int tempWidth = tempColumnEnd - tempColumnStart;
+			paraEngine.computeTile(tempRowStart, tempRowEnd, tempColumnStart, tempColumnEnd,
+					tempTile);
+			for (int i = tempRowStart; i < tempRowEnd; i++) {
+				int tempOffset = (i - tempRowStart) * tempWidth;
+				for (int j = 0; j < tempWidth; j++) {
+					tempDistance = tempTile[tempOffset + j];
+					densityArray[i] += Math.exp(-tempDistance * tempDistance / paraDc / paraDc);
+				} // Of for j
+			} // Of for i
+		} // Of for tempColumnStart
+	}// Of computeDensityBlock
+
+	/**
+	 **********************
+	 * Compute the truncated density through the KD-tree, and the error bounds.
+	 *
+	 * @param paraPool
+	 *            The pool, null for the current thread.
+	 * @param paraTree
+	 *            The KD-tree.
+	 * @param paraNumBlocks
+	 *            The number of row blocks.
+	 * @param paraDc
+	 *            The dc ratio.
+	 **********************
+	 */
+	void computeTruncatedDensity(ForkJoinPool paraPool, KdTree paraTree, int paraNumBlocks,
+			double paraDc) {
+		double[] tempBoundArray = new double[numInstances];
+		ParallelTools.forEachBlock(paraPool, paraNumBlocks,
+				paraBlock -> computeDensityBlock(paraTree, paraBlock, paraDc, tempBoundArray));
+		for (int i = 0; i < numInstances; i++) {
+			densityErrorBound = Math.max(densityErrorBound, tempBoundArray[i]);
+			relativeDensityErrorBound = Math.max(relativeDensityErrorBound,
+					tempBoundArray[i] / densityArray[i]);
+		} // Of for i
+	}// Of computeTruncatedDensity
+
+	/**
+	 **********************
+	 * Compute the truncated density of one block of rows through the KD-tree.
+	 *
+	 * @param paraTree
+	 *            The KD-tree.
+	 * @param paraBlock
+	 *            The block index.
+	 * @param paraDc
+	 *            The dc ratio.
+	 * @param paraBoundArray
+	 *            Filled with the error bound of each instance.
+	 **********************
+	 */
+	void computeDensityBlock(KdTree paraTree, int paraBlock, double paraDc,
+			double[] paraBoundArray) {
+		double tempRadius = cutoffRatio * paraDc;
+		double tempMissedValue = Math.exp(-cutoffRatio * cutoffRatio);
+		int[] tempNeighbors = new int[numInstances];
+		double[] tempDistances = new double[numInstances];
+		int tempRowStart = paraBlock * DistanceEngine.TILE_SIZE;
+		int tempRowEnd = Math.min(tempRowStart + DistanceEngine.TILE_SIZE, numInstances);
+		double tempDistance;
+		for (int i = tempRowStart; i < tempRowEnd; i++) {
+			int tempNumNeighbors = paraTree.searchWithin(paraTree.data[i], tempRadius,
+					tempNeighbors, tempDistances);
+			for (int j = 0; j < tempNumNeighbors; j++) {
+				tempDistance = tempDistances[j];
+				densityArray[i] += Math.exp(-tempDistance * tempDistance / paraDc / paraDc);
+			} // Of for j
+			paraBoundArray[i] = (numInstances - tempNumNeighbors) * tempMissedValue;
+		} // Of for i
+	}// Of computeDensityBlock
+
+	/**
+	 **********************
+	 * Compute the masters of one block of rows. Among the nearest ones with
+	 * higher density, the one with the smallest index is the master.
+	 *
+	 * @param paraEngine
+	 *            The distance engine.
+	 * @param paraBlock
+	 *            The block index.
+	 **********************
+	 */
+	void computeMasterBlock(DistanceEngine paraEngine, int paraBlock) {
+		int tempTileSize = DistanceEngine.TILE_SIZE;
+		double[] tempTile = new double[tempTileSize * tempTileSize];
+		int tempRowStart = paraBlock * tempTileSize;
+		int tempRowEnd = Math.min(tempRowStart + tempTileSize, numInstances);
+		double[] tempNearestDistanceArray = new double[tempRowEnd - tempRowStart];
+		Arrays.fill(tempNearestDistanceArray, NO_MASTER_DISTANCE);
+		Arrays.fill(masterArray, tempRowStart, tempRowEnd, -1);
+
+		double tempDistance;
+		for (int tempColumnStart = 0; tempColumnStart < numInstances;
+				tempColumnStart += tempTileSize) {
+			int tempColumnEnd = Math.min(tempColumnStart + tempTileSize, numInstances);
+			int tempWidth = tempColumnEnd - tempColumnStart;
+			paraEngine.computeTile(tempRowStart, tempRowEnd, tempColumnStart, tempColumnEnd,
+					tempTile);
+			for (int i = tempRowStart; i < tempRowEnd; i++) {
+				int tempOffset = (i - tempRowStart) * tempWidth - tempColumnStart;
+				for (int j = tempColumnStart; j < tempColumnEnd; j++) {
+					if (densityArray[j] <= densityArray[i]) {
+						continue;
+					} // Of if
+
+					// Is this one closer?
+					tempDistance = tempTile[tempOffset + j];
+					if (tempDistance < tempNearestDistanceArray[i - tempRowStart]) {
+						tempNearestDistanceArray[i - tempRowStart] = tempDistance;
+						distanceToMasterArray[i] = tempDistance;
+						masterArray[i] = j;
+					} // Of if
+				} // Of for j
+			} // Of for i
+		} // Of for tempColumnStart
+	}// Of computeMasterBlock
+
+	/**
+	 **********************
+	 * Getter.
+	 **********************
+	 */
+	public double getDensityErrorBound() {
+		return densityErrorBound;
+	}// Of getDensityErrorBound
+
+	/**
+	 **********************
+	 * Getter.
+	 **********************
+	 */
+	public double getRelativeDensityErrorBound() {
+		return relativeDensityErrorBound;
+	}// Of getRelativeDensityErrorBound
+
+	/**
+	 **********************
+	 * Getter.
+	 **********************
+	 */
+	public double[] getDensityArray() {
+		return densityArray;
+	}// Of getDensityArray
+
+	/**
+	 **********************
+	 * Getter.
+	 **********************
+	 */
+	public int[] getMasterArray() {
+		return masterArray;
+	}// Of getMasterArray
+
+	/**
+	 **********************
+	 * Getter.
+	 **********************
+	 */
+	public double[] getDistanceToMasterArray() {
+		return distanceToMasterArray;
+	}// Of getDistanceToMasterArray
+
+	/**
+	 **********************
+	 * Getter.
+	 **********************
+	 */
+	public double[] getRepresentativenessArray() {
+		return representativenessArray;
+	}// Of getRepresentativenessArray
+}// Of class DensityPeaks
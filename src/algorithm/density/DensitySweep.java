@@ -0,0 +1,362 @@
+package algorithm.density;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import data.DistanceEngine;
+import data.MultiLabelData;
+import util.ParallelTools;
+import util.IndexSorter;
+
+/**
+ * Density peaks for a number of dc values at once. Each distance tile is
+ * computed once per pass and serves all dc values. The master relation only
+ * depends on the density order, hence dc values with the same order (ties
+ * included) share one master search. The density is always exact, i.e.,
+ * there is no cutoff. For each dc, the result is bit-identical to DensityPeaks
+ * without a cutoff, with either master pass, since both use the distances of
+ * MultiLabelData.distance().
+ *
+ * @author Fan Min. minfanphd@163.com, minfan@swpu.edu.cn.
+ */
+public class DensitySweep {
+	/**
+	 * The dataset.
+	 */
+	MultiLabelData dataset;
+
+	/**
+	 * The number of instances.
+	 */
+	int numInstances;
+
+	/**
+	 * How pairwise distances are kept, e.g., DistanceEngine.HEAP_CACHE.
+	 */
+	int distanceCacheMode;
+
+	/**
+	 * The number of threads. Non-positive for all processors.
+	 */
+	int numThreads;
+
+	/**
+	 * The dc values.
+	 */
+	double[] dcArray;
+
+	/**
+	 * The density of each instance, one row per dc.
+	 */
+	double[][] densityMatrix;
+
+	/**
+	 * The index of the distinct density order of each dc.
+	 */
+	int[] orderGroups;
+
+	/**
+	 * The dc of each distinct density order.
+	 */
+	int[] groupDcs;
+
+	/**
+	 * The master of each instance, one row per distinct density order.
+	 */
+	int[][] masterMatrix;
+
+	/**
+	 * The distance to the master, one row per distinct density order.
+	 */
+	double[][] distanceToMasterMatrix;
+
+	/**
+	 * The representativeness of each instance, one row per dc.
+	 */
+	double[][] representativenessMatrix;
+
+	/**
+	 * Instances in descending representativeness, one row per dc.
+	 */
+	int[][] rankMatrix;
+
+	/**
+	 * The sorter, its buffers are shared by all dc values.
+	 */
+	IndexSorter sorter = new IndexSorter();
+
+	/**
+	 **********************
+	 * The first constructor.
+	 *
+	 * @param paraDataset
+	 *            The dataset.
+	 * @param paraDistanceCacheMode
+	 *            DistanceEngine.NO_CACHE, HEAP_CACHE or MAPPED_CACHE.
+	 * @param paraNumThreads
+	 *            The number of threads. Non-positive for all processors.
+	 **********************
+	 */
+	public DensitySweep(MultiLabelData paraDataset, int paraDistanceCacheMode,
+			int paraNumThreads) {
+		dataset = paraDataset;
+		numInstances = dataset.getNumInstances();
+		distanceCacheMode = paraDistanceCacheMode;
+		numThreads = paraNumThreads;
+	}// Of the first constructor
+
+	/**
+	 **********************
+	 * Compute density, masters and rankings for all dc values.
+	 *
+	 * @param paraDcArray
+	 *            The dc values.
+	 * @return One ranking per dc, instances in descending representativeness.
+	 **********************
+	 */
+	public int[][] compute(double[] paraDcArray) {
+		dcArray = paraDcArray.clone();
+		int tempNumDcs = dcArray.length;
+		densityMatrix = new double[tempNumDcs][numInstances];
+
+		ForkJoinPool tempPool = ParallelTools.createPool(numThreads);
+		DistanceEngine tempEngine = null;
+		try {
+			tempEngine = new DistanceEngine(dataset, distanceCacheMode, tempPool);
+			DistanceEngine tempFinalEngine = tempEngine;
+			int tempNumBlocks = tempEngine.getNumTiles();
+
+			// Step 1. Density for all dc values in one pass.
+			ParallelTools.forEachBlock(tempPool, tempNumBlocks,
+					paraBlock -> computeDensityBlock(tempFinalEngine, paraBlock));
+
+			// Step 2. Group dc values by density order.
+			groupByOrder();
+
+			// Step 3. Masters for all distinct orders in one pass.
+			int tempNumGroups = groupDcs.length;
+			masterMatrix = new int[tempNumGroups][numInstances];
+			distanceToMasterMatrix = new double[tempNumGroups][numInstances];
+			ParallelTools.forEachBlock(tempPool, tempNumBlocks,
+					paraBlock -> computeMasterBlock(tempFinalEngine, paraBlock));
+		} finally {
+			if (tempEngine != null) {
+				tempEngine.release();
+			} // Of if
+			ParallelTools.shutdown(tempPool);
+		} // Of try
+
+		// Step 4. Representativeness and rankings.
+		representativenessMatrix = new double[tempNumDcs][numInstances];
+		rankMatrix = new int[tempNumDcs][];
+		for (int k = 0; k < tempNumDcs; k++) {
+			double[] tempDistanceToMasterArray = distanceToMasterMatrix[orderGroups[k]];
+			for (int i = 0; i < numInstances; i++) {
+				representativenessMatrix[k][i] = densityMatrix[k][i]
+						* tempDistanceToMasterArray[i];
+			} // Of for i
+			rankMatrix[k] = sorter.sortDescending(representativenessMatrix[k]);
+		} // Of for k
+
+		return rankMatrix;
+	}// Of compute
+
+	/**
+	 **********************
+	 * Compute the density of one block of rows for all dc values.
+	 *
+	 * @param paraEngine
+	 *            The distance engine.
+	 * @param paraBlock
+	 *            The block index.
+	 **********************
+	 */
+	void computeDensityBlock(DistanceEngine paraEngine, int paraBlock) {
+		int tempTileSize = DistanceEngine.TILE_SIZE;
+		double[] tempTile = new double[tempTileSize * tempTileSize];
+		int tempRowStart = paraBlock * tempTileSize;
+		int tempRowEnd = Math.min(tempRowStart + tempTileSize, numInstances);
+		double tempDistance;
+		for (int tempColumnStart = 0; tempColumnStart < numInstances;
+				tempColumnStart += tempTileSize) {
+			int tempColumnEnd = Math.min(tempColumnStart + tempTileSize, numInstances);
+			int tempWidth = tempColumnEnd - tempColumnStart;
+			paraEngine.computeTile(tempRowStart, tempRowEnd, tempColumnStart, tempColumnEnd,
+					tempTile);
+			for (int k = 0; k < dcArray.length; k++) {
+				double tempDc = dcArray[k];
+				double[] tempDensityArray = densityMatrix[k];
+				for (int i = tempRowStart; i < tempRowEnd; i++) {
+					int tempOffset = (i - tempRowStart) * tempWidth;
+					for (int j = 0; j < tempWidth; j++) {
+						tempDistance = tempTile[tempOffset + j];
+						tempDensityArray[i] += Math
+								.exp(-tempDistance * tempDistance / tempDc / tempDc);
+					} // Of for j
+				} // Of for i
+			} // Of for k
+		} // Of for tempColumnStart
+	}// Of computeDensityBlock
+
+	/**
+	 **********************
+	 * Group dc values whose densities have the same order, ties included.
+	 **********************
+	 */
+	void groupByOrder() {
+		int tempNumDcs = dcArray.length;
+		orderGroups = new int[tempNumDcs];
+		int[][] tempOrders = new int[tempNumDcs][];
+		int[] tempGroupDcs = new int[tempNumDcs];
+		int tempNumGroups = 0;
+		for (int k = 0; k < tempNumDcs; k++) {
+			tempOrders[k] = sorter.sortDescending(densityMatrix[k]);
+			orderGroups[k] = -1;
+			for (int g = 0; g < tempNumGroups; g++) {
+				if (sameOrder(tempGroupDcs[g], k, tempOrders)) {
+					orderGroups[k] = g;
+					break;
+				} // Of if
+			} // Of for g
+
+			if (orderGroups[k] == -1) {
+				orderGroups[k] = tempNumGroups;
+				tempGroupDcs[tempNumGroups] = k;
+				tempNumGroups++;
+			} // Of if
+		} // Of for k
+		groupDcs = Arrays.copyOf(tempGroupDcs, tempNumGroups);
+	}// Of groupByOrder
+
+	/**
+	 **********************
+	 * Do two dc values give the same density order? Ties must be the same too.
+	 *
+	 * @param paraFirst
+	 *            The first dc index.
+	 * @param paraSecond
+	 *            The second dc index.
+	 * @param paraOrders
+	 *            The density order of each dc.
+	 * @return True if they are the same.
+	 **********************
+	 */
+	boolean sameOrder(int paraFirst, int paraSecond, int[][] paraOrders) {
+		if (!Arrays.equals(paraOrders[paraFirst], paraOrders[paraSecond])) {
+			return false;
+		} // Of if
+
+		int[] tempOrder = paraOrders[paraFirst];
+		double[] tempFirstArray = densityMatrix[paraFirst];
+		double[] tempSecondArray = densityMatrix[paraSecond];
+		for (int i = 1; i < numInstances; i++) {
+			int tempCurrent = tempOrder[i];
+			int tempPrevious = tempOrder[i - 1];
+			boolean tempFirstTie = tempFirstArray[tempCurrent] == tempFirstArray[tempPrevious];
+			boolean tempSecondTie = tempSecondArray[tempCurrent] == tempSecondArray[tempPrevious];
+			if (tempFirstTie != tempSecondTie) {
+				return false;
+			} // Of if
+		} // Of for i
+		return true;
+	}// Of sameOrder
+
+	/**
+	 **********************
+	 * Compute the masters of one block of rows for all distinct orders.
+	 *
+	 * @param paraEngine
+	 *            The distance engine.
+	 * @param paraBlock
+	 *            The block index.
+	 **********************
+	 */
+	void computeMasterBlock(DistanceEngine paraEngine, int paraBlock) {
+		int tempTileSize = DistanceEngine.TILE_SIZE;
+		double[] tempTile = new double[tempTileSize * tempTileSize];
+		int tempRowStart = paraBlock * tempTileSize;
+		int tempRowEnd = Math.min(tempRowStart + tempTileSize, numInstances);
+		int tempNumGroups = groupDcs.length;
+		int tempNumRows = tempRowEnd - tempRowStart;
+		double[][] tempNearestDistanceMatrix = new double[tempNumGroups][tempNumRows];
+		for (int g = 0; g < tempNumGroups; g++) {
+			Arrays.fill(tempNearestDistanceMatrix[g], DensityPeaks.NO_MASTER_DISTANCE);
+			Arrays.fill(masterMatrix[g], tempRowStart, tempRowEnd, -1);
+		} // Of for g
+
+		double tempDistance;
+		for (int tempColumnStart = 0; tempColumnStart < numInstances;
+				tempColumnStart += tempTileSize) {
+			int tempColumnEnd = Math.min(tempColumnStart + tempTileSize, numInstances);
+			int tempWidth = tempColumnEnd - tempColumnStart;
+			paraEngine.computeTile(tempRowStart, tempRowEnd, tempColumnStart, tempColumnEnd,
+					tempTile);
+			for (int g = 0; g < tempNumGroups; g++) {
+				double[] tempDensityArray = densityMatrix[groupDcs[g]];
+				double[] tempNearestDistanceArray = tempNearestDistanceMatrix[g];
+				for (int i = tempRowStart; i < tempRowEnd; i++) {
+					int tempOffset = (i - tempRowStart) * tempWidth - tempColumnStart;
+					for (int j = tempColumnStart; j < tempColumnEnd; j++) {
+						if (tempDensityArray[j] <= tempDensityArray[i]) {
+							continue;
+						} // Of if
+
+						tempDistance = tempTile[tempOffset + j];
+						if (tempDistance < tempNearestDistanceArray[i - tempRowStart]) {
+							tempNearestDistanceArray[i - tempRowStart] = tempDistance;
+							distanceToMasterMatrix[g][i] = tempDistance;
+							masterMatrix[g][i] = j;
+						} // Of if
+					} // Of for j
+				} // Of for i
+			} // Of for g
+		} // Of for tempColumnStart
+	}// Of computeMasterBlock
+
+	/**
+	 **********************
+	 * Getter.
+	 *
+	 * @param paraDcIndex
+	 *            The index of the dc.
+	 **********************
+	 */
+	public double[] getDensityArray(int paraDcIndex) {
+		return densityMatrix[paraDcIndex];
+	}// Of getDensityArray
+
+	/**
+	 **********************
+	 * Getter.
+	 *
+	 * @param paraDcIndex
+	 *            The index of the dc.
+	 **********************
+	 */
+	public int[] getMasterArray(int paraDcIndex) {
+		return masterMatrix[orderGroups[paraDcIndex]];
+	}// Of getMasterArray
+
+	/**
+	 **********************
+	 * Getter.
+	 *
+	 * @param paraDcIndex
+	 *            The index of the dc.
+	 **********************
+	 */
+	public double[] getRepresentativenessArray(int paraDcIndex) {
+		return representativenessMatrix[paraDcIndex];
+	}// Of getRepresentativenessArray
+
+	/**
+	 **********************
+	 * Getter.
+	 *
+	 * @return The number of distinct density orders, i.e., master searches.
+	 **********************
+	 */
+	public int getNumDistinctOrders() {
+		return groupDcs.length;
+	}// Of getNumDistinctOrders
+}// Of class DensitySweep
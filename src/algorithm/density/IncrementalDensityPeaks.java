@@ -0,0 +1,693 @@
+package algorithm.density;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.TreeSet;
+
+import data.DistanceEngine;
+import data.MultiLabelData;
+import util.SimpleTools;
+
+/**
+ * Density peaks of a growing pool of instances. The density is truncated at
+ * radius = cutoffRatio * dc as in DensityPeaks.setCutoffRatio(), so that a new
+ * instance only changes the density of its neighbors within the radius. Masters
+ * are repaired locally:
+ * <p>
+ * 1. A neighbor whose master is no longer denser searches again, with a
+ * growing radius. Other instances can only get a new master among the
+ * candidates, i.e., the new instance and its neighbors, and only among those
+ * that were not denser before.
+ * <p>
+ * 2. A non-neighbor z is passed by an old candidate c only if the density of z
+ * is in [old density of c, new density of c). These are found in a set sorted
+ * by density.
+ * <p>
+ * 3. A non-neighbor z can only switch to the new instance if their distance is
+ * at most its distance to master. Instances within the radius of the new
+ * instance are its neighbors, hence only the few "far" ones whose distance to
+ * master exceeds the radius, e.g., density peaks, are checked.
+ * <p>
+ * The rank is kept in a sorted set, the same order as
+ * SimpleTools.mergeSortToIndices. New instances are scanned linearly until
+ * they are more than 1/8 of the indexed ones, then the KD-tree is rebuilt.
+ * Rows must be normalized in the same way as the initial data.
+ *
+ * @author Fan Min. minfanphd@163.com, minfan@swpu.edu.cn.
+ */
+public class IncrementalDensityPeaks {
+	/**
+	 * The minimal number of unindexed instances before the KD-tree is rebuilt.
+	 */
+	static final int MIN_REBUILD_SIZE = 256;
+
+	/**
+	 * A key of densitySet with density lowProbeDensity, before real instances
+	 * of the same density.
+	 */
+	static final Integer LOW_PROBE = -1;
+
+	/**
+	 * A key of densitySet with density highProbeDensity, before real
+	 * instances of the same density.
+	 */
+	static final Integer HIGH_PROBE = -2;
+
+	/**
+	 * The distance measure, MultiLabelData.MANHATTAN or EUCLIDEAN.
+	 */
+	int distanceMeasure;
+
+	/**
+	 * The dc ratio.
+	 */
+	double dc;
+
+	/**
+	 * Neighbors beyond this radius are ignored in density.
+	 */
+	double radius;
+
+	/**
+	 * The rows, with spare capacity.
+	 */
+	double[][] rows;
+
+	/**
+	 * The number of instances.
+	 */
+	int numInstances;
+
+	/**
+	 * The KD-tree over the first numIndexed rows.
+	 */
+	KdTree tree;
+
+	/**
+	 * The number of rows in the KD-tree. Later rows are scanned linearly.
+	 */
+	int numIndexed;
+
+	/**
+	 * The truncated density of each instance.
+	 */
+	double[] densityArray;
+
+	/**
+	 * The master of each instance, -1 for none.
+	 */
+	int[] masterArray;
+
+	/**
+	 * The distance to the master of each instance, 0 for none.
+	 */
+	double[] distanceToMasterArray;
+
+	/**
+	 * The representativeness of each instance. It is the key of rankSet.
+	 */
+	double[] representativenessArray;
+
+	/**
+	 * Instances in descending representativeness, ascending index on ties.
+	 */
+	TreeSet<Integer> rankSet;
+
+	/**
+	 * The rank array built from rankSet, null if stale.
+	 */
+	int[] rankArray;
+
+	/**
+	 * Instances in ascending density, ascending index on ties.
+	 */
+	TreeSet<Integer> densitySet;
+
+	/**
+	 * The density of LOW_PROBE in densitySet.
+	 */
+	double lowProbeDensity;
+
+	/**
+	 * The density of HIGH_PROBE in densitySet.
+	 */
+	double highProbeDensity;
+
+	/**
+	 * Instances without a master or with a master beyond the radius.
+	 */
+	TreeSet<Integer> farSet;
+
+	/**
+	 * Instances changed by the current append.
+	 */
+	int[] changedInstances;
+
+	/**
+	 * The number of changed instances.
+	 */
+	int numChanged;
+
+	/**
+	 * Whether or not each instance is changed by the current append.
+	 */
+	boolean[] changedFlags;
+
+	/**
+	 * Whether or not each instance is a candidate master of the current append.
+	 */
+	boolean[] candidateFlags;
+
+	/**
+	 * Neighbor indices of a query.
+	 */
+	int[] neighborIndices;
+
+	/**
+	 * Neighbor distances of a query.
+	 */
+	double[] neighborDistances;
+
+	/**
+	 **********************
+	 * The first constructor.
+	 *
+	 * @param paraRows
+	 *            The initial rows. They are not copied.
+	 * @param paraDistanceMeasure
+	 *            MultiLabelData.MANHATTAN or MultiLabelData.EUCLIDEAN.
+	 * @param paraDc
+	 *            The dc ratio.
+	 * @param paraCutoffRatio
+	 *            Neighbors beyond paraCutoffRatio * dc are ignored, e.g., 3. It
+	 *            should be positive.
+	 **********************
+	 */
+	public IncrementalDensityPeaks(double[][] paraRows, int paraDistanceMeasure, double paraDc,
+			double paraCutoffRatio) {
+		if (paraDc <= 0 || paraCutoffRatio <= 0) {
+			throw new IllegalArgumentException("dc and the cutoff ratio should be positive: "
+					+ paraDc + ", " + paraCutoffRatio);
+		} // Of if
+		distanceMeasure = paraDistanceMeasure;
+		dc = paraDc;
+		radius = paraCutoffRatio * paraDc;
+		numInstances = paraRows.length;
+		int tempCapacity = Math.max(16, numInstances * 2);
+		rows = Arrays.copyOf(paraRows, tempCapacity);
+		densityArray = new double[tempCapacity];
+		masterArray = new int[tempCapacity];
+		distanceToMasterArray = new double[tempCapacity];
+		representativenessArray = new double[tempCapacity];
+		changedInstances = new int[tempCapacity];
+		changedFlags = new boolean[tempCapacity];
+		candidateFlags = new boolean[tempCapacity];
+		neighborIndices = new int[tempCapacity];
+		neighborDistances = new double[tempCapacity];
+		rebuildTree();
+
+		// Step 1. Truncated density.
+		for (int i = 0; i < numInstances; i++) {
+			int tempNumNeighbors = searchWithin(rows[i], radius);
+			for (int j = 0; j < tempNumNeighbors; j++) {
+				densityArray[i] += kernel(neighborDistances[j]);
+			} // Of for j
+		} // Of for i
+
+		// Step 2. Masters.
+		MasterSearch tempSearch = new MasterSearch(tree, DensityPeaks.NO_MASTER_DISTANCE);
+		tempSearch.search(Arrays.copyOf(densityArray, numInstances));
+		System.arraycopy(tempSearch.getMasterArray(), 0, masterArray, 0, numInstances);
+		System.arraycopy(tempSearch.getDistanceToMasterArray(), 0, distanceToMasterArray, 0,
+				numInstances);
+
+		// Step 3. Representativeness and rank.
+		rankSet = new TreeSet<Integer>(new Comparator<Integer>() {
+			public int compare(Integer paraFirst, Integer paraSecond) {
+				double tempFirst = representativenessArray[paraFirst];
+				double tempSecond = representativenessArray[paraSecond];
+				if (tempFirst > tempSecond) {
+					return -1;
+				} else if (tempFirst < tempSecond) {
+					return 1;
+				} // Of if
+				return paraFirst.compareTo(paraSecond);
+			}// Of compare
+		});
+		densitySet = new TreeSet<Integer>(new Comparator<Integer>() {
+			public int compare(Integer paraFirst, Integer paraSecond) {
+				double tempFirst = getSetDensity(paraFirst);
+				double tempSecond = getSetDensity(paraSecond);
+				if (tempFirst < tempSecond) {
+					return -1;
+				} else if (tempFirst > tempSecond) {
+					return 1;
+				} // Of if
+				return paraFirst.compareTo(paraSecond);
+			}// Of compare
+		});
+		farSet = new TreeSet<Integer>();
+		for (int i = 0; i < numInstances; i++) {
+			representativenessArray[i] = densityArray[i] * distanceToMasterArray[i];
+			rankSet.add(i);
+			densitySet.add(i);
+			if (isFar(i)) {
+				farSet.add(i);
+			} // Of if
+		} // Of for i
+	}// Of the first constructor
+
+	/**
+	 **********************
+	 * The second constructor. Sparse data are densified.
+	 *
+	 * @param paraDataset
+	 *            The dataset.
+	 * @param paraDc
+	 *            The dc ratio.
+	 * @param paraCutoffRatio
+	 *            Neighbors beyond paraCutoffRatio * dc are ignored, e.g., 3.
+	 **********************
+	 */
+	public IncrementalDensityPeaks(MultiLabelData paraDataset, double paraDc,
+			double paraCutoffRatio) {
+		this(paraDataset.getDataRows(), paraDataset.distanceMeasure, paraDc, paraCutoffRatio);
+	}// Of the second constructor
+
+	/**
+	 **********************
+	 * The kernel value of a distance.
+	 **********************
+	 */
+	double kernel(double paraDistance) {
+		return Math.exp(-paraDistance * paraDistance / dc / dc);
+	}// Of kernel
+
+	/**
+	 **********************
+	 * The density of a key of densitySet, probes included.
+	 **********************
+	 */
+	double getSetDensity(int paraKey) {
+		if (paraKey == LOW_PROBE) {
+			return lowProbeDensity;
+		} else if (paraKey == HIGH_PROBE) {
+			return highProbeDensity;
+		} // Of if
+		return densityArray[paraKey];
+	}// Of getSetDensity
+
+	/**
+	 **********************
+	 * Is the instance checked against the new instance?
+	 **********************
+	 */
+	boolean isFar(int paraInstance) {
+		return masterArray[paraInstance] == -1 || distanceToMasterArray[paraInstance] > radius;
+	}// Of isFar
+
+	/**
+	 **********************
+	 * Index all rows.
+	 **********************
+	 */
+	void rebuildTree() {
+		tree = new KdTree(Arrays.copyOf(rows, numInstances), distanceMeasure);
+		numIndexed = numInstances;
+	}// Of rebuildTree
+
+	/**
+	 **********************
+	 * Find all instances within the radius, through the KD-tree and then the
+	 * unindexed rows. The results are in neighborIndices and neighborDistances.
+	 *
+	 * @param paraPoint
+	 *            The query point.
+	 * @param paraRadius
+	 *            The radius, inclusive.
+	 * @return The number of neighbors.
+	 **********************
+	 */
+	int searchWithin(double[] paraPoint, double paraRadius) {
+		int resultCount = tree.searchWithin(paraPoint, paraRadius, neighborIndices,
+				neighborDistances);
+		double tempDistance;
+		for (int i = numIndexed; i < numInstances; i++) {
+			tempDistance = tree.distance(paraPoint, rows[i], paraRadius);
+			if (tempDistance <= paraRadius) {
+				neighborIndices[resultCount] = i;
+				neighborDistances[resultCount] = tempDistance;
+				resultCount++;
+			} // Of if
+		} // Of for i
+		return resultCount;
+	}// Of searchWithin
+
+	/**
+	 **********************
+	 * Append an instance, and update density, masters and rank.
+	 *
+	 * @param paraRow
+	 *            The normalized row. It is not copied.
+	 * @return The index of the new instance.
+	 **********************
+	 */
+	public int append(double[] paraRow) {
+		ensureCapacity(numInstances + 1);
+		int tempNew = numInstances;
+		rows[tempNew] = paraRow;
+		numChanged = 0;
+
+		// Step 1. Density of the new instance and its neighbors.
+		int tempNumCandidates = searchWithin(paraRow, radius);
+		int[] tempCandidates = Arrays.copyOf(neighborIndices, tempNumCandidates + 1);
+		double[] tempOldDensities = new double[tempNumCandidates + 1];
+		double tempValue;
+		densityArray[tempNew] = kernel(0);
+		for (int i = 0; i < tempNumCandidates; i++) {
+			int tempCandidate = tempCandidates[i];
+			tempValue = kernel(neighborDistances[i]);
+			densityArray[tempNew] += tempValue;
+			tempOldDensities[i] = densityArray[tempCandidate];
+			densitySet.remove(tempCandidate);
+			densityArray[tempCandidate] += tempValue;
+			densitySet.add(tempCandidate);
+			markChanged(tempCandidate);
+		} // Of for i
+		tempCandidates[tempNumCandidates] = tempNew;
+		tempOldDensities[tempNumCandidates] = Double.NEGATIVE_INFINITY;
+		tempNumCandidates++;
+		numInstances++;
+		masterArray[tempNew] = -1;
+		distanceToMasterArray[tempNew] = 0;
+		representativenessArray[tempNew] = 0;
+		densitySet.add(tempNew);
+		markChanged(tempNew);
+		for (int i = 0; i < tempNumCandidates; i++) {
+			candidateFlags[tempCandidates[i]] = true;
+		} // Of for i
+
+		// Step 2. Neighbors: search again, or check candidates that were not denser.
+		for (int i = 0; i < tempNumCandidates - 1; i++) {
+			int tempInstance = tempCandidates[i];
+			int tempMaster = masterArray[tempInstance];
+			if (tempMaster != -1 && densityArray[tempMaster] <= densityArray[tempInstance]) {
+				searchMaster(tempInstance);
+				continue;
+			} // Of if
+
+			for (int j = 0; j < tempNumCandidates; j++) {
+				if (tempOldDensities[j] <= tempOldDensities[i]) {
+					consider(tempInstance, tempCandidates[j]);
+				} // Of if
+			} // Of for j
+		} // Of for i
+
+		// Step 3. Others whose density is passed by an old candidate.
+		for (int i = 0; i < tempNumCandidates - 1; i++) {
+			int tempCandidate = tempCandidates[i];
+			if (densityArray[tempCandidate] <= tempOldDensities[i]) {
+				continue;
+			} // Of if
+			lowProbeDensity = tempOldDensities[i];
+			highProbeDensity = densityArray[tempCandidate];
+			for (int tempInstance : densitySet.subSet(LOW_PROBE, true, HIGH_PROBE, false)) {
+				if (!candidateFlags[tempInstance]) {
+					consider(tempInstance, tempCandidate);
+				} // Of if
+			} // Of for tempInstance
+		} // Of for i
+
+		// Step 4. Far ones. Those near the new instance are candidates.
+		for (int tempFar : farSet) {
+			if (!candidateFlags[tempFar]) {
+				consider(tempFar, tempNew);
+			} // Of if
+		} // Of for tempFar
+
+		// Step 5. The new instance.
+		searchMaster(tempNew);
+
+		// Step 6. Representativeness and rank of changed instances.
+		for (int i = 0; i < tempNumCandidates; i++) {
+			candidateFlags[tempCandidates[i]] = false;
+		} // Of for i
+		for (int i = 0; i < numChanged; i++) {
+			int tempInstance = changedInstances[i];
+			changedFlags[tempInstance] = false;
+			rankSet.remove(tempInstance);
+			farSet.remove(tempInstance);
+			representativenessArray[tempInstance] = densityArray[tempInstance]
+					* distanceToMasterArray[tempInstance];
+			rankSet.add(tempInstance);
+			if (isFar(tempInstance)) {
+				farSet.add(tempInstance);
+			} // Of if
+		} // Of for i
+		rankArray = null;
+
+		if (numInstances - numIndexed > Math.max(MIN_REBUILD_SIZE, numIndexed / 8)) {
+			rebuildTree();
+		} // Of if
+		return tempNew;
+	}// Of append
+
+	/**
+	 **********************
+	 * Make the candidate the master of the instance if it is denser and nearer
+	 * than the current master. Among equally near ones, the smaller index wins.
+	 *
+	 * @param paraInstance
+	 *            The instance.
+	 * @param paraCandidate
+	 *            The candidate.
+	 **********************
+	 */
+	void consider(int paraInstance, int paraCandidate) {
+		if (densityArray[paraCandidate] <= densityArray[paraInstance]) {
+			return;
+		} // Of if
+
+		int tempMaster = masterArray[paraInstance];
+		double tempBound = tempMaster == -1 ? DensityPeaks.NO_MASTER_DISTANCE
+				: distanceToMasterArray[paraInstance];
+		double tempDistance = tree.distance(rows[paraInstance], rows[paraCandidate], tempBound);
+		if (tempDistance < tempBound || (tempDistance == tempBound && tempMaster != -1
+				&& paraCandidate < tempMaster)) {
+			masterArray[paraInstance] = paraCandidate;
+			distanceToMasterArray[paraInstance] = tempDistance;
+			markChanged(paraInstance);
+		} // Of if
+	}// Of consider
+
+	/**
+	 **********************
+	 * Search the master of an instance from scratch, with a growing radius.
+	 *
+	 * @param paraInstance
+	 *            The instance.
+	 **********************
+	 */
+	void searchMaster(int paraInstance) {
+		markChanged(paraInstance);
+		double tempDensity = densityArray[paraInstance];
+		for (double tempRadius = radius; tempRadius < 2 * DensityPeaks.NO_MASTER_DISTANCE;
+				tempRadius *= 2) {
+			int tempNumNeighbors = searchWithin(rows[paraInstance], tempRadius);
+			int tempMaster = -1;
+			double tempNearestDistance = DensityPeaks.NO_MASTER_DISTANCE;
+			for (int i = 0; i < tempNumNeighbors; i++) {
+				int tempNeighbor = neighborIndices[i];
+				if (densityArray[tempNeighbor] <= tempDensity) {
+					continue;
+				} // Of if
+				if (neighborDistances[i] < tempNearestDistance
+						|| (neighborDistances[i] == tempNearestDistance && tempMaster != -1
+								&& tempNeighbor < tempMaster)) {
+					tempNearestDistance = neighborDistances[i];
+					tempMaster = tempNeighbor;
+				} // Of if
+			} // Of for i
+
+			if (tempMaster != -1 || tempNumNeighbors == numInstances) {
+				masterArray[paraInstance] = tempMaster;
+				distanceToMasterArray[paraInstance] = tempMaster == -1 ? 0
+						: tempNearestDistance;
+				return;
+			} // Of if
+		} // Of for tempRadius
+
+		masterArray[paraInstance] = -1;
+		distanceToMasterArray[paraInstance] = 0;
+	}// Of searchMaster
+
+	/**
+	 **********************
+	 * Record a changed instance.
+	 **********************
+	 */
+	void markChanged(int paraInstance) {
+		if (!changedFlags[paraInstance]) {
+			changedFlags[paraInstance] = true;
+			changedInstances[numChanged] = paraInstance;
+			numChanged++;
+		} // Of if
+	}// Of markChanged
+
+	/**
+	 **********************
+	 * Grow the arrays if needed.
+	 **********************
+	 */
+	void ensureCapacity(int paraCapacity) {
+		if (paraCapacity <= rows.length) {
+			return;
+		} // Of if
+
+		int tempCapacity = Math.max(paraCapacity, rows.length * 2);
+		rows = Arrays.copyOf(rows, tempCapacity);
+		densityArray = Arrays.copyOf(densityArray, tempCapacity);
+		masterArray = Arrays.copyOf(masterArray, tempCapacity);
+		distanceToMasterArray = Arrays.copyOf(distanceToMasterArray, tempCapacity);
+		representativenessArray = Arrays.copyOf(representativenessArray, tempCapacity);
+		changedInstances = Arrays.copyOf(changedInstances, tempCapacity);
+		changedFlags = Arrays.copyOf(changedFlags, tempCapacity);
+		candidateFlags = Arrays.copyOf(candidateFlags, tempCapacity);
+		neighborIndices = Arrays.copyOf(neighborIndices, tempCapacity);
+		neighborDistances = Arrays.copyOf(neighborDistances, tempCapacity);
+	}// Of ensureCapacity
+
+	/**
+	 **********************
+	 * Get the rank. It is built from the sorted set only after changes.
+	 *
+	 * @return Instances in descending representativeness.
+	 **********************
+	 */
+	public int[] getRepresentativenessRankArray() {
+		if (rankArray == null) {
+			rankArray = new int[numInstances];
+			int i = 0;
+			for (int tempInstance : rankSet) {
+				rankArray[i] = tempInstance;
+				i++;
+			} // Of for tempInstance
+		} // Of if
+		return rankArray;
+	}// Of getRepresentativenessRankArray
+
+	/**
+	 **********************
+	 * Getter.
+	 **********************
+	 */
+	public double[] getRepresentativenessArray() {
+		return Arrays.copyOf(representativenessArray, numInstances);
+	}// Of getRepresentativenessArray
+
+	/**
+	 **********************
+	 * Getter.
+	 **********************
+	 */
+	public double[] getDensityArray() {
+		return Arrays.copyOf(densityArray, numInstances);
+	}// Of getDensityArray
+
+	/**
+	 **********************
+	 * Getter.
+	 **********************
+	 */
+	public int[] getMasterArray() {
+		return Arrays.copyOf(masterArray, numInstances);
+	}// Of getMasterArray
+
+	/**
+	 **********************
+	 * Getter.
+	 **********************
+	 */
+	public int getNumInstances() {
+		return numInstances;
+	}// Of getNumInstances
+
+	/**
+	 **********************
+	 * Start with the first half of a dataset, append the others one by one,
+	 * and compare with DensityPeaks on the whole dataset with the same cutoff
+	 * and MasterSearch.
+	 *
+	 * @param paraArffFilename
+	 *            The data filename.
+	 * @param paraNumConditions
+	 *            The number of conditional attributes.
+	 * @param paraNumLabels
+	 *            The number of labels.
+	 * @param paraDc
+	 *            The dc ratio.
+	 * @param paraCutoffRatio
+	 *            The cutoff ratio, e.g., 3.
+	 **********************
+	 */
+	public static void accuracyTest(String paraArffFilename, int paraNumConditions,
+			int paraNumLabels, double paraDc, double paraCutoffRatio) {
+		MultiLabelData tempDataset = new MultiLabelData(paraArffFilename, paraNumConditions,
+				paraNumLabels);
+		int tempNumInstances = tempDataset.getNumInstances();
+		double[][] tempRows = tempDataset.getDataRows();
+
+		long tempStartTime = System.currentTimeMillis();
+		IncrementalDensityPeaks tempIncremental = new IncrementalDensityPeaks(
+				Arrays.copyOf(tempRows, tempNumInstances / 2), tempDataset.distanceMeasure,
+				paraDc, paraCutoffRatio);
+		for (int i = tempNumInstances / 2; i < tempNumInstances; i++) {
+			tempIncremental.append(tempRows[i]);
+		} // Of for i
+		long tempIncrementalTime = System.currentTimeMillis() - tempStartTime;
+
+		tempStartTime = System.currentTimeMillis();
+		DensityPeaks tempFull = new DensityPeaks(tempDataset, DistanceEngine.NO_CACHE, 1);
+		tempFull.setCutoffRatio(paraCutoffRatio);
+		tempFull.compute(paraDc);
+		long tempFullTime = System.currentTimeMillis() - tempStartTime;
+
+		double[] tempDensities = tempIncremental.getDensityArray();
+		double[] tempFullDensities = tempFull.getDensityArray();
+		double tempMaxDifference = 0;
+		for (int i = 0; i < tempNumInstances; i++) {
+			tempMaxDifference = Math.max(tempMaxDifference,
+					Math.abs(tempDensities[i] - tempFullDensities[i]));
+		} // Of for i
+
+		int[] tempMasters = tempIncremental.getMasterArray();
+		int[] tempFullMasters = tempFull.getMasterArray();
+		int tempNumDifferentMasters = 0;
+		for (int i = 0; i < tempNumInstances; i++) {
+			if (tempMasters[i] != tempFullMasters[i]) {
+				tempNumDifferentMasters++;
+			} // Of if
+		} // Of for i
+
+		int[] tempFullRank = SimpleTools.mergeSortToIndices(tempFull.getRepresentativenessArray());
+		System.out.println(paraArffFilename + ": " + (tempNumInstances - tempNumInstances / 2)
+				+ " appends in " + tempIncrementalTime + "ms, full recomputation "
+				+ tempFullTime + "ms");
+		System.out.println("Maximal density difference " + tempMaxDifference + ", "
+				+ tempNumDifferentMasters + " different masters, the same rank: "
+				+ Arrays.equals(tempFullRank, tempIncremental.getRepresentativenessRankArray()));
+	}// Of accuracyTest
+
+	/**
+	 **********************
+	 * The entrance of the program.
+	 *
+	 * @param args
+	 *            Not used now.
+	 **********************
+	 */
+	public static void main(String[] args) {
+		accuracyTest("data/mliris.arff", 4, 3, 0.12, 3);
+		accuracyTest("data/flags.arff", 14, 12, 0.12, 3);
+	}// Of main
+}// Of class IncrementalDensityPeaks
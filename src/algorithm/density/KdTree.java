@@ -0,0 +1,555 @@
+package algorithm.density;
+
+import java.util.Arrays;
+
+import data.MultiLabelData;
+
+/**
+ * A KD-tree over dense instances. Each node keeps the bounding box of its
+ * instances, so that subtrees beyond a radius are skipped. Distances are
+ * computed in the same way as MultiLabelData.distance(), i.e., Manhattan or
+ * squared Euclidean, and a distance computation is abandoned once it exceeds
+ * the bound. Radius queries only read the tree, hence they can run in multiple
+ * threads. For a growing index, instances are activated one by one, and
+ * nearest neighbor queries only consider active instances.
+ *
+ * @author Fan Min. minfanphd@163.com, minfan@swpu.edu.cn.
+ */
+public class KdTree {
+	/**
+	 * The maximal number of instances in a leaf.
+	 */
+	public static final int LEAF_SIZE = 16;
+
+	/**
+	 * The data, one row per instance.
+	 */
+	double[][] data;
+
+	/**
+	 * The number of instances.
+	 */
+	int numInstances;
+
+	/**
+	 * The number of conditions.
+	 */
+	int numConditions;
+
+	/**
+	 * MultiLabelData.MANHATTAN or MultiLabelData.EUCLIDEAN.
+	 */
+	int distanceMeasure;
+
+	/**
+	 * Instance indices ordered by the tree. Each node covers a range.
+	 */
+	int[] indices;
+
+	/**
+	 * The number of nodes.
+	 */
+	int numNodes;
+
+	/**
+	 * The first position of each node in indices.
+	 */
+	int[] nodeStarts;
+
+	/**
+	 * The last position of each node in indices, exclusive.
+	 */
+	int[] nodeEnds;
+
+	/**
+	 * The left child of each node, -1 for leaves.
+	 */
+	int[] leftChildren;
+
+	/**
+	 * The right child of each node, -1 for leaves.
+	 */
+	int[] rightChildren;
+
+	/**
+	 * The lower corner of each bounding box, numConditions values per node.
+	 */
+	double[] lowerBounds;
+
+	/**
+	 * The upper corner of each bounding box, numConditions values per node.
+	 */
+	double[] upperBounds;
+
+	/**
+	 * The parent of each node, -1 for the root.
+	 */
+	int[] parents;
+
+	/**
+	 * The leaf of each instance.
+	 */
+	int[] instanceLeaves;
+
+	/**
+	 * Whether or not each instance is active.
+	 */
+	boolean[] activeArray;
+
+	/**
+	 * The number of active instances of each node.
+	 */
+	int[] nodeActiveCounts;
+
+	/**
+	 **********************
+	 * The first constructor.
+	 *
+	 * @param paraData
+	 *            The data, one row per instance. It is not copied.
+	 * @param paraDistanceMeasure
+	 *            MultiLabelData.MANHATTAN or MultiLabelData.EUCLIDEAN.
+	 **********************
+	 */
+	public KdTree(double[][] paraData, int paraDistanceMeasure) {
+		data = paraData;
+		numInstances = data.length;
+		numConditions = numInstances == 0 ? 0 : data[0].length;
+		distanceMeasure = paraDistanceMeasure;
+
+		indices = new int[numInstances];
+		for (int i = 0; i < numInstances; i++) {
+			indices[i] = i;
+		} // Of for i
+
+		int tempCapacity = 2 * (numInstances / (LEAF_SIZE / 2) + 1);
+		nodeStarts = new int[tempCapacity];
+		nodeEnds = new int[tempCapacity];
+		leftChildren = new int[tempCapacity];
+		rightChildren = new int[tempCapacity];
+		parents = new int[tempCapacity];
+		lowerBounds = new double[tempCapacity * numConditions];
+		upperBounds = new double[tempCapacity * numConditions];
+		numNodes = 0;
+		if (numInstances > 0) {
+			buildNode(0, numInstances, -1);
+		} // Of if
+
+		instanceLeaves = new int[numInstances];
+		for (int i = 0; i < numNodes; i++) {
+			if (leftChildren[i] == -1) {
+				for (int j = nodeStarts[i]; j < nodeEnds[i]; j++) {
+					instanceLeaves[indices[j]] = i;
+				} // Of for j
+			} // Of if
+		} // Of for i
+		activeArray = new boolean[numInstances];
+		nodeActiveCounts = new int[numNodes];
+	}// Of the first constructor
+
+	/**
+	 **********************
+	 * Build the tree from the dataset. Sparse data are densified.
+	 *
+	 * @param paraDataset
+	 *            The dataset.
+	 * @return The tree.
+	 **********************
+	 */
+	public static KdTree build(MultiLabelData paraDataset) {
+		return new KdTree(paraDataset.getDataRows(),
+				paraDataset.distanceMeasure);
+	}// Of build
+
+	/**
+	 **********************
+	 * Build a node and its subtrees.
+	 *
+	 * @param paraStart
+	 *            The first position in indices.
+	 * @param paraEnd
+	 *            The last position in indices, exclusive.
+	 * @param paraParent
+	 *            The parent node, -1 for the root.
+	 * @return The node index.
+	 **********************
+	 */
+	int buildNode(int paraStart, int paraEnd, int paraParent) {
+		int resultNode = numNodes;
+		numNodes++;
+		parents[resultNode] = paraParent;
+		nodeStarts[resultNode] = paraStart;
+		nodeEnds[resultNode] = paraEnd;
+		leftChildren[resultNode] = -1;
+		rightChildren[resultNode] = -1;
+
+		// Step 1. The bounding box.
+		int tempOffset = resultNode * numConditions;
+		Arrays.fill(lowerBounds, tempOffset, tempOffset + numConditions,
+				Double.POSITIVE_INFINITY);
+		Arrays.fill(upperBounds, tempOffset, tempOffset + numConditions,
+				Double.NEGATIVE_INFINITY);
+		for (int i = paraStart; i < paraEnd; i++) {
+			double[] tempRow = data[indices[i]];
+			for (int j = 0; j < numConditions; j++) {
+				if (tempRow[j] < lowerBounds[tempOffset + j]) {
+					lowerBounds[tempOffset + j] = tempRow[j];
+				} // Of if
+				if (tempRow[j] > upperBounds[tempOffset + j]) {
+					upperBounds[tempOffset + j] = tempRow[j];
+				} // Of if
+			} // Of for j
+		} // Of for i
+
+		if (paraEnd - paraStart <= LEAF_SIZE) {
+			return resultNode;
+		} // Of if
+
+		// Step 2. Split the widest dimension at the median.
+		int tempDimension = 0;
+		double tempWidest = -1;
+		for (int j = 0; j < numConditions; j++) {
+			double tempWidth = upperBounds[tempOffset + j] - lowerBounds[tempOffset + j];
+			if (tempWidth > tempWidest) {
+				tempWidest = tempWidth;
+				tempDimension = j;
+			} // Of if
+		} // Of for j
+		if (tempWidest <= 0) {
+			// All instances are identical.
+			return resultNode;
+		} // Of if
+
+		int tempMiddle = (paraStart + paraEnd) >>> 1;
+		select(paraStart, paraEnd, tempMiddle, tempDimension);
+
+		// Step 3. Children.
+		leftChildren[resultNode] = buildNode(paraStart, tempMiddle, resultNode);
+		rightChildren[resultNode] = buildNode(tempMiddle, paraEnd, resultNode);
+		return resultNode;
+	}// Of buildNode
+
+	/**
+	 **********************
+	 * Partially order indices in the range, so that the k-th one is in its
+	 * sorted position on the given dimension (Hoare's selection).
+	 *
+	 * @param paraStart
+	 *            The first position.
+	 * @param paraEnd
+	 *            The last position, exclusive.
+	 * @param paraK
+	 *            The position to be fixed.
+	 * @param paraDimension
+	 *            The dimension.
+	 **********************
+	 */
+	void select(int paraStart, int paraEnd, int paraK, int paraDimension) {
+		int tempLeft = paraStart;
+		int tempRight = paraEnd - 1;
+		while (tempLeft < tempRight) {
+			double tempPivot = data[indices[(tempLeft + tempRight) >>> 1]][paraDimension];
+			int i = tempLeft;
+			int j = tempRight;
+			while (i <= j) {
+				while (data[indices[i]][paraDimension] < tempPivot) {
+					i++;
+				} // Of while
+				while (data[indices[j]][paraDimension] > tempPivot) {
+					j--;
+				} // Of while
+				if (i <= j) {
+					int tempIndex = indices[i];
+					indices[i] = indices[j];
+					indices[j] = tempIndex;
+					i++;
+					j--;
+				} // Of if
+			} // Of while
+
+			if (paraK <= j) {
+				tempRight = j;
+			} else if (paraK >= i) {
+				tempLeft = i;
+			} else {
+				return;
+			} // Of if
+		} // Of while
+	}// Of select
+
+	/**
+	 **********************
+	 * The distance between two rows. The computation stops as soon as the
+	 * partial sum exceeds the bound.
+	 *
+	 * @param paraFirst
+	 *            The first row.
+	 * @param paraSecond
+	 *            The second row.
+	 * @param paraBound
+	 *            The bound.
+	 * @return The distance, or some value greater than the bound.
+	 **********************
+	 */
+	double distance(double[] paraFirst, double[] paraSecond, double paraBound) {
+		double resultDistance = 0;
+		double tempDifference;
+		if (distanceMeasure == MultiLabelData.MANHATTAN) {
+			for (int i = 0; i < numConditions; i++) {
+				tempDifference = paraFirst[i] - paraSecond[i];
+				if (tempDifference < 0) {
+					resultDistance -= tempDifference;
+				} else {
+					resultDistance += tempDifference;
+				} // Of if
+				if (resultDistance > paraBound) {
+					return resultDistance;
+				} // Of if
+			} // Of for i
+		} else {
+			for (int i = 0; i < numConditions; i++) {
+				tempDifference = paraFirst[i] - paraSecond[i];
+				resultDistance += tempDifference * tempDifference;
+				if (resultDistance > paraBound) {
+					return resultDistance;
+				} // Of if
+			} // Of for i
+		} // Of if
+		return resultDistance;
+	}// Of distance
+
+	/**
+	 **********************
+	 * The minimal distance between a point and the bounding box of a node.
+	 * The computation stops as soon as the partial sum exceeds the bound.
+	 *
+	 * @param paraPoint
+	 *            The point.
+	 * @param paraNode
+	 *            The node.
+	 * @param paraBound
+	 *            The bound.
+	 * @return The distance, or some value greater than the bound.
+	 **********************
+	 */
+	double boxDistance(double[] paraPoint, int paraNode, double paraBound) {
+		int tempOffset = paraNode * numConditions;
+		double resultDistance = 0;
+		double tempGap;
+		for (int i = 0; i < numConditions; i++) {
+			tempGap = lowerBounds[tempOffset + i] - paraPoint[i];
+			if (tempGap < 0) {
+				tempGap = paraPoint[i] - upperBounds[tempOffset + i];
+				if (tempGap < 0) {
+					continue;
+				} // Of if
+			} // Of if
+
+			if (distanceMeasure == MultiLabelData.MANHATTAN) {
+				resultDistance += tempGap;
+			} else {
+				resultDistance += tempGap * tempGap;
+			} // Of if
+			if (resultDistance > paraBound) {
+				return resultDistance;
+			} // Of if
+		} // Of for i
+		return resultDistance;
+	}// Of boxDistance
+
+	/**
+	 **********************
+	 * Find all instances within the radius, the query itself included.
+	 *
+	 * @param paraPoint
+	 *            The query point.
+	 * @param paraRadius
+	 *            The radius, inclusive.
+	 * @param paraIndices
+	 *            Filled with the neighbors. Its length should be at least the
+	 *            number of instances.
+	 * @param paraDistances
+	 *            Filled with the distances to the neighbors.
+	 * @return The number of neighbors.
+	 **********************
+	 */
+	public int searchWithin(double[] paraPoint, double paraRadius, int[] paraIndices,
+			double[] paraDistances) {
+		if (numInstances == 0) {
+			return 0;
+		} // Of if
+		return searchWithin(0, paraPoint, paraRadius, paraIndices, paraDistances, 0);
+	}// Of searchWithin
+
+	/**
+	 **********************
+	 * Find all instances of the subtree within the radius.
+	 *
+	 * @param paraNode
+	 *            The root of the subtree.
+	 * @param paraPoint
+	 *            The query point.
+	 * @param paraRadius
+	 *            The radius, inclusive.
+	 * @param paraIndices
+	 *            Filled with the neighbors.
+	 * @param paraDistances
+	 *            Filled with the distances to the neighbors.
+	 * @param paraCount
+	 *            The number of neighbors found so far.
+	 * @return The number of neighbors found so far.
+	 **********************
+	 */
+	int searchWithin(int paraNode, double[] paraPoint, double paraRadius, int[] paraIndices,
+			double[] paraDistances, int paraCount) {
+		if (boxDistance(paraPoint, paraNode, paraRadius) > paraRadius) {
+			return paraCount;
+		} // Of if
+
+		if (leftChildren[paraNode] == -1) {
+			double tempDistance;
+			for (int i = nodeStarts[paraNode]; i < nodeEnds[paraNode]; i++) {
+				tempDistance = distance(paraPoint, data[indices[i]], paraRadius);
+				if (tempDistance <= paraRadius) {
+					paraIndices[paraCount] = indices[i];
+					paraDistances[paraCount] = tempDistance;
+					paraCount++;
+				} // Of if
+			} // Of for i
+			return paraCount;
+		} // Of if
+
+		paraCount = searchWithin(leftChildren[paraNode], paraPoint, paraRadius, paraIndices,
+				paraDistances, paraCount);
+		return searchWithin(rightChildren[paraNode], paraPoint, paraRadius, paraIndices,
+				paraDistances, paraCount);
+	}// Of searchWithin
+
+	/**
+	 **********************
+	 * Activate an instance for nearest neighbor queries.
+	 *
+	 * @param paraInstance
+	 *            The instance.
+	 **********************
+	 */
+	public void activate(int paraInstance) {
+		if (activeArray[paraInstance]) {
+			return;
+		} // Of if
+
+		activeArray[paraInstance] = true;
+		for (int i = instanceLeaves[paraInstance]; i != -1; i = parents[i]) {
+			nodeActiveCounts[i]++;
+		} // Of for i
+	}// Of activate
+
+	/**
+	 **********************
+	 * Deactivate all instances.
+	 **********************
+	 */
+	public void deactivateAll() {
+		Arrays.fill(activeArray, false);
+		Arrays.fill(nodeActiveCounts, 0);
+	}// Of deactivateAll
+
+	/**
+	 **********************
+	 * Find the nearest active instance. Among equally near ones, the one with
+	 * the smallest index is chosen.
+	 *
+	 * @param paraPoint
+	 *            The query point.
+	 * @param paraBound
+	 *            Only instances nearer than the bound are considered.
+	 * @param paraDistanceHolder
+	 *            The first element is filled with the distance to the nearest
+	 *            one.
+	 * @return The nearest active instance, -1 if none is nearer than the bound.
+	 **********************
+	 */
+	public int searchNearestActive(double[] paraPoint, double paraBound,
+			double[] paraDistanceHolder) {
+		// The nearest index and its distance.
+		double[] tempBest = { -1, paraBound };
+		if (numInstances > 0) {
+			searchNearestActive(0, paraPoint, tempBest);
+		} // Of if
+
+		paraDistanceHolder[0] = tempBest[1];
+		return (int) tempBest[0];
+	}// Of searchNearestActive
+
+	/**
+	 **********************
+	 * Find the nearest active instance in the subtree.
+	 *
+	 * @param paraNode
+	 *            The root of the subtree.
+	 * @param paraPoint
+	 *            The query point.
+	 * @param paraBest
+	 *            The nearest index and its distance so far.
+	 **********************
+	 */
+	void searchNearestActive(int paraNode, double[] paraPoint, double[] paraBest) {
+		if (leftChildren[paraNode] == -1) {
+			double tempDistance;
+			for (int i = nodeStarts[paraNode]; i < nodeEnds[paraNode]; i++) {
+				int tempIndex = indices[i];
+				if (!activeArray[tempIndex]) {
+					continue;
+				} // Of if
+
+				tempDistance = distance(paraPoint, data[tempIndex], paraBest[1]);
+				if (tempDistance < paraBest[1] || (tempDistance == paraBest[1]
+						&& paraBest[0] != -1 && tempIndex < paraBest[0])) {
+					paraBest[0] = tempIndex;
+					paraBest[1] = tempDistance;
+				} // Of if
+			} // Of for i
+			return;
+		} // Of if
+
+		// The nearer child first.
+		int tempFirst = leftChildren[paraNode];
+		int tempSecond = rightChildren[paraNode];
+		double tempFirstDistance = boxDistance(paraPoint, tempFirst, paraBest[1]);
+		double tempSecondDistance = boxDistance(paraPoint, tempSecond, paraBest[1]);
+		if (tempSecondDistance < tempFirstDistance) {
+			int tempNode = tempFirst;
+			tempFirst = tempSecond;
+			tempSecond = tempNode;
+			double tempDistance = tempFirstDistance;
+			tempFirstDistance = tempSecondDistance;
+			tempSecondDistance = tempDistance;
+		} // Of if
+
+		// Equal distances are not pruned, so that ties go to the smallest index.
+		if (nodeActiveCounts[tempFirst] > 0 && tempFirstDistance <= paraBest[1]) {
+			searchNearestActive(tempFirst, paraPoint, paraBest);
+		} // Of if
+		if (nodeActiveCounts[tempSecond] > 0 && tempSecondDistance <= paraBest[1]) {
+			searchNearestActive(tempSecond, paraPoint, paraBest);
+		} // Of if
+	}// Of searchNearestActive
+
+	/**
+	 **********************
+	 * Getter.
+	 **********************
+	 */
+	public int getNumInstances() {
+		return numInstances;
+	}// Of getNumInstances
+
+	/**
+	 **********************
+	 * Getter.
+	 **********************
+	 */
+	public int getNumNodes() {
+		return numNodes;
+	}// Of getNumNodes
+}// Of class KdTree
@@ -0,0 +1,105 @@
+package algorithm.density;
+
+import util.IndexSorter;
+
+/**
+ * Find the master of each instance, i.e., the nearest one with higher
+ * priority, e.g., density. Instances are processed in descending priority and
+ * activated in a KD-tree after their group of equal priority, so that each
+ * query only sees instances of strictly higher priority. The result is the
+ * same as scanning all instances in ascending index order: among equally near
+ * ones, the one with the smallest index is the master. It can be used by any
+ * density peak style selector.
+ *
+ * @author Fan Min. minfanphd@163.com, minfan@swpu.edu.cn.
+ */
+public class MasterSearch {
+	/**
+	 * The KD-tree.
+	 */
+	KdTree tree;
+
+	/**
+	 * Only instances nearer than the bound may be masters.
+	 */
+	double bound;
+
+	/**
+	 * The master of each instance, -1 for none.
+	 */
+	int[] masterArray;
+
+	/**
+	 * The distance to the master of each instance, 0 for none.
+	 */
+	double[] distanceToMasterArray;
+
+	/**
+	 **********************
+	 * The first constructor.
+	 *
+	 * @param paraTree
+	 *            The KD-tree over all instances. It is deactivated before
+	 *            each search.
+	 * @param paraBound
+	 *            Only instances nearer than the bound may be masters.
+	 **********************
+	 */
+	public MasterSearch(KdTree paraTree, double paraBound) {
+		tree = paraTree;
+		bound = paraBound;
+	}// Of the first constructor
+
+	/**
+	 **********************
+	 * Find the masters.
+	 *
+	 * @param paraPriorityArray
+	 *            The priority of each instance, e.g., density.
+	 **********************
+	 */
+	public void search(double[] paraPriorityArray) {
+		int tempNumInstances = tree.getNumInstances();
+		masterArray = new int[tempNumInstances];
+		distanceToMasterArray = new double[tempNumInstances];
+		int[] tempOrder = new IndexSorter().sortDescending(paraPriorityArray);
+		double[] tempDistanceHolder = new double[1];
+
+		tree.deactivateAll();
+		int tempGroupStart = 0;
+		for (int i = 0; i < tempNumInstances; i++) {
+			int tempInstance = tempOrder[i];
+
+			// Activate the previous group with higher priority.
+			if (paraPriorityArray[tempInstance] != paraPriorityArray[tempOrder[tempGroupStart]]) {
+				for (; tempGroupStart < i; tempGroupStart++) {
+					tree.activate(tempOrder[tempGroupStart]);
+				} // Of for tempGroupStart
+			} // Of if
+
+			masterArray[tempInstance] = tree.searchNearestActive(tree.data[tempInstance], bound,
+					tempDistanceHolder);
+			if (masterArray[tempInstance] != -1) {
+				distanceToMasterArray[tempInstance] = tempDistanceHolder[0];
+			} // Of if
+		} // Of for i
+	}// Of search
+
+	/**
+	 **********************
+	 * Getter.
+	 **********************
+	 */
+	public int[] getMasterArray() {
+		return masterArray;
+	}// Of getMasterArray
+
+	/**
+	 **********************
+	 * Getter.
+	 **********************
+	 */
+	public double[] getDistanceToMasterArray() {
+		return distanceToMasterArray;
+	}// Of getDistanceToMasterArray
+}// Of class MasterSearch
@@ -0,0 +1,263 @@
+package algorithm.density;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import data.MultiLabelData;
+
+/**
+ * A cache of representativeness and its rank. It is keyed by the content hash
+ * of the data, the distance measure, dc and the method, e.g., "exact-c0". Recent
+ * entries are kept in memory with LRU eviction, and every entry is also stored
+ * next to the ARFF file as "<arff>.<key>.repr", so that later runs on the same
+ * data skip the quadratic computation. Methods are synchronized.
+ *
+ * @author Fan Min. minfanphd@163.com, minfan@swpu.edu.cn.
+ */
+public class RepresentativenessCache {
+	/**
+	 * The magic number, "CMRP".
+	 */
+	static final int MAGIC = 0x434D5250;
+
+	/**
+	 * The format version.
+	 */
+	static final int VERSION = 1;
+
+	/**
+	 * The maximal number of entries in memory.
+	 */
+	public static int memoryCapacity = 16;
+
+	/**
+	 * Use the files next to the ARFF files or not.
+	 */
+	public static boolean useDiskStore = true;
+
+	/**
+	 * The entries in memory, least recently used first.
+	 */
+	static LinkedHashMap<String, Result> memoryStore = new LinkedHashMap<String, Result>(16,
+			0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		protected boolean removeEldestEntry(Map.Entry<String, Result> paraEldest) {
+			return size() > memoryCapacity;
+		}// Of removeEldestEntry
+	};
+
+	/**
+	 **********************************
+	 * A cached result.
+	 **********************************
+	 */
+	public static class Result {
+		/**
+		 * The representativeness of each instance.
+		 */
+		public double[] representativenessArray;
+
+		/**
+		 * Instances in descending representativeness.
+		 */
+		public int[] representativenessRankArray;
+
+		/**
+		 * The constructor.
+		 */
+		public Result(double[] paraRepresentativenessArray,
+				int[] paraRepresentativenessRankArray) {
+			representativenessArray = paraRepresentativenessArray;
+			representativenessRankArray = paraRepresentativenessRankArray;
+		}// Of the constructor
+	}// Of class Result
+
+	/**
+	 **********************
+	 * Build the key.
+	 *
+	 * @param paraDataset
+	 *            The dataset.
+	 * @param paraDc
+	 *            The dc ratio.
+	 * @param paraMethod
+	 *            The method, letters, digits, '.' and '-' only.
+	 * @return The key.
+	 **********************
+	 */
+	public static String buildKey(MultiLabelData paraDataset, double paraDc, String paraMethod) {
+		return Long.toHexString(paraDataset.getContentHash()) + "-d"
+				+ paraDataset.distanceMeasure + "-dc"
+				+ Long.toHexString(Double.doubleToLongBits(paraDc)) + "-" + paraMethod;
+	}// Of buildKey
+
+	/**
+	 **********************
+	 * Look up an entry, first in memory, then on disk.
+	 *
+	 * @param paraDataset
+	 *            The dataset.
+	 * @param paraDc
+	 *            The dc ratio.
+	 * @param paraMethod
+	 *            The method.
+	 * @return A copy of the entry, null if absent.
+	 **********************
+	 */
+	public static synchronized Result lookup(MultiLabelData paraDataset, double paraDc,
+			String paraMethod) {
+		String tempKey = buildKey(paraDataset, paraDc, paraMethod);
+		Result tempResult = memoryStore.get(tempKey);
+		if (tempResult == null && useDiskStore && paraDataset.getArffFilename() != null) {
+			File tempFile = getFile(paraDataset, tempKey);
+			if (tempFile.exists()) {
+				try {
+					tempResult = read(tempFile, tempKey, paraDataset.getNumInstances());
+				} catch (IOException ee) {
+					System.out.println("Cannot read " + tempFile + ": " + ee);
+				} // Of try
+				if (tempResult != null) {
+					memoryStore.put(tempKey, tempResult);
+				} // Of if
+			} // Of if
+		} // Of if
+
+		if (tempResult == null) {
+			return null;
+		} // Of if
+		return new Result(tempResult.representativenessArray.clone(),
+				tempResult.representativenessRankArray.clone());
+	}// Of lookup
+
+	/**
+	 **********************
+	 * Store an entry in memory and on disk.
+	 *
+	 * @param paraDataset
+	 *            The dataset.
+	 * @param paraDc
+	 *            The dc ratio.
+	 * @param paraMethod
+	 *            The method.
+	 * @param paraRepresentativenessArray
+	 *            The representativeness. It is copied.
+	 * @param paraRepresentativenessRankArray
+	 *            The rank. It is copied.
+	 **********************
+	 */
+	public static synchronized void store(MultiLabelData paraDataset, double paraDc,
+			String paraMethod, double[] paraRepresentativenessArray,
+			int[] paraRepresentativenessRankArray) {
+		String tempKey = buildKey(paraDataset, paraDc, paraMethod);
+		Result tempResult = new Result(paraRepresentativenessArray.clone(),
+				paraRepresentativenessRankArray.clone());
+		memoryStore.put(tempKey, tempResult);
+
+		if (useDiskStore && paraDataset.getArffFilename() != null) {
+			File tempFile = getFile(paraDataset, tempKey);
+			try {
+				write(tempFile, tempKey, tempResult);
+			} catch (IOException ee) {
+				System.out.println("Cannot write " + tempFile + ": " + ee);
+			} // Of try
+		} // Of if
+	}// Of store
+
+	/**
+	 **********************
+	 * Clear the memory. Files are kept.
+	 **********************
+	 */
+	public static synchronized void clearMemory() {
+		memoryStore.clear();
+	}// Of clearMemory
+
+	/**
+	 **********************
+	 * The file of a key.
+	 **********************
+	 */
+	static File getFile(MultiLabelData paraDataset, String paraKey) {
+		return new File(paraDataset.getArffFilename() + "." + paraKey + ".repr");
+	}// Of getFile
+
+	/**
+	 **********************
+	 * Read an entry from a file.
+	 *
+	 * @return The entry, null if the file does not match.
+	 **********************
+	 */
+	static Result read(File paraFile, String paraKey, int paraNumInstances) throws IOException {
+		DataInputStream tempInput = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(paraFile), 1 << 16));
+		try {
+			if (tempInput.readInt() != MAGIC || tempInput.readInt() != VERSION) {
+				return null;
+			} // Of if
+			if (!tempInput.readUTF().equals(paraKey)
+					|| tempInput.readInt() != paraNumInstances) {
+				return null;
+			} // Of if
+
+			double[] tempRepresentativenessArray = new double[paraNumInstances];
+			for (int i = 0; i < paraNumInstances; i++) {
+				tempRepresentativenessArray[i] = tempInput.readDouble();
+			} // Of for i
+			int[] tempRankArray = new int[paraNumInstances];
+			for (int i = 0; i < paraNumInstances; i++) {
+				tempRankArray[i] = tempInput.readInt();
+			} // Of for i
+			return new Result(tempRepresentativenessArray, tempRankArray);
+		} finally {
+			tempInput.close();
+		} // Of try
+	}// Of read
+
+	/**
+	 **********************
+	 * Write an entry to a temporary file and then rename it, so that other JVMs
+	 * never see a partial file.
+	 **********************
+	 */
+	static void write(File paraFile, String paraKey, Result paraResult) throws IOException {
+		File tempFile = new File(paraFile.getPath() + "." + System.nanoTime() + ".tmp");
+		DataOutputStream tempOutput = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(tempFile), 1 << 16));
+		try {
+			tempOutput.writeInt(MAGIC);
+			tempOutput.writeInt(VERSION);
+			tempOutput.writeUTF(paraKey);
+			double[] tempRepresentativenessArray = paraResult.representativenessArray;
+			tempOutput.writeInt(tempRepresentativenessArray.length);
+			for (int i = 0; i < tempRepresentativenessArray.length; i++) {
+				tempOutput.writeDouble(tempRepresentativenessArray[i]);
+			} // Of for i
+			int[] tempRankArray = paraResult.representativenessRankArray;
+			for (int i = 0; i < tempRankArray.length; i++) {
+				tempOutput.writeInt(tempRankArray[i]);
+			} // Of for i
+		} finally {
+			tempOutput.close();
+		} // Of try
+
+		try {
+			Files.move(tempFile.toPath(), paraFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException ee) {
+			tempFile.delete();
+			throw ee;
+		} // Of try
+	}// Of write
+}// Of class RepresentativenessCache
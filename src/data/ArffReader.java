@@ -0,0 +1,683 @@
+package data;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * A streaming ARFF reader. The header and the data rows are parsed in one pass
+ * directly into primitive arrays, without building Weka objects. The first
+ * attributes are conditions and the following ones are labels. Nominal values
+ * are stored as their indices in the declaration, the same as Weka does.
+ * Sparse rows such as "{0 1.5, 7 2}" are supported. If the first row is
+ * sparse, the conditions are stored in a CSR matrix instead of a dense one.
+ *
+ * @author Fan Min. minfanphd@163.com, minfan@swpu.edu.cn.
+ */
+public class ArffReader {
+	/**
+	 * The initial capacity of the row arrays.
+	 */
+	static final int INITIAL_CAPACITY = 256;
+
+	/**
+	 * The filename.
+	 */
+	String filename;
+
+	/**
+	 * The relation name.
+	 */
+	String relationName = "";
+
+	/**
+	 * The attribute names.
+	 */
+	List<String> attributeNameList;
+
+	/**
+	 * The nominal values of each attribute. It is null for numeric attributes.
+	 */
+	List<HashMap<String, Integer>> nominalValueList;
+
+	/**
+	 * The number of instances.
+	 */
+	int numInstances;
+
+	/**
+	 * The data matrix.
+	 */
+	double[][] dataMatrix;
+
+	/**
+	 * The labels, bit-packed by rows. Each row takes numLabelWords longs, and
+	 * label j is bit (j % 64) of word (j / 64).
+	 */
+	long[] labelBits;
+
+	/**
+	 * The number of longs for the labels of one row.
+	 */
+	int numLabelWords;
+
+	/**
+	 * Are the conditions stored in the sparse form?
+	 */
+	boolean sparse;
+
+	/**
+	 * The non-zero condition values in the sparse form.
+	 */
+	double[] sparseValues;
+
+	/**
+	 * The column indices of sparseValues.
+	 */
+	int[] sparseColumns;
+
+	/**
+	 * The start position of each row in sparseValues.
+	 */
+	int[] rowStarts;
+
+	/**
+	 * The number of non-zero condition values in the sparse form.
+	 */
+	int numNonZeros;
+
+	/**
+	 * The number of conditions.
+	 */
+	int numConditions;
+
+	/**
+	 * The current line number, for error report.
+	 */
+	int lineNumber;
+
+	/**
+	 **********************
+	 * The first constructor.
+	 *
+	 * @param paraFilename
+	 *            The arff filename.
+	 **********************
+	 */
+	public ArffReader(String paraFilename) {
+		filename = paraFilename;
+		attributeNameList = new ArrayList<String>();
+		nominalValueList = new ArrayList<HashMap<String, Integer>>();
+	}// Of the first constructor
+
+	/**
+	 **********************
+	 * Read the whole file.
+	 *
+	 * @param paraNumConditions
+	 *            The number of conditional attributes.
+	 * @param paraNumLabels
+	 *            The number of labels.
+	 * @throws IOException
+	 *             For file errors and unsupported ARFF constructs.
+	 **********************
+	 */
+	public void read(int paraNumConditions, int paraNumLabels) throws IOException {
+		numConditions = paraNumConditions;
+		BufferedReader tempReader = new BufferedReader(new FileReader(filename), 1 << 16);
+		try {
+			lineNumber = 0;
+			readHeader(tempReader);
+			if (attributeNameList.size() < paraNumConditions + paraNumLabels) {
+				throw new IOException("Only " + attributeNameList.size() + " attributes in "
+						+ filename + ", while " + paraNumConditions + " conditions and "
+						+ paraNumLabels + " labels are required.");
+			} // Of if
+			readData(tempReader, paraNumConditions, paraNumLabels);
+		} finally {
+			tempReader.close();
+		} // Of try
+	}// Of read
+
+	/**
+	 **********************
+	 * Read the header until the @data line.
+	 *
+	 * @param paraReader
+	 *            The reader.
+	 **********************
+	 */
+	void readHeader(BufferedReader paraReader) throws IOException {
+		String tempLine;
+		String tempLower;
+		while ((tempLine = paraReader.readLine()) != null) {
+			lineNumber++;
+			tempLine = tempLine.trim();
+			if (tempLine.isEmpty() || tempLine.charAt(0) == '%') {
+				continue;
+			} // Of if
+
+			tempLower = tempLine.toLowerCase();
+			if (tempLower.startsWith("@relation")) {
+				relationName = tempLine.substring(9).trim();
+			} else if (tempLower.startsWith("@attribute")) {
+				parseAttribute(tempLine.substring(10).trim());
+			} else if (tempLower.startsWith("@data")) {
+				return;
+			} else {
+				throw new IOException("Unknown header line " + lineNumber + " in " + filename
+						+ ": " + tempLine);
+			} // Of if
+		} // Of while
+
+		throw new IOException("No @data section in " + filename);
+	}// Of readHeader
+
+	/**
+	 **********************
+	 * Parse the declaration of one attribute, i.e., the line without
+	 * "@attribute".
+	 *
+	 * @param paraDeclaration
+	 *            The declaration, e.g., "color {0, 1}".
+	 **********************
+	 */
+	void parseAttribute(String paraDeclaration) throws IOException {
+		// Step 1. The name, maybe quoted.
+		int tempEnd;
+		String tempName;
+		char tempFirst = paraDeclaration.charAt(0);
+		if (tempFirst == '\'' || tempFirst == '"') {
+			tempEnd = paraDeclaration.indexOf(tempFirst, 1);
+			if (tempEnd < 0) {
+				throw new IOException("Unclosed quote at line " + lineNumber + " in " + filename);
+			} // Of if
+			tempName = paraDeclaration.substring(1, tempEnd);
+			tempEnd++;
+		} else {
+			tempEnd = 0;
+			while (tempEnd < paraDeclaration.length()
+					&& !Character.isWhitespace(paraDeclaration.charAt(tempEnd))
+					&& paraDeclaration.charAt(tempEnd) != '{') {
+				tempEnd++;
+			} // Of while
+			tempName = paraDeclaration.substring(0, tempEnd);
+		} // Of if
+
+		// Step 2. The type.
+		String tempType = paraDeclaration.substring(tempEnd).trim();
+		HashMap<String, Integer> tempNominalMap = null;
+		if (tempType.startsWith("{")) {
+			int tempClose = tempType.lastIndexOf('}');
+			if (tempClose < 0) {
+				throw new IOException("Unclosed nominal values at line " + lineNumber + " in "
+						+ filename);
+			} // Of if
+			tempNominalMap = new HashMap<String, Integer>();
+			String tempValues = tempType.substring(1, tempClose);
+			int tempStart = skipWhitespace(tempValues, 0);
+			int tempValueEnd;
+			while (tempStart < tempValues.length()) {
+				tempValueEnd = findTokenEnd(tempValues, tempStart, tempValues.length());
+				tempNominalMap.put(unquote(tempValues.substring(tempStart, tempValueEnd).trim()),
+						tempNominalMap.size());
+				tempStart = skipWhitespace(tempValues, tempValueEnd + 1);
+			} // Of while
+		} else {
+			String tempLowerType = tempType.toLowerCase();
+			if (!tempLowerType.equals("numeric") && !tempLowerType.equals("real")
+					&& !tempLowerType.equals("integer")) {
+				throw new IOException("Unsupported attribute type '" + tempType + "' at line "
+						+ lineNumber + " in " + filename);
+			} // Of if
+		} // Of if
+
+		attributeNameList.add(tempName);
+		nominalValueList.add(tempNominalMap);
+	}// Of parseAttribute
+
+	/**
+	 **********************
+	 * Read data rows. Each row is parsed directly into the matrices.
+	 *
+	 * @param paraReader
+	 *            The reader.
+	 * @param paraNumConditions
+	 *            The number of conditional attributes.
+	 * @param paraNumLabels
+	 *            The number of labels.
+	 **********************
+	 */
+	void readData(BufferedReader paraReader, int paraNumConditions, int paraNumLabels)
+			throws IOException {
+		numLabelWords = (paraNumLabels + 63) >>> 6;
+		int tempCapacity = INITIAL_CAPACITY;
+		labelBits = new long[tempCapacity * numLabelWords];
+		numInstances = 0;
+
+		String tempLine;
+		double[] tempDataRow = null;
+		int[] tempLabelRow = new int[paraNumLabels];
+		boolean tempFirstRow = true;
+		while ((tempLine = paraReader.readLine()) != null) {
+			lineNumber++;
+			tempLine = tempLine.trim();
+			if (tempLine.isEmpty() || tempLine.charAt(0) == '%') {
+				continue;
+			} // Of if
+
+			// The storage form is decided by the first row.
+			if (tempFirstRow) {
+				tempFirstRow = false;
+				sparse = tempLine.charAt(0) == '{';
+				if (sparse) {
+					sparseValues = new double[INITIAL_CAPACITY];
+					sparseColumns = new int[INITIAL_CAPACITY];
+					rowStarts = new int[INITIAL_CAPACITY + 1];
+					numNonZeros = 0;
+				} else {
+					dataMatrix = new double[INITIAL_CAPACITY][];
+				} // Of if
+			} // Of if
+
+			// Enlarge the matrices if necessary.
+			if (numInstances == tempCapacity) {
+				tempCapacity *= 2;
+				labelBits = Arrays.copyOf(labelBits, tempCapacity * numLabelWords);
+				if (sparse) {
+					rowStarts = Arrays.copyOf(rowStarts, tempCapacity + 1);
+				} else {
+					dataMatrix = Arrays.copyOf(dataMatrix, tempCapacity);
+				} // Of if
+			} // Of if
+
+			Arrays.fill(tempLabelRow, 0);
+			if (sparse) {
+				if (tempLine.charAt(0) == '{') {
+					parseSparseRow(tempLine, null, tempLabelRow);
+				} else {
+					// A dense row in a sparse file.
+					if (tempDataRow == null) {
+						tempDataRow = new double[paraNumConditions];
+					} // Of if
+					parseDenseRow(tempLine, tempDataRow, tempLabelRow);
+					for (int i = 0; i < paraNumConditions; i++) {
+						if (tempDataRow[i] != 0) {
+							appendNonZero(i, tempDataRow[i]);
+						} // Of if
+					} // Of for i
+				} // Of if
+				rowStarts[numInstances + 1] = numNonZeros;
+			} else {
+				tempDataRow = new double[paraNumConditions];
+				if (tempLine.charAt(0) == '{') {
+					parseSparseRow(tempLine, tempDataRow, tempLabelRow);
+				} else {
+					parseDenseRow(tempLine, tempDataRow, tempLabelRow);
+				} // Of if
+				dataMatrix[numInstances] = tempDataRow;
+			} // Of if
+			packLabels(tempLabelRow);
+			numInstances++;
+		} // Of while
+
+		// Trim.
+		labelBits = Arrays.copyOf(labelBits, numInstances * numLabelWords);
+		if (sparse) {
+			sparseValues = Arrays.copyOf(sparseValues, numNonZeros);
+			sparseColumns = Arrays.copyOf(sparseColumns, numNonZeros);
+			rowStarts = Arrays.copyOf(rowStarts, numInstances + 1);
+		} else if (dataMatrix != null) {
+			dataMatrix = Arrays.copyOf(dataMatrix, numInstances);
+		} else {
+			dataMatrix = new double[0][];
+		} // Of if
+	}// Of readData
+
+	/**
+	 **********************
+	 * Pack the labels of the current row into labelBits.
+	 *
+	 * @param paraLabelRow
+	 *            The labels, each 0 or 1.
+	 **********************
+	 */
+	void packLabels(int[] paraLabelRow) throws IOException {
+		int tempOffset = numInstances * numLabelWords;
+		for (int j = 0; j < paraLabelRow.length; j++) {
+			if (paraLabelRow[j] == 1) {
+				labelBits[tempOffset + (j >>> 6)] |= 1L << (j & 63);
+			} else if (paraLabelRow[j] != 0) {
+				throw new IOException("Label " + j + " is " + paraLabelRow[j]
+						+ ", but it should be 0 or 1, see line " + lineNumber + " in " + filename);
+			} // Of if
+		} // Of for j
+	}// Of packLabels
+
+	/**
+	 **********************
+	 * Append a non-zero value to the sparse form of the current row.
+	 *
+	 * @param paraColumn
+	 *            The column index.
+	 * @param paraValue
+	 *            The value.
+	 **********************
+	 */
+	void appendNonZero(int paraColumn, double paraValue) {
+		if (numNonZeros == sparseValues.length) {
+			sparseValues = Arrays.copyOf(sparseValues, numNonZeros * 2);
+			sparseColumns = Arrays.copyOf(sparseColumns, numNonZeros * 2);
+		} // Of if
+		sparseValues[numNonZeros] = paraValue;
+		sparseColumns[numNonZeros] = paraColumn;
+		numNonZeros++;
+	}// Of appendNonZero
+
+	/**
+	 **********************
+	 * Parse a sparse row, e.g., "{0 1.5, 3 2, 15 1}". Omitted values are 0,
+	 * the same as Weka. Indices must be ascending.
+	 *
+	 * @param paraLine
+	 *            The line, trimmed.
+	 * @param paraDataRow
+	 *            The condition values to fill. If it is null, the conditions
+	 *            are appended to the sparse form.
+	 * @param paraLabelRow
+	 *            The label values to fill.
+	 **********************
+	 */
+	void parseSparseRow(String paraLine, double[] paraDataRow, int[] paraLabelRow)
+			throws IOException {
+		int tempClose = paraLine.lastIndexOf('}');
+		if (tempClose < 0) {
+			throw new IOException("Unclosed sparse row at line " + lineNumber + " in " + filename);
+		} // Of if
+
+		int tempNumConditions = numConditions;
+		int tempNeeded = tempNumConditions + paraLabelRow.length;
+		int tempStart = 1;
+		int tempEnd;
+		int tempSpace;
+		int tempIndex;
+		int tempLastIndex = -1;
+		double tempValue;
+		String tempToken;
+		while (tempStart < tempClose) {
+			tempEnd = findTokenEnd(paraLine, tempStart, tempClose);
+			tempToken = paraLine.substring(tempStart, tempEnd).trim();
+			tempStart = tempEnd + 1;
+			if (tempToken.isEmpty()) {
+				continue;
+			} // Of if
+
+			tempSpace = 0;
+			while (tempSpace < tempToken.length()
+					&& !Character.isWhitespace(tempToken.charAt(tempSpace))) {
+				tempSpace++;
+			} // Of while
+			if (tempSpace == tempToken.length()) {
+				throw new IOException("Illegal sparse value '" + tempToken + "' at line "
+						+ lineNumber + " in " + filename);
+			} // Of if
+			try {
+				tempIndex = Integer.parseInt(tempToken.substring(0, tempSpace));
+			} catch (NumberFormatException ee) {
+				throw new IOException("Illegal sparse index '" + tempToken + "' at line "
+						+ lineNumber + " in " + filename);
+			} // Of try
+			if (tempIndex <= tempLastIndex) {
+				throw new IOException("Sparse indices are not ascending at line " + lineNumber
+						+ " in " + filename);
+			} // Of if
+			tempLastIndex = tempIndex;
+			if (tempIndex >= tempNeeded) {
+				continue;
+			} // Of if
+
+			tempValue = parseValue(unquote(tempToken.substring(tempSpace + 1).trim()),
+					tempIndex);
+			if (tempIndex >= tempNumConditions) {
+				paraLabelRow[tempIndex - tempNumConditions] = (int) tempValue;
+			} else if (paraDataRow != null) {
+				paraDataRow[tempIndex] = tempValue;
+			} else if (tempValue != 0) {
+				appendNonZero(tempIndex, tempValue);
+			} // Of if
+		} // Of while
+	}// Of parseSparseRow
+
+	/**
+	 **********************
+	 * Parse a dense row. Attributes beyond conditions and labels are ignored.
+	 *
+	 * @param paraLine
+	 *            The line, trimmed.
+	 * @param paraDataRow
+	 *            The condition values to fill.
+	 * @param paraLabelRow
+	 *            The label values to fill.
+	 **********************
+	 */
+	void parseDenseRow(String paraLine, double[] paraDataRow, int[] paraLabelRow)
+			throws IOException {
+		int tempNumConditions = paraDataRow.length;
+		int tempNeeded = tempNumConditions + paraLabelRow.length;
+		int tempLength = paraLine.length();
+		int tempStart = 0;
+		int tempEnd;
+		double tempValue;
+		for (int i = 0; i < tempNeeded; i++) {
+			if (tempStart > tempLength) {
+				throw new IOException("Too few values at line " + lineNumber + " in " + filename);
+			} // Of if
+
+			tempEnd = findTokenEnd(paraLine, tempStart, tempLength);
+			tempValue = parseValue(unquote(paraLine.substring(tempStart, tempEnd).trim()), i);
+
+			if (i < tempNumConditions) {
+				paraDataRow[i] = tempValue;
+			} else {
+				paraLabelRow[i - tempNumConditions] = (int) tempValue;
+			} // Of if
+
+			// Skip the comma and the following whitespace.
+			tempStart = skipWhitespace(paraLine, tempEnd + 1);
+		} // Of for i
+	}// Of parseDenseRow
+
+	/**
+	 **********************
+	 * Parse one value. Missing values ("?") are NaN, the same as Weka.
+	 *
+	 * @param paraToken
+	 *            The token without quotes.
+	 * @param paraAttribute
+	 *            The attribute index.
+	 * @return The numeric value or the nominal index.
+	 **********************
+	 */
+	double parseValue(String paraToken, int paraAttribute) throws IOException {
+		if (paraToken.equals("?")) {
+			return Double.NaN;
+		} // Of if
+
+		HashMap<String, Integer> tempNominalMap = nominalValueList.get(paraAttribute);
+		if (tempNominalMap != null) {
+			Integer tempIndex = tempNominalMap.get(paraToken);
+			if (tempIndex == null) {
+				throw new IOException("Undeclared nominal value '" + paraToken + "' of attribute "
+						+ attributeNameList.get(paraAttribute) + " at line " + lineNumber + " in "
+						+ filename);
+			} // Of if
+			return tempIndex;
+		} // Of if
+
+		try {
+			return Double.parseDouble(paraToken);
+		} catch (NumberFormatException ee) {
+			throw new IOException("Illegal number '" + paraToken + "' at line " + lineNumber
+					+ " in " + filename);
+		} // Of try
+	}// Of parseValue
+
+	/**
+	 **********************
+	 * Find the end of a token, i.e., the next comma outside quotes. It is used
+	 * for data rows and nominal declarations.
+	 *
+	 * @param paraLine
+	 *            The line.
+	 * @param paraStart
+	 *            The start of the token.
+	 * @param paraLimit
+	 *            The end of the search, exclusive.
+	 * @return The position of the comma, or paraLimit if there is none.
+	 **********************
+	 */
+	int findTokenEnd(String paraLine, int paraStart, int paraLimit) throws IOException {
+		char tempQuote = 0;
+		for (int i = paraStart; i < paraLimit; i++) {
+			char tempChar = paraLine.charAt(i);
+			if (tempQuote != 0) {
+				if (tempChar == tempQuote) {
+					tempQuote = 0;
+				} // Of if
+			} else if (tempChar == '\'' || tempChar == '"') {
+				tempQuote = tempChar;
+			} else if (tempChar == ',') {
+				return i;
+			} // Of if
+		} // Of for i
+
+		if (tempQuote != 0) {
+			throw new IOException("Unclosed quote at line " + lineNumber + " in " + filename);
+		} // Of if
+		return paraLimit;
+	}// Of findTokenEnd
+
+	/**
+	 **********************
+	 * Skip whitespace, e.g., spaces and tabs.
+	 *
+	 * @return The first position without whitespace, maybe the length.
+	 **********************
+	 */
+	static int skipWhitespace(String paraLine, int paraStart) {
+		int resultPosition = paraStart;
+		while (resultPosition < paraLine.length()
+				&& Character.isWhitespace(paraLine.charAt(resultPosition))) {
+			resultPosition++;
+		} // Of while
+		return resultPosition;
+	}// Of skipWhitespace
+
+	/**
+	 **********************
+	 * Remove the quotes of a string if any.
+	 **********************
+	 */
+	static String unquote(String paraString) {
+		int tempLength = paraString.length();
+		if (tempLength >= 2) {
+			char tempFirst = paraString.charAt(0);
+			if ((tempFirst == '\'' || tempFirst == '"')
+					&& paraString.charAt(tempLength - 1) == tempFirst) {
+				return paraString.substring(1, tempLength - 1);
+			} // Of if
+		} // Of if
+		return paraString;
+	}// Of unquote
+
+	/**
+	 **********************
+	 * Getter.
+	 **********************
+	 */
+	public int getNumInstances() {
+		return numInstances;
+	}// Of getNumInstances
+
+	/**
+	 **********************
+	 * Getter.
+	 **********************
+	 */
+	public int getNumAttributes() {
+		return attributeNameList.size();
+	}// Of getNumAttributes
+
+	/**
+	 **********************
+	 * Getter.
+	 **********************
+	 */
+	public String getRelationName() {
+		return relationName;
+	}// Of getRelationName
+
+	/**
+	 **********************
+	 * Getter.
+	 **********************
+	 */
+	public boolean isSparse() {
+		return sparse;
+	}// Of isSparse
+
+	/**
+	 **********************
+	 * Get the conditions in the sparse form. Only valid for sparse files.
+	 **********************
+	 */
+	public SparseMatrix getSparseMatrix() {
+		return new SparseMatrix(numInstances, numConditions, sparseValues, sparseColumns,
+				rowStarts);
+	}// Of getSparseMatrix
+
+	/**
+	 **********************
+	 * Getter.
+	 **********************
+	 */
+	public double[][] getDataMatrix() {
+		return dataMatrix;
+	}// Of getDataMatrix
+
+	/**
+	 **********************
+	 * Getter.
+	 **********************
+	 */
+	public long[] getLabelBits() {
+		return labelBits;
+	}// Of getLabelBits
+
+	/**
+	 **********************
+	 * Test reading data.
+	 **********************
+	 */
+	public static void main(String[] args) {
+		ArffReader tempReader = new ArffReader("data/flags.arff");
+		try {
+			tempReader.read(14, 12);
+		} catch (IOException ee) {
+			System.out.println(ee);
+			return;
+		} // Of try
+		System.out.println(tempReader.getNumInstances() + " instances of "
+				+ tempReader.getNumAttributes() + " attributes in " + tempReader.getRelationName());
+		if (tempReader.isSparse()) {
+			System.out.println(Arrays.toString(tempReader.getSparseMatrix().getDenseRow(0)));
+		} else {
+			System.out.println(Arrays.toString(tempReader.getDataMatrix()[0]));
+		} // Of if
+		System.out.println(Long.toBinaryString(tempReader.getLabelBits()[0]));
+	}// Of main
+}// Of class ArffReader
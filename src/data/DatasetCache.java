@@ -0,0 +1,416 @@
+package data;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+
+/**
+ * A binary cache of a multi-label dataset, stored next to the ARFF file with
+ * the suffix ".mlbin". It holds the normalized conditions (row-major dense, or
+ * CSR for sparse data) and the bit-packed labels. It is opened through
+ * FileChannel.map, hence concurrent JVMs share the page cache. The cache is
+ * keyed by the length and the CRC32 checksum of the source file, the numbers of
+ * conditions and labels, and the normalization, and is rebuilt when any of
+ * them differs.
+ *
+ * @author Fan Min. minfanphd@163.com, minfan@swpu.edu.cn.
+ */
+public class DatasetCache {
+	/**
+	 * The magic number, "CMLD".
+	 */
+	static final int MAGIC = 0x434D4C44;
+
+	/**
+	 * The format version.
+	 */
+	static final int VERSION = 1;
+
+	/**
+	 * The header length in bytes.
+	 */
+	static final int HEADER_LENGTH = 64;
+
+	/**
+	 * The largest region mapped at a time.
+	 */
+	static final int MAX_MAP_LENGTH = 1 << 30;
+
+	/**
+	 * Min-max normalization of each column, for dense data.
+	 */
+	public static final int MIN_MAX = 1;
+
+	/**
+	 * Dividing by the max absolute value of each column, for sparse data.
+	 */
+	public static final int MAX_ABS = 2;
+
+	/**
+	 * The source ARFF file.
+	 */
+	File sourceFile;
+
+	/**
+	 * The cache file.
+	 */
+	File cacheFile;
+
+	/**
+	 * The number of conditions.
+	 */
+	int numConditions;
+
+	/**
+	 * The number of labels.
+	 */
+	int numLabels;
+
+	/**
+	 * The length of the source file.
+	 */
+	long sourceLength;
+
+	/**
+	 * The checksum of the source file. It is computed only once.
+	 */
+	long sourceChecksum = -1;
+
+	/**
+	 * The number of instances.
+	 */
+	int numInstances;
+
+	/**
+	 * The dense data read from the cache.
+	 */
+	double[][] dataMatrix;
+
+	/**
+	 * The sparse data read from the cache.
+	 */
+	SparseMatrix sparseMatrix;
+
+	/**
+	 * The bit-packed labels read from the cache.
+	 */
+	long[] labelBits;
+
+	/**
+	 **********************
+	 * The first constructor.
+	 *
+	 * @param paraArffFilename
+	 *            The source ARFF file.
+	 * @param paraNumConditions
+	 *            The number of conditional attributes.
+	 * @param paraNumLabels
+	 *            The number of labels.
+	 **********************
+	 */
+	public DatasetCache(String paraArffFilename, int paraNumConditions, int paraNumLabels) {
+		sourceFile = new File(paraArffFilename);
+		cacheFile = new File(paraArffFilename + ".mlbin");
+		numConditions = paraNumConditions;
+		numLabels = paraNumLabels;
+	}// Of the first constructor
+
+	/**
+	 **********************
+	 * Compute the checksum of the source file.
+	 **********************
+	 */
+	long computeSourceChecksum() throws IOException {
+		if (sourceChecksum >= 0) {
+			return sourceChecksum;
+		} // Of if
+
+		CRC32 tempCrc = new CRC32();
+		RandomAccessFile tempFile = new RandomAccessFile(sourceFile, "r");
+		try {
+			FileChannel tempChannel = tempFile.getChannel();
+			ByteBuffer tempBuffer = ByteBuffer.allocate(1 << 16);
+			while (tempChannel.read(tempBuffer) > 0) {
+				tempBuffer.flip();
+				tempCrc.update(tempBuffer.array(), 0, tempBuffer.limit());
+				tempBuffer.clear();
+			} // Of while
+		} finally {
+			tempFile.close();
+		} // Of try
+
+		sourceLength = sourceFile.length();
+		sourceChecksum = tempCrc.getValue();
+		return sourceChecksum;
+	}// Of computeSourceChecksum
+
+	/**
+	 **********************
+	 * Load the cache if it is valid.
+	 *
+	 * @return True if loaded, false if the cache is missing or stale.
+	 **********************
+	 */
+	public boolean load() throws IOException {
+		if (!cacheFile.exists() || !sourceFile.exists()) {
+			return false;
+		} // Of if
+
+		RandomAccessFile tempFile = new RandomAccessFile(cacheFile, "r");
+		try {
+			FileChannel tempChannel = tempFile.getChannel();
+			if (tempChannel.size() < HEADER_LENGTH) {
+				return false;
+			} // Of if
+
+			// Step 1. Check the header.
+			MappedByteBuffer tempHeader = tempChannel.map(FileChannel.MapMode.READ_ONLY, 0,
+					HEADER_LENGTH);
+			if (tempHeader.getInt() != MAGIC || tempHeader.getInt() != VERSION) {
+				return false;
+			} // Of if
+			long tempLength = tempHeader.getLong();
+			long tempChecksum = tempHeader.getLong();
+			if (tempLength != sourceFile.length()) {
+				return false;
+			} // Of if
+			if (tempChecksum != computeSourceChecksum()) {
+				return false;
+			} // Of if
+			int tempNormalization = tempHeader.getInt();
+			boolean tempSparse = tempHeader.getInt() == 1;
+			if (tempNormalization != (tempSparse ? MAX_ABS : MIN_MAX)) {
+				return false;
+			} // Of if
+			numInstances = tempHeader.getInt();
+			if (tempHeader.getInt() != numConditions || tempHeader.getInt() != numLabels) {
+				return false;
+			} // Of if
+			long tempNumNonZeros = tempHeader.getLong();
+
+			// Step 2. The conditions.
+			long tempPosition = HEADER_LENGTH;
+			if (tempSparse) {
+				int[] tempRowStarts = new int[numInstances + 1];
+				tempPosition = readInts(tempChannel, tempPosition, tempRowStarts);
+				int[] tempColumns = new int[(int) tempNumNonZeros];
+				tempPosition = readInts(tempChannel, tempPosition, tempColumns);
+				double[] tempValues = new double[(int) tempNumNonZeros];
+				tempPosition = readDoubles(tempChannel, tempPosition, tempValues);
+				sparseMatrix = new SparseMatrix(numInstances, numConditions, tempValues,
+						tempColumns, tempRowStarts);
+			} else {
+				dataMatrix = new double[numInstances][];
+				for (int i = 0; i < numInstances; i++) {
+					dataMatrix[i] = new double[numConditions];
+				} // Of for i
+				tempPosition = readRows(tempChannel, tempPosition, dataMatrix);
+			} // Of if
+
+			// Step 3. The labels.
+			labelBits = new long[numInstances * ((numLabels + 63) >>> 6)];
+			readLongs(tempChannel, tempPosition, labelBits);
+		} finally {
+			tempFile.close();
+		} // Of try
+
+		return true;
+	}// Of load
+
+	/**
+	 **********************
+	 * Map a region, at most MAX_MAP_LENGTH bytes.
+	 **********************
+	 */
+	static MappedByteBuffer mapRegion(FileChannel paraChannel, long paraPosition,
+			long paraLength) throws IOException {
+		return paraChannel.map(FileChannel.MapMode.READ_ONLY, paraPosition,
+				Math.min(paraLength, MAX_MAP_LENGTH));
+	}// Of mapRegion
+
+	/**
+	 **********************
+	 * Read an int array from the channel.
+	 *
+	 * @return The position after the array.
+	 **********************
+	 */
+	static long readInts(FileChannel paraChannel, long paraPosition, int[] paraArray)
+			throws IOException {
+		int tempDone = 0;
+		while (tempDone < paraArray.length) {
+			int tempCount = Math.min(paraArray.length - tempDone, MAX_MAP_LENGTH / 4);
+			mapRegion(paraChannel, paraPosition, tempCount * 4L).asIntBuffer().get(paraArray,
+					tempDone, tempCount);
+			tempDone += tempCount;
+			paraPosition += tempCount * 4L;
+		} // Of while
+		return paraPosition;
+	}// Of readInts
+
+	/**
+	 **********************
+	 * Read a long array from the channel.
+	 *
+	 * @return The position after the array.
+	 **********************
+	 */
+	static long readLongs(FileChannel paraChannel, long paraPosition, long[] paraArray)
+			throws IOException {
+		int tempDone = 0;
+		while (tempDone < paraArray.length) {
+			int tempCount = Math.min(paraArray.length - tempDone, MAX_MAP_LENGTH / 8);
+			mapRegion(paraChannel, paraPosition, tempCount * 8L).asLongBuffer().get(paraArray,
+					tempDone, tempCount);
+			tempDone += tempCount;
+			paraPosition += tempCount * 8L;
+		} // Of while
+		return paraPosition;
+	}// Of readLongs
+
+	/**
+	 **********************
+	 * Read a double array from the channel.
+	 *
+	 * @return The position after the array.
+	 **********************
+	 */
+	static long readDoubles(FileChannel paraChannel, long paraPosition, double[] paraArray)
+			throws IOException {
+		int tempDone = 0;
+		while (tempDone < paraArray.length) {
+			int tempCount = Math.min(paraArray.length - tempDone, MAX_MAP_LENGTH / 8);
+			mapRegion(paraChannel, paraPosition, tempCount * 8L).asDoubleBuffer().get(paraArray,
+					tempDone, tempCount);
+			tempDone += tempCount;
+			paraPosition += tempCount * 8L;
+		} // Of while
+		return paraPosition;
+	}// Of readDoubles
+
+	/**
+	 **********************
+	 * Read the rows of a dense matrix from the channel.
+	 *
+	 * @return The position after the matrix.
+	 **********************
+	 */
+	static long readRows(FileChannel paraChannel, long paraPosition, double[][] paraMatrix)
+			throws IOException {
+		if (paraMatrix.length == 0) {
+			return paraPosition;
+		} // Of if
+
+		long tempRowBytes = paraMatrix[0].length * 8L;
+		int tempRowsPerMap = (int) Math.max(1, MAX_MAP_LENGTH / Math.max(1, tempRowBytes));
+		int tempDone = 0;
+		while (tempDone < paraMatrix.length) {
+			int tempCount = Math.min(paraMatrix.length - tempDone, tempRowsPerMap);
+			DoubleBuffer tempBuffer = mapRegion(paraChannel, paraPosition,
+					tempCount * tempRowBytes).asDoubleBuffer();
+			for (int i = 0; i < tempCount; i++) {
+				tempBuffer.get(paraMatrix[tempDone + i]);
+			} // Of for i
+			tempDone += tempCount;
+			paraPosition += tempCount * tempRowBytes;
+		} // Of while
+		return paraPosition;
+	}// Of readRows
+
+	/**
+	 **********************
+	 * Save the normalized data. It is first written to a temporary file and
+	 * then renamed, so that other JVMs never see a partial cache.
+	 *
+	 * @param paraNumInstances
+	 *            The number of instances.
+	 * @param paraDataMatrix
+	 *            The dense data, null for sparse data.
+	 * @param paraSparseMatrix
+	 *            The sparse data, null for dense data.
+	 * @param paraLabelBits
+	 *            The bit-packed labels.
+	 **********************
+	 */
+	public void save(int paraNumInstances, double[][] paraDataMatrix,
+			SparseMatrix paraSparseMatrix, long[] paraLabelBits) throws IOException {
+		computeSourceChecksum();
+		boolean tempSparse = paraSparseMatrix != null;
+		File tempFile = new File(cacheFile.getPath() + "." + System.nanoTime() + ".tmp");
+		DataOutputStream tempOutput = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(tempFile), 1 << 16));
+		try {
+			// Step 1. The header.
+			tempOutput.writeInt(MAGIC);
+			tempOutput.writeInt(VERSION);
+			tempOutput.writeLong(sourceLength);
+			tempOutput.writeLong(sourceChecksum);
+			tempOutput.writeInt(tempSparse ? MAX_ABS : MIN_MAX);
+			tempOutput.writeInt(tempSparse ? 1 : 0);
+			tempOutput.writeInt(paraNumInstances);
+			tempOutput.writeInt(numConditions);
+			tempOutput.writeInt(numLabels);
+			tempOutput.writeLong(tempSparse ? paraSparseMatrix.getNumNonZeros() : 0);
+			while (tempOutput.size() < HEADER_LENGTH) {
+				tempOutput.writeByte(0);
+			} // Of while
+
+			// Step 2. The conditions.
+			if (tempSparse) {
+				int[] tempRowStarts = paraSparseMatrix.getRowStarts();
+				for (int i = 0; i < tempRowStarts.length; i++) {
+					tempOutput.writeInt(tempRowStarts[i]);
+				} // Of for i
+				int tempNumNonZeros = paraSparseMatrix.getNumNonZeros();
+				int[] tempColumns = paraSparseMatrix.getColumns();
+				for (int i = 0; i < tempNumNonZeros; i++) {
+					tempOutput.writeInt(tempColumns[i]);
+				} // Of for i
+				double[] tempValues = paraSparseMatrix.getValues();
+				for (int i = 0; i < tempNumNonZeros; i++) {
+					tempOutput.writeDouble(tempValues[i]);
+				} // Of for i
+			} else {
+				for (int i = 0; i < paraDataMatrix.length; i++) {
+					for (int j = 0; j < numConditions; j++) {
+						tempOutput.writeDouble(paraDataMatrix[i][j]);
+					} // Of for j
+				} // Of for i
+			} // Of if
+
+			// Step 3. The labels, 64 per word.
+			for (int i = 0; i < paraLabelBits.length; i++) {
+				tempOutput.writeLong(paraLabelBits[i]);
+			} // Of for i
+		} finally {
+			tempOutput.close();
+		} // Of try
+
+		try {
+			Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException ee) {
+			tempFile.delete();
+			throw ee;
+		} // Of try
+	}// Of save
+
+	/**
+	 **********************
+	 * Getter.
+	 **********************
+	 */
+	public File getCacheFile() {
+		return cacheFile;
+	}// Of getCacheFile
+}// Of class DatasetCache
@@ -0,0 +1,555 @@
+package data;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ForkJoinPool;
+
+import util.ParallelTools;
+
+/**
+ * Computes tiles of the pairwise distance matrix at once. For dense data, a
+ * tile is computed two rows by four columns at a time with the eight sums in
+ * registers, so that each loaded value serves two or four pairs instead of
+ * one. Each distance is still summed condition by condition, hence it is
+ * exactly MultiLabelData.distance(). Optionally, the upper triangle is computed once
+ * and kept as floats, on heap or in a memory-mapped file, so that later passes
+ * only read it. All methods except release() can be called by multiple
+ * threads.
+ *
+ * @author Fan Min. minfanphd@163.com, minfan@swpu.edu.cn.
+ */
+public class DistanceEngine {
+	/**
+	 * Compute distances whenever they are needed.
+	 */
+	public static final int NO_CACHE = 0;
+
+	/**
+	 * Keep the upper triangle in a float array.
+	 */
+	public static final int HEAP_CACHE = 1;
+
+	/**
+	 * Keep the upper triangle in a memory-mapped temporary file.
+	 */
+	public static final int MAPPED_CACHE = 2;
+
+	/**
+	 * The tile size in instances.
+	 */
+	public static final int TILE_SIZE = 64;
+
+	/**
+	 * The number of floats of one mapped segment.
+	 */
+	static final int SEGMENT_LENGTH = 1 << 28;
+
+	/**
+	 * The dataset.
+	 */
+	MultiLabelData dataset;
+
+	/**
+	 * The number of instances.
+	 */
+	int numInstances;
+
+	/**
+	 * The number of conditions.
+	 */
+	int numConditions;
+
+	/**
+	 * The cache mode.
+	 */
+	int cacheMode;
+
+	/**
+	 * The upper triangle on heap.
+	 */
+	float[] heapCache;
+
+	/**
+	 * The upper triangle in mapped segments.
+	 */
+	FloatBuffer[] mappedCache;
+
+	/**
+	 * The backing file of mappedCache.
+	 */
+	File cacheFile;
+
+	/**
+	 **********************
+	 * The first constructor. With a cache, all distances are computed here.
+	 *
+	 * @param paraDataset
+	 *            The dataset.
+	 * @param paraCacheMode
+	 *            NO_CACHE, HEAP_CACHE or MAPPED_CACHE.
+	 **********************
+	 */
+	public DistanceEngine(MultiLabelData paraDataset, int paraCacheMode) {
+		this(paraDataset, paraCacheMode, null);
+	}// Of the first constructor
+
+	/**
+	 **********************
+	 * The second constructor. The cache is built in parallel.
+	 *
+	 * @param paraDataset
+	 *            The dataset.
+	 * @param paraCacheMode
+	 *            NO_CACHE, HEAP_CACHE or MAPPED_CACHE.
+	 * @param paraPool
+	 *            The pool for building the cache, null for the current thread.
+	 **********************
+	 */
+	public DistanceEngine(MultiLabelData paraDataset, int paraCacheMode, ForkJoinPool paraPool) {
+		dataset = paraDataset;
+		numInstances = dataset.getNumInstances();
+		numConditions = dataset.getNumConditions();
+
+		cacheMode = paraCacheMode;
+		if (cacheMode != NO_CACHE) {
+			try {
+				buildCache(paraPool);
+			} catch (IOException ee) {
+				System.out.println("Cannot build the distance cache, distances will be computed "
+						+ "on demand: " + ee);
+				cacheMode = NO_CACHE;
+				heapCache = null;
+				mappedCache = null;
+			} // Of try
+		} // Of if
+	}// Of the second constructor
+
+	/**
+	 **********************
+	 * The number of pairs in the upper triangle.
+	 **********************
+	 */
+	long getNumPairs() {
+		return (long) numInstances * (numInstances - 1) / 2;
+	}// Of getNumPairs
+
+	/**
+	 **********************
+	 * The position of the pair (i, j), i < j, in the packed upper triangle.
+	 **********************
+	 */
+	long getPairIndex(int paraI, int paraJ) {
+		return (long) paraI * numInstances - (long) paraI * (paraI + 1) / 2 + (paraJ - paraI - 1);
+	}// Of getPairIndex
+
+	/**
+	 **********************
+	 * Allocate the cache and fill it tile by tile. Only tiles on or above the
+	 * diagonal are computed, i.e., the symmetry is exploited. Each row of tiles
+	 * is a parallel block.
+	 *
+	 * @param paraPool
+	 *            The pool, null for the current thread.
+	 **********************
+	 */
+	void buildCache(ForkJoinPool paraPool) throws IOException {
+		long tempNumPairs = getNumPairs();
+		if (cacheMode == HEAP_CACHE) {
+			if (tempNumPairs > Integer.MAX_VALUE - 8) {
+				throw new IOException(tempNumPairs + " pairs are too many for the heap cache.");
+			} // Of if
+			heapCache = new float[(int) tempNumPairs];
+		} else {
+			cacheFile = File.createTempFile("distance", ".cache");
+			cacheFile.deleteOnExit();
+			RandomAccessFile tempFile = new RandomAccessFile(cacheFile, "rw");
+			try {
+				FileChannel tempChannel = tempFile.getChannel();
+				int tempNumSegments = (int) ((tempNumPairs + SEGMENT_LENGTH - 1) / SEGMENT_LENGTH);
+				mappedCache = new FloatBuffer[tempNumSegments];
+				for (int i = 0; i < tempNumSegments; i++) {
+					long tempLength = Math.min(SEGMENT_LENGTH,
+							tempNumPairs - (long) i * SEGMENT_LENGTH);
+					mappedCache[i] = tempChannel.map(FileChannel.MapMode.READ_WRITE,
+							(long) i * SEGMENT_LENGTH * 4, tempLength * 4).asFloatBuffer();
+				} // Of for i
+			} finally {
+				// The mapping stays valid after closing.
+				tempFile.close();
+			} // Of try
+		} // Of if
+
+		ParallelTools.forEachBlock(paraPool, getNumTiles(), paraBlock -> buildCacheRow(paraBlock));
+	}// Of buildCache
+
+	/**
+	 **********************
+	 * Fill the cache for one row of tiles.
+	 *
+	 * @param paraTileRow
+	 *            The tile row index.
+	 **********************
+	 */
+	void buildCacheRow(int paraTileRow) {
+		double[] tempTile = new double[TILE_SIZE * TILE_SIZE];
+		int tempRowStart = paraTileRow * TILE_SIZE;
+		int tempRowEnd = Math.min(tempRowStart + TILE_SIZE, numInstances);
+		for (int tempColumnStart = tempRowStart; tempColumnStart < numInstances;
+				tempColumnStart += TILE_SIZE) {
+			int tempColumnEnd = Math.min(tempColumnStart + TILE_SIZE, numInstances);
+			computeTileDirectly(tempRowStart, tempRowEnd, tempColumnStart, tempColumnEnd,
+					tempTile);
+			int tempWidth = tempColumnEnd - tempColumnStart;
+			for (int i = tempRowStart; i < tempRowEnd; i++) {
+				for (int j = Math.max(i + 1, tempColumnStart); j < tempColumnEnd; j++) {
+					store(getPairIndex(i, j),
+							(float) tempTile[(i - tempRowStart) * tempWidth + j
+									- tempColumnStart]);
+				} // Of for j
+			} // Of for i
+		} // Of for tempColumnStart
+	}// Of buildCacheRow
+
+	/**
+	 **********************
+	 * The number of tiles in one row or column.
+	 **********************
+	 */
+	public int getNumTiles() {
+		return (numInstances + TILE_SIZE - 1) / TILE_SIZE;
+	}// Of getNumTiles
+
+	/**
+	 **********************
+	 * Store one value into the cache.
+	 **********************
+	 */
+	void store(long paraIndex, float paraValue) {
+		if (heapCache != null) {
+			heapCache[(int) paraIndex] = paraValue;
+		} else {
+			mappedCache[(int) (paraIndex / SEGMENT_LENGTH)].put((int) (paraIndex % SEGMENT_LENGTH),
+					paraValue);
+		} // Of if
+	}// Of store
+
+	/**
+	 **********************
+	 * Load one value from the cache.
+	 **********************
+	 */
+	float load(long paraIndex) {
+		if (heapCache != null) {
+			return heapCache[(int) paraIndex];
+		} // Of if
+		return mappedCache[(int) (paraIndex / SEGMENT_LENGTH)]
+				.get((int) (paraIndex % SEGMENT_LENGTH));
+	}// Of load
+
+	/**
+	 **********************
+	 * The distance between two instances, the same measure as
+	 * MultiLabelData.distance().
+	 *
+	 * @param paraI
+	 *            The first index.
+	 * @param paraJ
+	 *            The second index.
+	 **********************
+	 */
+	public double distance(int paraI, int paraJ) {
+		if (paraI == paraJ) {
+			return 0;
+		} // Of if
+
+		if (cacheMode != NO_CACHE) {
+			if (paraI < paraJ) {
+				return load(getPairIndex(paraI, paraJ));
+			} // Of if
+			return load(getPairIndex(paraJ, paraI));
+		} // Of if
+
+		return dataset.distance(paraI, paraJ);
+	}// Of distance
+
+	/**
+	 **********************
+	 * Compute a tile of the distance matrix. The tile is row-major, with
+	 * (paraColumnEnd - paraColumnStart) columns.
+	 *
+	 * @param paraRowStart
+	 *            The first row.
+	 * @param paraRowEnd
+	 *            The last row, exclusive.
+	 * @param paraColumnStart
+	 *            The first column.
+	 * @param paraColumnEnd
+	 *            The last column, exclusive.
+	 * @param paraTile
+	 *            The tile to fill, with enough space.
+	 **********************
+	 */
+	public void computeTile(int paraRowStart, int paraRowEnd, int paraColumnStart,
+			int paraColumnEnd, double[] paraTile) {
+		if (cacheMode == NO_CACHE) {
+			computeTileDirectly(paraRowStart, paraRowEnd, paraColumnStart, paraColumnEnd,
+					paraTile);
+			return;
+		} // Of if
+
+		int tempWidth = paraColumnEnd - paraColumnStart;
+		for (int i = paraRowStart; i < paraRowEnd; i++) {
+			int tempOffset = (i - paraRowStart) * tempWidth - paraColumnStart;
+			for (int j = paraColumnStart; j < paraColumnEnd; j++) {
+				paraTile[tempOffset + j] = distance(i, j);
+			} // Of for j
+		} // Of for i
+	}// Of computeTile
+
+	/**
+	 **********************
+	 * Compute a tile without the cache.
+	 **********************
+	 */
+	void computeTileDirectly(int paraRowStart, int paraRowEnd, int paraColumnStart,
+			int paraColumnEnd, double[] paraTile) {
+		int tempWidth = paraColumnEnd - paraColumnStart;
+		if (dataset.isSparse()) {
+			for (int i = paraRowStart; i < paraRowEnd; i++) {
+				int tempOffset = (i - paraRowStart) * tempWidth - paraColumnStart;
+				for (int j = paraColumnStart; j < paraColumnEnd; j++) {
+					paraTile[tempOffset + j] = (i == j) ? 0 : dataset.distance(i, j);
+				} // Of for j
+			} // Of for i
+			return;
+		} // Of if
+
+		// Two rows by four columns at a time, with the sums in registers.
+		double[][] tempData = dataset.dataMatrix;
+		boolean tempEuclidean = dataset.distanceMeasure == MultiLabelData.EUCLIDEAN;
+		int i = paraRowStart;
+		for (; i + 1 < paraRowEnd; i += 2) {
+			int tempOffset = (i - paraRowStart) * tempWidth - paraColumnStart;
+			int j = paraColumnStart;
+			for (; j + 3 < paraColumnEnd; j += 4) {
+				if (tempEuclidean) {
+					euclideanMicroTile(tempData, i, j, paraTile, tempOffset, tempWidth);
+				} else {
+					manhattanMicroTile(tempData, i, j, paraTile, tempOffset, tempWidth);
+				} // Of if
+			} // Of for j
+			for (; j < paraColumnEnd; j++) {
+				paraTile[tempOffset + j] = dataset.distance(i, j);
+				paraTile[tempOffset + tempWidth + j] = dataset.distance(i + 1, j);
+			} // Of for j
+		} // Of for i
+		for (; i < paraRowEnd; i++) {
+			int tempOffset = (i - paraRowStart) * tempWidth - paraColumnStart;
+			for (int j = paraColumnStart; j < paraColumnEnd; j++) {
+				paraTile[tempOffset + j] = dataset.distance(i, j);
+			} // Of for j
+		} // Of for i
+	}// Of computeTileDirectly
+
+	/**
+	 **********************
+	 * The Euclidean distances between rows i, i + 1 and columns j, ..., j + 3.
+	 * Each loaded value is used four or two times, while each sum is added in
+	 * the order of conditions as in MultiLabelData.distance().
+	 **********************
+	 */
+	void euclideanMicroTile(double[][] paraData, int paraI, int paraJ, double[] paraTile,
+			int paraOffset, int paraWidth) {
+		double[] tempRow0 = paraData[paraI];
+		double[] tempRow1 = paraData[paraI + 1];
+		double[] tempColumn0 = paraData[paraJ];
+		double[] tempColumn1 = paraData[paraJ + 1];
+		double[] tempColumn2 = paraData[paraJ + 2];
+		double[] tempColumn3 = paraData[paraJ + 3];
+		double tempSum00 = 0, tempSum01 = 0, tempSum02 = 0, tempSum03 = 0;
+		double tempSum10 = 0, tempSum11 = 0, tempSum12 = 0, tempSum13 = 0;
+		double tempDifference;
+		for (int k = 0; k < numConditions; k++) {
+			double tempValue0 = tempRow0[k];
+			double tempValue1 = tempRow1[k];
+			double tempColumnValue = tempColumn0[k];
+			tempDifference = tempValue0 - tempColumnValue;
+			tempSum00 += tempDifference * tempDifference;
+			tempDifference = tempValue1 - tempColumnValue;
+			tempSum10 += tempDifference * tempDifference;
+			tempColumnValue = tempColumn1[k];
+			tempDifference = tempValue0 - tempColumnValue;
+			tempSum01 += tempDifference * tempDifference;
+			tempDifference = tempValue1 - tempColumnValue;
+			tempSum11 += tempDifference * tempDifference;
+			tempColumnValue = tempColumn2[k];
+			tempDifference = tempValue0 - tempColumnValue;
+			tempSum02 += tempDifference * tempDifference;
+			tempDifference = tempValue1 - tempColumnValue;
+			tempSum12 += tempDifference * tempDifference;
+			tempColumnValue = tempColumn3[k];
+			tempDifference = tempValue0 - tempColumnValue;
+			tempSum03 += tempDifference * tempDifference;
+			tempDifference = tempValue1 - tempColumnValue;
+			tempSum13 += tempDifference * tempDifference;
+		} // Of for k
+		storeMicroTile(paraTile, paraOffset + paraJ, paraWidth, tempSum00, tempSum01, tempSum02,
+				tempSum03, tempSum10, tempSum11, tempSum12, tempSum13);
+	}// Of euclideanMicroTile
+
+	/**
+	 **********************
+	 * The Manhattan distances between rows i, i + 1 and columns j, ..., j + 3.
+	 **********************
+	 */
+	void manhattanMicroTile(double[][] paraData, int paraI, int paraJ, double[] paraTile,
+			int paraOffset, int paraWidth) {
+		double[] tempRow0 = paraData[paraI];
+		double[] tempRow1 = paraData[paraI + 1];
+		double[] tempColumn0 = paraData[paraJ];
+		double[] tempColumn1 = paraData[paraJ + 1];
+		double[] tempColumn2 = paraData[paraJ + 2];
+		double[] tempColumn3 = paraData[paraJ + 3];
+		double tempSum00 = 0, tempSum01 = 0, tempSum02 = 0, tempSum03 = 0;
+		double tempSum10 = 0, tempSum11 = 0, tempSum12 = 0, tempSum13 = 0;
+		for (int k = 0; k < numConditions; k++) {
+			double tempValue0 = tempRow0[k];
+			double tempValue1 = tempRow1[k];
+			double tempColumnValue = tempColumn0[k];
+			tempSum00 += Math.abs(tempValue0 - tempColumnValue);
+			tempSum10 += Math.abs(tempValue1 - tempColumnValue);
+			tempColumnValue = tempColumn1[k];
+			tempSum01 += Math.abs(tempValue0 - tempColumnValue);
+			tempSum11 += Math.abs(tempValue1 - tempColumnValue);
+			tempColumnValue = tempColumn2[k];
+			tempSum02 += Math.abs(tempValue0 - tempColumnValue);
+			tempSum12 += Math.abs(tempValue1 - tempColumnValue);
+			tempColumnValue = tempColumn3[k];
+			tempSum03 += Math.abs(tempValue0 - tempColumnValue);
+			tempSum13 += Math.abs(tempValue1 - tempColumnValue);
+		} // Of for k
+		storeMicroTile(paraTile, paraOffset + paraJ, paraWidth, tempSum00, tempSum01, tempSum02,
+				tempSum03, tempSum10, tempSum11, tempSum12, tempSum13);
+	}// Of manhattanMicroTile
+
+	/**
+	 **********************
+	 * Store a two by four micro tile.
+	 **********************
+	 */
+	static void storeMicroTile(double[] paraTile, int paraPosition, int paraWidth,
+			double paraSum00, double paraSum01, double paraSum02, double paraSum03,
+			double paraSum10, double paraSum11, double paraSum12, double paraSum13) {
+		paraTile[paraPosition] = paraSum00;
+		paraTile[paraPosition + 1] = paraSum01;
+		paraTile[paraPosition + 2] = paraSum02;
+		paraTile[paraPosition + 3] = paraSum03;
+		paraTile[paraPosition + paraWidth] = paraSum10;
+		paraTile[paraPosition + paraWidth + 1] = paraSum11;
+		paraTile[paraPosition + paraWidth + 2] = paraSum12;
+		paraTile[paraPosition + paraWidth + 3] = paraSum13;
+	}// Of storeMicroTile
+
+	/**
+	 **********************
+	 * Release the cache. The mapped file is deleted.
+	 **********************
+	 */
+	public void release() {
+		heapCache = null;
+		mappedCache = null;
+		if (cacheFile != null) {
+			cacheFile.delete();
+			cacheFile = null;
+		} // Of if
+		cacheMode = NO_CACHE;
+	}// Of release
+
+	/**
+	 **********************
+	 * Getter.
+	 **********************
+	 */
+	public int getNumInstances() {
+		return numInstances;
+	}// Of getNumInstances
+
+	/**
+	 **********************
+	 * Compare the tiles with calling MultiLabelData.distance() for each pair,
+	 * i.e., the former way. The best time of a number of rounds over the whole
+	 * distance matrix is reported.
+	 *
+	 * @param paraDataset
+	 *            The dataset.
+	 * @param paraNumRounds
+	 *            The number of rounds.
+	 **********************
+	 */
+	public static void benchmark(MultiLabelData paraDataset, int paraNumRounds) {
+		DistanceEngine tempEngine = new DistanceEngine(paraDataset, NO_CACHE);
+		int tempNumInstances = paraDataset.getNumInstances();
+		double[] tempTile = new double[TILE_SIZE * TILE_SIZE];
+		long tempPairTime = Long.MAX_VALUE;
+		long tempTileTime = Long.MAX_VALUE;
+		double tempPairSum = 0;
+		double tempTileSum = 0;
+		boolean tempSame = true;
+		for (int r = 0; r < paraNumRounds; r++) {
+			long tempStartTime = System.nanoTime();
+			tempPairSum = 0;
+			for (int i = 0; i < tempNumInstances; i++) {
+				for (int j = 0; j < tempNumInstances; j++) {
+					tempPairSum += paraDataset.distance(i, j);
+				} // Of for j
+			} // Of for i
+			tempPairTime = Math.min(tempPairTime, System.nanoTime() - tempStartTime);
+
+			tempStartTime = System.nanoTime();
+			tempTileSum = 0;
+			for (int tempRowStart = 0; tempRowStart < tempNumInstances;
+					tempRowStart += TILE_SIZE) {
+				int tempRowEnd = Math.min(tempRowStart + TILE_SIZE, tempNumInstances);
+				for (int tempColumnStart = 0; tempColumnStart < tempNumInstances;
+						tempColumnStart += TILE_SIZE) {
+					int tempColumnEnd = Math.min(tempColumnStart + TILE_SIZE, tempNumInstances);
+					tempEngine.computeTile(tempRowStart, tempRowEnd, tempColumnStart,
+							tempColumnEnd, tempTile);
+					int tempWidth = tempColumnEnd - tempColumnStart;
+					for (int i = tempRowStart; i < tempRowEnd; i++) {
+						for (int j = tempColumnStart; j < tempColumnEnd; j++) {
+							double tempDistance = tempTile[(i - tempRowStart) * tempWidth + j
+									- tempColumnStart];
+							tempTileSum += tempDistance;
+							if (r == 0) {
+								tempSame &= tempDistance == paraDataset.distance(i, j);
+							} // Of if
+						} // Of for j
+					} // Of for i
+				} // Of for tempColumnStart
+			} // Of for tempRowStart
+			tempTileTime = Math.min(tempTileTime, System.nanoTime() - tempStartTime);
+		} // Of for r
+
+		System.out.println(tempNumInstances + " instances, " + paraDataset.getNumConditions()
+				+ " conditions: pair by pair " + tempPairTime / 1000000 + "ms, tiles "
+				+ tempTileTime / 1000000 + "ms, the same distances: " + tempSame
+				+ ", sums " + tempPairSum + " vs. " + tempTileSum);
+	}// Of benchmark
+
+	/**
+	 **********************
+	 * The entrance.
+	 **********************
+	 */
+	public static void main(String[] args) {
+		benchmark(new MultiLabelData("data/flags.arff", 14, 12), 20);
+		if (args.length == 3) {
+			benchmark(new MultiLabelData(args[0], Integer.parseInt(args[1]),
+					Integer.parseInt(args[2])), 5);
+		} // Of if
+	}// Of main
+}// Of class DistanceEngine
@@ -1,9 +1,18 @@
 package data;
 
+import java.io.BufferedWriter;
+import java.io.File;
 import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
 
 import weka.core.Instances;
+import util.IndexedHeap;
 import util.SimpleTools;
 
 /**
@@ -18,9 +27,14 @@ public class MultiLabelData {
 	public static final int INVALID_LABEL = -100;
 
 	/**
-	 * The data.
+	 * The ARFF file of the data.
 	 */
-	Instances dataset = null;
+	String arffFilename;
+
+	/**
+	 * The hash of the normalized data, 0 before it is computed.
+	 */
+	long contentHash;
 
 	/**
 	 * The number of instances.
@@ -38,24 +52,41 @@ public class MultiLabelData {
 	int numLabels;
 
 	/**
-	 * The data matrix.
+	 * The data matrix. It is null for sparse data.
 	 */
 	double[][] dataMatrix;
 
 	/**
-	 * The label matrix.
+	 * The data in the sparse form. It is null for dense data.
+	 */
+	SparseMatrix sparseMatrix;
+
+	/**
+	 * The number of longs for the labels of one instance. Label j of instance i
+	 * is bit (j % 64) of word (i * numLabelWords + j / 64).
 	 */
-	int[][] labelMatrix;
+	int numLabelWords;
 
 	/**
-	 * The predicted label matrix.
+	 * The label matrix, bit-packed.
 	 */
-	int[][] predictedLabelMatrix;
+	long[] labelBits;
 
 	/**
-	 * Which labels are known.
+	 * The predicted label matrix, bit-packed. Only valid where predictedBits is
+	 * set.
 	 */
-	boolean[][] labelQueriedMatrix;
+	long[] predictedLabelBits;
+
+	/**
+	 * Which labels are predicted, bit-packed.
+	 */
+	long[] predictedBits;
+
+	/**
+	 * Which labels are known, bit-packed.
+	 */
+	long[] labelQueriedBits;
 
 	/**
 	 * Does respective instances have label queried. If not, the instance cannot
@@ -78,6 +109,11 @@ public class MultiLabelData {
 	 */
 	double[] labelQueryCountArray;
 
+	/**
+	 * The labels in a heap keyed by the query count, the scarest on the top.
+	 */
+	IndexedHeap labelScarcityHeap;
+
 	/**
 	 * Store queried instances, e.g., [3, 6, 9, 10, 12, -1, -1].
 	 */
@@ -103,6 +139,44 @@ public class MultiLabelData {
 	 */
 	String costDetail = "";
 
+	/**
+	 * The label is not predicted yet.
+	 */
+	public static final int UNPREDICTED = 0;
+
+	/**
+	 * The prediction is correct.
+	 */
+	public static final int CORRECT = 1;
+
+	/**
+	 * False positive, i.e., prediction 0 as 1.
+	 */
+	public static final int FALSE_POSITIVE = 2;
+
+	/**
+	 * False negative, i.e., prediction 1 as 0.
+	 */
+	public static final int FALSE_NEGATIVE = 3;
+
+	/**
+	 * The number of outcomes above.
+	 */
+	static final int NUM_OUTCOMES = 4;
+
+	/**
+	 * The number of instance-label pairs for each outcome. The first
+	 * NUM_OUTCOMES are for unqueried pairs and the others for queried ones.
+	 * They are maintained by setPredictedLabel and queryLabels, so that the
+	 * accuracy and the cost are obtained without scanning.
+	 */
+	long[] outcomeCountArray;
+
+	/**
+	 * The outcome counts of each label, organized as outcomeCountArray.
+	 */
+	int[][] labelOutcomeCountMatrix;
+
 	/**
 	 * Manhattan distance.
 	 */
@@ -118,6 +192,18 @@ public class MultiLabelData {
 	 */
 	public int distanceMeasure = EUCLIDEAN;
 
+	/**
+	 * Use Weka to read the file if the native reader fails, e.g., for date or
+	 * string attributes.
+	 */
+	public static boolean wekaFallback = true;
+
+	/**
+	 * Use the binary cache next to the ARFF file to skip parsing and
+	 * normalization.
+	 */
+	public static boolean useBinaryCache = true;
+
 	/**
 	 ********************** 
 	 * The first constructor. Data and labels are stored in one file.
@@ -126,49 +212,54 @@ public class MultiLabelData {
 	 ********************** 
 	 */
 	public MultiLabelData(String paraArffFilename, int paraNumConditions, int paraNumLabels) {
-		try {
-			FileReader tempReader = new FileReader(paraArffFilename);
-			dataset = new Instances(tempReader);
-			// The last attribute is the decision class.
-			dataset.setClassIndex(dataset.numAttributes() - 1);
-			tempReader.close();
-		} catch (Exception ee) {
-			System.out.println("Error occurred while trying to read \'" + paraArffFilename
-					+ "\' in GeneralAnn constructor.\r\n" + ee);
-			System.exit(0);
-		} // of try
-
-		// Data matrix initialization.
-		numInstances = dataset.numInstances();
+		arffFilename = paraArffFilename;
 		numConditions = paraNumConditions;
 		numLabels = paraNumLabels;
 
-		dataMatrix = new double[numInstances][numConditions];
-		for (int i = 0; i < dataMatrix.length; i++) {
-			for (int j = 0; j < dataMatrix[i].length; j++) {
-				dataMatrix[i][j] = dataset.instance(i).value(j);
-			} // Of for j
-		} // Of for i
+		// Try the binary cache first.
+		DatasetCache tempCache = null;
+		if (useBinaryCache) {
+			tempCache = new DatasetCache(paraArffFilename, paraNumConditions, paraNumLabels);
+			try {
+				if (tempCache.load()) {
+					numInstances = tempCache.numInstances;
+					dataMatrix = tempCache.dataMatrix;
+					sparseMatrix = tempCache.sparseMatrix;
+					labelBits = tempCache.labelBits;
+				} // Of if
+			} catch (IOException ee) {
+				System.out.println("Cannot read the cache " + tempCache.getCacheFile() + ": " + ee);
+			} // Of try
+		} // Of if
 
-		// Normalize it. Important code.
-		SimpleTools.normalize(dataMatrix);
-
-		// Label matrix initialization.
-		labelMatrix = new int[numInstances][numLabels];
-		predictedLabelMatrix = new int[numInstances][numLabels];
-		for (int i = 0; i < labelMatrix.length; i++) {
-			for (int j = 0; j < labelMatrix[0].length; j++) {
-				labelMatrix[i][j] = (int) dataset.instance(i).value(numConditions + j);
-				predictedLabelMatrix[i][j] = INVALID_LABEL;
-			} // Of for j
-		} // Of for i
+		if (labelBits == null) {
+			readAndNormalize(paraArffFilename);
+			if (tempCache != null) {
+				try {
+					tempCache.save(numInstances, dataMatrix, sparseMatrix, labelBits);
+				} catch (IOException ee) {
+					System.out.println(
+							"Cannot write the cache " + tempCache.getCacheFile() + ": " + ee);
+				} // Of try
+			} // Of if
+		} // Of if
+
+		// Predicted label matrix initialization. Nothing is predicted.
+		numLabelWords = (numLabels + 63) >>> 6;
+		predictedLabelBits = new long[numInstances * numLabelWords];
+		predictedBits = new long[numInstances * numLabelWords];
 
 		hasLabelQueriedArray = new boolean[numInstances];
-		labelQueriedMatrix = new boolean[numInstances][numLabels];
+		labelQueriedBits = new long[numInstances * numLabelWords];
+
+		outcomeCountArray = new long[NUM_OUTCOMES * 2];
+		labelOutcomeCountMatrix = new int[numLabels][NUM_OUTCOMES * 2];
+		resetOutcomeCounts();
 		numQueriedInstances = 0;
 
 		labelQueryCountArray = new double[numLabels];
 		Arrays.fill(labelQueryCountArray, 0);
+		labelScarcityHeap = new IndexedHeap(numLabels);
 
 		queriedInstanceArray = new int[numInstances];
 		Arrays.fill(queriedInstanceArray, -1);
@@ -176,23 +267,193 @@ public class MultiLabelData {
 
 	/**
 	 ********************** 
-	 * Reset variables in learning.
+	 * Read the data and labels from the ARFF file, and then normalize the data.
+	 * 
+	 * @param paraArffFilename
+	 *            The data filename.
 	 ********************** 
 	 */
-	public void reset() {
+	void readAndNormalize(String paraArffFilename) {
+		// Read with the native reader first.
+		try {
+			ArffReader tempReader = new ArffReader(paraArffFilename);
+			tempReader.read(numConditions, numLabels);
+			if (tempReader.isSparse()) {
+				sparseMatrix = tempReader.getSparseMatrix();
+			} else {
+				dataMatrix = tempReader.getDataMatrix();
+			} // Of if
+			numInstances = tempReader.getNumInstances();
+			labelBits = tempReader.getLabelBits();
+		} catch (Exception ee) {
+			if (!wekaFallback) {
+				System.out.println("Error occurred while trying to read \'" + paraArffFilename
+						+ "\' in MultiLabelData constructor.\r\n" + ee);
+				System.exit(0);
+			} // Of if
+			System.out.println("Native reader failed, now try Weka.\r\n" + ee);
+			readByWeka(paraArffFilename);
+		} // Of try
+
+		// Normalize it. Important code.
+		if (sparseMatrix != null) {
+			sparseMatrix.normalize();
+		} else {
+			SimpleTools.normalize(dataMatrix);
+		} // Of if
+	}// Of readAndNormalize
+
+	/**
+	 ********************** 
+	 * Read the data and labels through Weka. It keeps three copies of the data
+	 * in memory for a while, hence only serves as a fallback.
+	 * 
+	 * @param paraArffFilename
+	 *            The data filename.
+	 ********************** 
+	 */
+	void readByWeka(String paraArffFilename) {
+		Instances tempDataset = null;
+		try {
+			FileReader tempReader = new FileReader(paraArffFilename);
+			tempDataset = new Instances(tempReader);
+			// The last attribute is the decision class.
+			tempDataset.setClassIndex(tempDataset.numAttributes() - 1);
+			tempReader.close();
+		} catch (Exception ee) {
+			System.out.println("Error occurred while trying to read \'" + paraArffFilename
+					+ "\' in MultiLabelData constructor.\r\n" + ee);
+			System.exit(0);
+		} // of try
+
+		numInstances = tempDataset.numInstances();
+		int tempNumLabelWords = (numLabels + 63) >>> 6;
+		dataMatrix = new double[numInstances][numConditions];
+		labelBits = new long[numInstances * tempNumLabelWords];
 		for (int i = 0; i < numInstances; i++) {
-			Arrays.fill(predictedLabelMatrix[i], -1);
-			Arrays.fill(labelQueriedMatrix[i], false);
+			for (int j = 0; j < numConditions; j++) {
+				dataMatrix[i][j] = tempDataset.instance(i).value(j);
+			} // Of for j
+			// The same check as ArffReader.packLabels().
+			for (int j = 0; j < numLabels; j++) {
+				int tempLabel = (int) tempDataset.instance(i).value(numConditions + j);
+				if (tempLabel == 1) {
+					labelBits[i * tempNumLabelWords + (j >>> 6)] |= 1L << (j & 63);
+				} else if (tempLabel != 0) {
+					System.out.println("Error occurred while trying to read \'" + paraArffFilename
+							+ "\' in MultiLabelData constructor.\r\nLabel " + j + " is "
+							+ tempLabel + ", but it should be 0 or 1, see instance " + i + ".");
+					System.exit(0);
+				} // Of if
+			} // Of for j
 		} // Of for i
+	}// Of readByWeka
+
+	/**
+	 ********************** 
+	 * Reset variables in learning.
+	 ********************** 
+	 */
+	public void reset() {
+		Arrays.fill(predictedLabelBits, 0);
+		Arrays.fill(predictedBits, 0);
+		Arrays.fill(labelQueriedBits, 0);
 
 		Arrays.fill(hasLabelQueriedArray, false);
 		Arrays.fill(labelQueryCountArray, 0);
+		labelScarcityHeap.reset();
 		Arrays.fill(queriedInstanceArray, -1);
 
 		numQueriedInstances = 0;
 		numQueriedLabels = 0;
+		resetOutcomeCounts();
 	}// Of reset
 
+	/**
+	 ********************** 
+	 * Reset outcome counts. All pairs are unqueried and unpredicted.
+	 ********************** 
+	 */
+	void resetOutcomeCounts() {
+		Arrays.fill(outcomeCountArray, 0);
+		outcomeCountArray[UNPREDICTED] = (long) numInstances * numLabels;
+		for (int j = 0; j < numLabels; j++) {
+			Arrays.fill(labelOutcomeCountMatrix[j], 0);
+			labelOutcomeCountMatrix[j][UNPREDICTED] = numInstances;
+		} // Of for j
+	}// Of resetOutcomeCounts
+
+	/**
+	 ********************** 
+	 * Get the outcome of one instance-label pair, with NUM_OUTCOMES added if
+	 * the label is queried.
+	 ********************** 
+	 */
+	int getOutcomeIndex(int paraRow, int paraColumn) {
+		int resultIndex;
+		if (!getBit(predictedBits, paraRow, paraColumn)) {
+			resultIndex = UNPREDICTED;
+		} else if (getBit(predictedLabelBits, paraRow, paraColumn) == getBit(labelBits, paraRow,
+				paraColumn)) {
+			resultIndex = CORRECT;
+		} else if (getBit(predictedLabelBits, paraRow, paraColumn)) {
+			resultIndex = FALSE_POSITIVE;
+		} else {
+			resultIndex = FALSE_NEGATIVE;
+		} // Of if
+
+		if (getBit(labelQueriedBits, paraRow, paraColumn)) {
+			resultIndex += NUM_OUTCOMES;
+		} // Of if
+		return resultIndex;
+	}// Of getOutcomeIndex
+
+	/**
+	 ********************** 
+	 * Move one pair from an outcome to another.
+	 ********************** 
+	 */
+	void moveOutcome(int paraColumn, int paraOldIndex, int paraNewIndex) {
+		if (paraOldIndex == paraNewIndex) {
+			return;
+		} // Of if
+		outcomeCountArray[paraOldIndex]--;
+		outcomeCountArray[paraNewIndex]++;
+		labelOutcomeCountMatrix[paraColumn][paraOldIndex]--;
+		labelOutcomeCountMatrix[paraColumn][paraNewIndex]++;
+	}// Of moveOutcome
+
+	/**
+	 ********************** 
+	 * Getter. The number of instance-label pairs with the given outcome.
+	 * 
+	 * @param paraQueried
+	 *            Queried pairs or unqueried ones.
+	 * @param paraOutcome
+	 *            The outcome, e.g., FALSE_POSITIVE.
+	 ********************** 
+	 */
+	public long getOutcomeCount(boolean paraQueried, int paraOutcome) {
+		return outcomeCountArray[paraQueried ? NUM_OUTCOMES + paraOutcome : paraOutcome];
+	}// Of getOutcomeCount
+
+	/**
+	 ********************** 
+	 * Getter. The number of instances with the given outcome on one label.
+	 * 
+	 * @param paraLabel
+	 *            The label index.
+	 * @param paraQueried
+	 *            Queried pairs or unqueried ones.
+	 * @param paraOutcome
+	 *            The outcome, e.g., FALSE_POSITIVE.
+	 ********************** 
+	 */
+	public int getLabelOutcomeCount(int paraLabel, boolean paraQueried, int paraOutcome) {
+		return labelOutcomeCountMatrix[paraLabel][paraQueried ? NUM_OUTCOMES + paraOutcome
+				: paraOutcome];
+	}// Of getLabelOutcomeCount
+
 	/**
 	 ********************** 
 	 * Getter
@@ -231,29 +492,156 @@ public class MultiLabelData {
 
 	/**
 	 ********************** 
-	 * Getter. Get one row.
+	 * Is the data stored in the sparse form?
+	 ********************** 
+	 */
+	public boolean isSparse() {
+		return sparseMatrix != null;
+	}// Of isSparse
+
+	/**
+	 ********************** 
+	 * Getter. Only valid for sparse data.
+	 ********************** 
+	 */
+	public SparseMatrix getSparseMatrix() {
+		return sparseMatrix;
+	}// Of getSparseMatrix
+
+	/**
+	 ********************** 
+	 * Getter.
+	 ********************** 
+	 */
+	public String getArffFilename() {
+		return arffFilename;
+	}// Of getArffFilename
+
+	/**
+	 ********************** 
+	 * Get the 64-bit FNV-1a hash of the normalized conditions. It is computed
+	 * only once.
+	 ********************** 
+	 */
+	public long getContentHash() {
+		if (contentHash != 0) {
+			return contentHash;
+		} // Of if
+
+		long resultHash = 0xcbf29ce484222325L;
+		resultHash = hashLong(resultHash, numInstances);
+		resultHash = hashLong(resultHash, numConditions);
+		if (sparseMatrix != null) {
+			int[] tempRowStarts = sparseMatrix.getRowStarts();
+			for (int i = 0; i < tempRowStarts.length; i++) {
+				resultHash = hashLong(resultHash, tempRowStarts[i]);
+			} // Of for i
+			int[] tempColumns = sparseMatrix.getColumns();
+			double[] tempValues = sparseMatrix.getValues();
+			for (int i = 0; i < sparseMatrix.getNumNonZeros(); i++) {
+				resultHash = hashLong(resultHash, tempColumns[i]);
+				resultHash = hashLong(resultHash, Double.doubleToLongBits(tempValues[i]));
+			} // Of for i
+		} else {
+			for (int i = 0; i < numInstances; i++) {
+				for (int j = 0; j < numConditions; j++) {
+					resultHash = hashLong(resultHash, Double.doubleToLongBits(dataMatrix[i][j]));
+				} // Of for j
+			} // Of for i
+		} // Of if
+
+		if (resultHash == 0) {
+			resultHash = 1;
+		} // Of if
+		contentHash = resultHash;
+		return contentHash;
+	}// Of getContentHash
+
+	/**
+	 ********************** 
+	 * One step of FNV-1a, a byte at a time.
+	 ********************** 
+	 */
+	static long hashLong(long paraHash, long paraValue) {
+		for (int i = 0; i < 8; i++) {
+			paraHash ^= (paraValue >>> (i * 8)) & 0xff;
+			paraHash *= 0x100000001b3L;
+		} // Of for i
+		return paraHash;
+	}// Of hashLong
+
+	/**
+	 ********************** 
+	 * Getter. Get one row. For sparse data a new dense array is built.
 	 ********************** 
 	 */
 	public double[] getData(int paraRow) {
+		if (sparseMatrix != null) {
+			return sparseMatrix.getDenseRow(paraRow);
+		} // Of if
 		return dataMatrix[paraRow];
 	}// Of getData
 
+	/**
+	 ********************** 
+	 * Getter. Get all rows. For sparse data new dense arrays are built.
+	 ********************** 
+	 */
+	public double[][] getDataRows() {
+		double[][] resultRows = new double[numInstances][];
+		for (int i = 0; i < numInstances; i++) {
+			resultRows[i] = getData(i);
+		} // Of for i
+		return resultRows;
+	}// Of getDataRows
+
 	/**
 	 ********************** 
 	 * Getter. Get one datum.
 	 ********************** 
 	 */
 	public double getData(int paraRow, int paraColumn) {
+		if (sparseMatrix != null) {
+			return sparseMatrix.get(paraRow, paraColumn);
+		} // Of if
 		return dataMatrix[paraRow][paraColumn];
 	}// Of getData
 
 	/**
 	 ********************** 
-	 * Getter. Get the labels of one instance.
+	 * Is the bit of the given instance and label set?
+	 ********************** 
+	 */
+	boolean getBit(long[] paraBits, int paraRow, int paraColumn) {
+		return ((paraBits[paraRow * numLabelWords + (paraColumn >>> 6)] >>> (paraColumn & 63))
+				& 1L) != 0;
+	}// Of getBit
+
+	/**
+	 ********************** 
+	 * Set the bit of the given instance and label.
+	 ********************** 
+	 */
+	void setBit(long[] paraBits, int paraRow, int paraColumn, boolean paraValue) {
+		int tempIndex = paraRow * numLabelWords + (paraColumn >>> 6);
+		if (paraValue) {
+			paraBits[tempIndex] |= 1L << (paraColumn & 63);
+		} else {
+			paraBits[tempIndex] &= ~(1L << (paraColumn & 63));
+		} // Of if
+	}// Of setBit
+
+	/**
+	 ********************** 
+	 * Getter. Get the labels of one instance. It is a new array.
 	 ********************** 
 	 */
 	public int[] getLabel(int paraRow) {
-		return labelMatrix[paraRow];
+		int[] resultLabels = new int[numLabels];
+		for (int i = 0; i < resultLabels.length; i++) {
+			resultLabels[i] = getLabel(paraRow, i);
+		} // Of for i
+		return resultLabels;
 	}// Of getLabel
 
 	/**
@@ -262,9 +650,21 @@ public class MultiLabelData {
 	 ********************** 
 	 */
 	public int getLabel(int paraRow, int paraColumn) {
-		return labelMatrix[paraRow][paraColumn];
+		return getBit(labelBits, paraRow, paraColumn) ? 1 : 0;
 	}// Of getLabel
 
+	/**
+	 ********************** 
+	 * Getter. Get one predicted label, INVALID_LABEL if not predicted.
+	 ********************** 
+	 */
+	public int getPredictedLabel(int paraRow, int paraColumn) {
+		if (!getBit(predictedBits, paraRow, paraColumn)) {
+			return INVALID_LABEL;
+		} // Of if
+		return getBit(predictedLabelBits, paraRow, paraColumn) ? 1 : 0;
+	}// Of getPredictedLabel
+
 	/**
 	 ********************** 
 	 * Getter.
@@ -280,9 +680,40 @@ public class MultiLabelData {
 	 ********************** 
 	 */
 	public void setPredictedLabel(int paraRow, int paraColumn, int paraValue) {
-		predictedLabelMatrix[paraRow][paraColumn] = paraValue;
+		int tempOldIndex = getOutcomeIndex(paraRow, paraColumn);
+		boolean tempValid = (paraValue == 0) || (paraValue == 1);
+		setBit(predictedBits, paraRow, paraColumn, tempValid);
+		setBit(predictedLabelBits, paraRow, paraColumn, paraValue == 1);
+		moveOutcome(paraColumn, tempOldIndex, getOutcomeIndex(paraRow, paraColumn));
 	}// Of setPredictedLabel
 
+	/**
+	 ********************** 
+	 * Set the predicted labels of one instance. Calls on different instances
+	 * may run in parallel.
+	 * 
+	 * @param paraRow
+	 *            The instance index.
+	 * @param paraValues
+	 *            The predicted labels, 0 or 1.
+	 ********************** 
+	 */
+	public void setPredictedLabels(int paraRow, int[] paraValues) {
+		int[] tempOldIndices = new int[numLabels];
+		for (int j = 0; j < numLabels; j++) {
+			tempOldIndices[j] = getOutcomeIndex(paraRow, j);
+			// The words of a row are not shared with other rows.
+			setBit(predictedBits, paraRow, j, (paraValues[j] == 0) || (paraValues[j] == 1));
+			setBit(predictedLabelBits, paraRow, j, paraValues[j] == 1);
+		} // Of for j
+
+		synchronized (this) {
+			for (int j = 0; j < numLabels; j++) {
+				moveOutcome(j, tempOldIndices[j], getOutcomeIndex(paraRow, j));
+			} // Of for j
+		} // Of synchronized
+	}// Of setPredictedLabels
+
 	/**
 	 ********************** 
 	 * Getter.
@@ -346,8 +777,8 @@ public class MultiLabelData {
 	public int[] getQueriedLabel(int paraRow) {
 		int[] resultLabels = new int[numLabels];
 		for (int i = 0; i < resultLabels.length; i++) {
-			if (labelQueriedMatrix[paraRow][i]) {
-				resultLabels[i] = labelMatrix[paraRow][i];
+			if (getBit(labelQueriedBits, paraRow, i)) {
+				resultLabels[i] = getLabel(paraRow, i);
 			} else {
 				resultLabels[i] = INVALID_LABEL;
 			} // Of if
@@ -368,37 +799,58 @@ public class MultiLabelData {
 	 ********************** 
 	 */
 	public int getQueriedLabel(int paraRow, int paraColumn) {
-		if (!labelQueriedMatrix[paraRow][paraColumn]) {
+		if (!getBit(labelQueriedBits, paraRow, paraColumn)) {
 			return INVALID_LABEL;
 		} // Of if
 
-		return labelMatrix[paraRow][paraColumn];
+		return getLabel(paraRow, paraColumn);
 	}// Of getQueriedLabel
 
 	/**
 	 ********************** 
-	 * Randomly query a number of labels.
+	 * Randomly query a number of labels with SimpleTools.random.
 	 * 
 	 * @param paraNumQueriedLabels
 	 *            The number of queried labels.
 	 ********************** 
 	 */
 	public void randomQuery(int paraNumQueriedLabels) {
+		randomQuery(paraNumQueriedLabels, SimpleTools.random);
+	}// Of randomQuery
+
+	/**
+	 ********************** 
+	 * Randomly query a number of labels. Distinct instance-label pairs are
+	 * sampled directly, so time and memory are O(paraNumQueriedLabels) instead
+	 * of O(numInstances * numLabels).
+	 * 
+	 * @param paraNumQueriedLabels
+	 *            The number of queried labels.
+	 * @param paraRandom
+	 *            The random generator, e.g., a seeded one for repeatable runs.
+	 ********************** 
+	 */
+	public void randomQuery(int paraNumQueriedLabels, Random paraRandom) {
 		int[] tempLabelArray = new int[1];
-		int[] tempArray = SimpleTools.getRandomOrder(numInstances * numLabels);
+		long[] tempArray = SimpleTools.sampleDistinct((long) numInstances * numLabels,
+				paraNumQueriedLabels, paraRandom);
 		for (int i = 0; i < paraNumQueriedLabels; i++) {
-			tempLabelArray[0] = tempArray[i] % numLabels;
-			queryLabels(tempArray[i] / numLabels, tempLabelArray);
+			tempLabelArray[0] = (int) (tempArray[i] % numLabels);
+			queryLabels((int) (tempArray[i] / numLabels), tempLabelArray);
 		} // Of for i
 	}// Of randomQuery
 
 	/**
 	 ********************** 
-	 * Get the label known status for one instance.
+	 * Get the label known status for one instance. It is a new array.
 	 ********************** 
 	 */
 	public boolean[] getLabelQueried(int paraRow) {
-		return labelQueriedMatrix[paraRow];
+		boolean[] resultArray = new boolean[numLabels];
+		for (int i = 0; i < resultArray.length; i++) {
+			resultArray[i] = getBit(labelQueriedBits, paraRow, i);
+		} // Of for i
+		return resultArray;
 	}// Of getLabelQueried
 
 	/**
@@ -407,7 +859,7 @@ public class MultiLabelData {
 	 ********************** 
 	 */
 	public boolean getLabelQueried(int paraRow, int paraColumn) {
-		return labelQueriedMatrix[paraRow][paraColumn];
+		return getBit(labelQueriedBits, paraRow, paraColumn);
 	}// Of getLabelQueried
 
 	/**
@@ -425,7 +877,8 @@ public class MultiLabelData {
 
 	/**
 	 ********************** 
-	 * Get scare labels.
+	 * Get scare labels, i.e., the least queried ones, in O(k log k) with the
+	 * heap. Among labels queried equally often, the last one comes first.
 	 * 
 	 * @param paraLength
 	 *            The length of the array.
@@ -434,15 +887,7 @@ public class MultiLabelData {
 	public int[] getScareLabels(int paraLength) {
 		// System.out.println("labelQueryCountArray = " +
 		// Arrays.toString(labelQueryCountArray));
-		int[] tempIndices = SimpleTools.mergeSortToIndices(labelQueryCountArray);
-
-		int[] resultArray = new int[paraLength];
-		for (int i = 0; i < paraLength; i++) {
-			// Scare labels instead of frequently queried ones.
-			resultArray[i] = tempIndices[numLabels - 1 - i];
-		} // Of for i
-
-		return resultArray;
+		return labelScarcityHeap.getFirst(paraLength);
 	}// Of getScareLabels
 
 	/**
@@ -472,18 +917,23 @@ public class MultiLabelData {
 		} // Of if
 
 		for (int j = 0; j < paraLabelIndices.length; j++) {
-			if (labelQueriedMatrix[paraInstance][paraLabelIndices[j]]) {
+			if (getBit(labelQueriedBits, paraInstance, paraLabelIndices[j])) {
 				System.out.println("Internal error occurred in MultiLabelData.queryLabels()."
 						+ "Cannot query a label twice.");
 				System.out.println(
-						Arrays.toString(labelMatrix[paraInstance]) + ", " + paraLabelIndices[j]);
+						Arrays.toString(getLabel(paraInstance)) + ", " + paraLabelIndices[j]);
 				System.exit(0);
 			} // Of if
 
-			labelQueriedMatrix[paraInstance][paraLabelIndices[j]] = true;
+			// The outcome moves to the queried part.
+			int tempOldIndex = getOutcomeIndex(paraInstance, paraLabelIndices[j]);
+			setBit(labelQueriedBits, paraInstance, paraLabelIndices[j], true);
+			moveOutcome(paraLabelIndices[j], tempOldIndex, tempOldIndex + NUM_OUTCOMES);
 
 			// Update label query count array.
 			labelQueryCountArray[paraLabelIndices[j]]++;
+			labelScarcityHeap.setKey(paraLabelIndices[j],
+					labelQueryCountArray[paraLabelIndices[j]]);
 		} // Of for j
 
 		// Update the queried instance array.
@@ -507,21 +957,12 @@ public class MultiLabelData {
 
 	/**
 	 ********************** 
-	 * Compute accuracy.
+	 * Compute accuracy. Unpredicted labels are incorrect.
 	 ********************** 
 	 */
 	public double computeAccuracy() {
-		double tempCorrect = 0;
-
-		for (int i = 0; i < labelMatrix.length; i++) {
-			for (int j = 0; j < labelMatrix[0].length; j++) {
-				// It is correct.
-				if (predictedLabelMatrix[i][j] == labelMatrix[i][j]) {
-					tempCorrect++;
-				} // Of if
-			} // Of for j
-		} // Of for i
-
+		double tempCorrect = outcomeCountArray[CORRECT]
+				+ outcomeCountArray[NUM_OUTCOMES + CORRECT];
 		return tempCorrect / numInstances / numLabels;
 	}// Of computeAccuracy
 
@@ -531,24 +972,25 @@ public class MultiLabelData {
 	 ********************** 
 	 */
 	public double computeTrainingAccuracy() {
-		double tempCorrect = 0;
-		double tempTotalQuery = 0;
-
-		for (int i = 0; i < labelMatrix.length; i++) {
-			for (int j = 0; j < labelMatrix[0].length; j++) {
-				if (labelQueriedMatrix[i][j]) {
-					tempTotalQuery++;
-					// It is correct.
-					if (predictedLabelMatrix[i][j] == labelMatrix[i][j]) {
-						tempCorrect++;
-					} // Of if
-				} // Of if
-			} // Of for j
-		} // Of for i
-
+		double tempCorrect = outcomeCountArray[NUM_OUTCOMES + CORRECT];
+		double tempTotalQuery = numQueriedLabels;
 		return tempCorrect / tempTotalQuery;
 	}// Of computeTrainingAccuracy
 
+	/**
+	 ********************** 
+	 * Compute the accuracy of one label.
+	 * 
+	 * @param paraLabel
+	 *            The label index.
+	 ********************** 
+	 */
+	public double computeLabelAccuracy(int paraLabel) {
+		double tempCorrect = labelOutcomeCountMatrix[paraLabel][CORRECT]
+				+ labelOutcomeCountMatrix[paraLabel][NUM_OUTCOMES + CORRECT];
+		return tempCorrect / numInstances;
+	}// Of computeLabelAccuracy
+
 	/**
 	 ********************** 
 	 * Compute the total cost.
@@ -556,32 +998,25 @@ public class MultiLabelData {
 	 */
 	public double computeTotalCost() {
 		double tempTotalTeacherCost = numQueriedLabels * teacherCost;
-		int tempNumFp = 0;
-		int tempNumFn = 0;
-
-		double tempTotalMisclassificationCost = 0;
-		for (int i = 0; i < labelMatrix.length; i++) {
-			for (int j = 0; j < labelMatrix[0].length; j++) {
-				// It is correct.
-				if (predictedLabelMatrix[i][j] == labelMatrix[i][j]) {
-					continue;
-				} // Of if
 
-				if ((predictedLabelMatrix[i][j] == 0) && (labelMatrix[i][j] == 1)) {
-					tempTotalMisclassificationCost += fnCost;
-					tempNumFn++;
-				} else if ((predictedLabelMatrix[i][j] == 1) && (labelMatrix[i][j] == 0)) {
-					tempTotalMisclassificationCost += fpCost;
-					tempNumFp++;
-				} else {
-					System.out.println("Error occurred in MultiLabelData.computeTotalCost()\r\n"
-							+ "The label at [" + i + "][" + j + "] has not been predicted.\r\n"
-							+ predictedLabelMatrix[i][j] + " vs. " + labelMatrix[i][j]);
-					System.exit(0);
-				} // Of if
-			} // Of for j
-		} // Of for i
+		// Every label should have been predicted.
+		if (outcomeCountArray[UNPREDICTED] + outcomeCountArray[NUM_OUTCOMES + UNPREDICTED] > 0) {
+			for (int i = 0; i < numInstances; i++) {
+				for (int j = 0; j < numLabels; j++) {
+					if (!getBit(predictedBits, i, j)) {
+						System.out.println("Error occurred in MultiLabelData.computeTotalCost()\r\n"
+								+ "The label at [" + i + "][" + j + "] has not been predicted.\r\n");
+						System.exit(0);
+					} // Of if
+				} // Of for j
+			} // Of for i
+		} // Of if
 
+		long tempNumFp = outcomeCountArray[FALSE_POSITIVE]
+				+ outcomeCountArray[NUM_OUTCOMES + FALSE_POSITIVE];
+		long tempNumFn = outcomeCountArray[FALSE_NEGATIVE]
+				+ outcomeCountArray[NUM_OUTCOMES + FALSE_NEGATIVE];
+		double tempTotalMisclassificationCost = tempNumFn * fnCost + tempNumFp * fpCost;
 		costDetail = "FP = " + tempNumFp + ", FN = " + tempNumFn + ", teacher cost = "
 				+ tempTotalTeacherCost + ", misclassification cost = "
 				+ tempTotalMisclassificationCost;
@@ -599,6 +1034,10 @@ public class MultiLabelData {
 	 ********************** 
 	 */
 	public double distance(int paraI, int paraJ) {
+		if (sparseMatrix != null) {
+			return sparseDistance(paraI, paraJ);
+		} // Of if
+
 		double resultDistance = 0;
 		double tempDifference;
 		switch (distanceMeasure) {
@@ -627,6 +1066,30 @@ public class MultiLabelData {
 		return resultDistance;
 	}// Of distance
 
+	/**
+	 ********************** 
+	 * Compute the distance between two instances of sparse data. Only non-zero
+	 * values are visited.
+	 * 
+	 * @param paraI
+	 *            The first index.
+	 * @param paraI
+	 *            The second index.
+	 ********************** 
+	 */
+	double sparseDistance(int paraI, int paraJ) {
+		switch (distanceMeasure) {
+		case MANHATTAN:
+			return sparseMatrix.manhattan(paraI, paraJ);
+		case EUCLIDEAN:
+			return sparseMatrix.squaredEuclidean(paraI, paraJ);
+		default:
+			System.out.println("Unsupported distance measure: " + distanceMeasure);
+		}// of switch
+
+		return 0;
+	}// Of sparseDistance
+
 	/**
 	 ********************** 
 	 * Test reading data.
@@ -635,8 +1098,19 @@ public class MultiLabelData {
 	public String toString() {
 		String resultString = "The data has " + numInstances + " instances, " + numConditions
 				+ " conditions, and " + numLabels + " labels.";
-		resultString += "\r\nData\r\n" + Arrays.deepToString(dataMatrix);
-		resultString += "\r\nLabel\r\n" + Arrays.deepToString(labelMatrix);
+		if (sparseMatrix != null) {
+			resultString += "\r\nData\r\n" + sparseMatrix;
+		} else {
+			resultString += "\r\nData\r\n" + Arrays.deepToString(dataMatrix);
+		} // Of if
+		StringBuilder tempBuilder = new StringBuilder("\r\nLabel\r\n[");
+		for (int i = 0; i < numInstances; i++) {
+			if (i > 0) {
+				tempBuilder.append(", ");
+			} // Of if
+			tempBuilder.append(Arrays.toString(getLabel(i)));
+		} // Of for i
+		resultString += tempBuilder.append("]");
 		return resultString;
 	}// Of toString
 
@@ -646,10 +1120,111 @@ public class MultiLabelData {
 	 ********************** 
 	 */
 	public static void readDataTest() {
-		MultiLabelData tempDataset = new MultiLabelData("D:/data/multilabel/flags.arff", 14, 12);
+		MultiLabelData tempDataset = new MultiLabelData("data/flags.arff", 14, 12);
 		System.out.println("The data is:\r\n" + tempDataset);
 	}// Of readDataTest
 
+	/**
+	 ********************** 
+	 * Build a larger file by repeating the data rows of an existing one.
+	 * 
+	 * @param paraArffFilename
+	 *            The original file.
+	 * @param paraTimes
+	 *            How many times the rows are repeated.
+	 * @return The new file.
+	 ********************** 
+	 */
+	static File buildScaledFile(String paraArffFilename, int paraTimes) throws IOException {
+		List<String> tempLines = Files.readAllLines(Paths.get(paraArffFilename));
+		int tempDataStart = 0;
+		while (!tempLines.get(tempDataStart).trim().toLowerCase().startsWith("@data")) {
+			tempDataStart++;
+		} // Of while
+		tempDataStart++;
+
+		File resultFile = File.createTempFile("scaled", ".arff");
+		resultFile.deleteOnExit();
+		BufferedWriter tempWriter = new BufferedWriter(new FileWriter(resultFile));
+		for (int i = 0; i < tempDataStart; i++) {
+			tempWriter.write(tempLines.get(i));
+			tempWriter.newLine();
+		} // Of for i
+		for (int t = 0; t < paraTimes; t++) {
+			for (int i = tempDataStart; i < tempLines.size(); i++) {
+				tempWriter.write(tempLines.get(i));
+				tempWriter.newLine();
+			} // Of for i
+		} // Of for t
+		tempWriter.close();
+
+		return resultFile;
+	}// Of buildScaledFile
+
+	/**
+	 ********************** 
+	 * Compare the loading time of the native reader and Weka.
+	 * 
+	 * @param paraArffFilename
+	 *            The data filename.
+	 * @param paraNumConditions
+	 *            The number of conditional attributes.
+	 * @param paraNumLabels
+	 *            The number of labels.
+	 * @param paraRepeat
+	 *            The number of loading times to average.
+	 ********************** 
+	 */
+	public static void loadTimeTest(String paraArffFilename, int paraNumConditions,
+			int paraNumLabels, int paraRepeat) {
+		boolean tempUseBinaryCache = useBinaryCache;
+		useBinaryCache = false;
+		long tempStartTime = System.nanoTime();
+		for (int i = 0; i < paraRepeat; i++) {
+			new MultiLabelData(paraArffFilename, paraNumConditions, paraNumLabels);
+		} // Of for i
+		long tempNativeTime = (System.nanoTime() - tempStartTime) / paraRepeat;
+
+		// The first one builds the cache.
+		useBinaryCache = true;
+		new MultiLabelData(paraArffFilename, paraNumConditions, paraNumLabels);
+		tempStartTime = System.nanoTime();
+		for (int i = 0; i < paraRepeat; i++) {
+			new MultiLabelData(paraArffFilename, paraNumConditions, paraNumLabels);
+		} // Of for i
+		long tempCacheTime = (System.nanoTime() - tempStartTime) / paraRepeat;
+		useBinaryCache = tempUseBinaryCache;
+
+		MultiLabelData tempData = new MultiLabelData(paraArffFilename, paraNumConditions,
+				paraNumLabels);
+		tempStartTime = System.nanoTime();
+		for (int i = 0; i < paraRepeat; i++) {
+			tempData.readByWeka(paraArffFilename);
+			SimpleTools.normalize(tempData.dataMatrix);
+		} // Of for i
+		long tempWekaTime = (System.nanoTime() - tempStartTime) / paraRepeat;
+
+		System.out.printf("%s, %d instances: native %.3f ms, cache %.3f ms, Weka %.3f ms\r\n",
+				paraArffFilename, tempData.numInstances, tempNativeTime / 1e6, tempCacheTime / 1e6,
+				tempWekaTime / 1e6);
+	}// Of loadTimeTest
+
+	/**
+	 ********************** 
+	 * Compare the loading time on flags and a scaled-up flags.
+	 ********************** 
+	 */
+	public static void loadTimeTest() {
+		loadTimeTest("data/flags.arff", 14, 12, 20);
+		try {
+			File tempFile = buildScaledFile("data/flags.arff", 500);
+			loadTimeTest(tempFile.getPath(), 14, 12, 3);
+			new File(tempFile.getPath() + ".mlbin").delete();
+		} catch (IOException ee) {
+			System.out.println("Error occurred in MultiLabelData.loadTimeTest(): " + ee);
+		} // Of try
+	}// Of loadTimeTest
+
 	/**
 	 ********************** 
 	 * The entrance.
@@ -657,6 +1232,7 @@ public class MultiLabelData {
 	 */
 	public static void main(String[] args) {
 		readDataTest();
+		loadTimeTest();
 		System.out.println("Finish.");
 	}// Of main
 }// Of class MultiLabelData
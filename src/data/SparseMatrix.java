@@ -0,0 +1,277 @@
+package data;
+
+import java.util.Arrays;
+
+/**
+ * A sparse matrix in the CSR (compressed sparse row) format. The non-zero
+ * values of row i are values[rowStarts[i]] to values[rowStarts[i + 1] - 1],
+ * and their column indices are stored in the same positions of columns, in
+ * ascending order.
+ *
+ * @author Fan Min. minfanphd@163.com, minfan@swpu.edu.cn.
+ */
+public class SparseMatrix {
+	/**
+	 * The number of rows.
+	 */
+	int numRows;
+
+	/**
+	 * The number of columns.
+	 */
+	int numColumns;
+
+	/**
+	 * The non-zero values.
+	 */
+	double[] values;
+
+	/**
+	 * The column index of each non-zero value.
+	 */
+	int[] columns;
+
+	/**
+	 * The start position of each row, with length numRows + 1.
+	 */
+	int[] rowStarts;
+
+	/**
+	 **********************
+	 * The first constructor.
+	 *
+	 * @param paraNumRows
+	 *            The number of rows.
+	 * @param paraNumColumns
+	 *            The number of columns.
+	 * @param paraValues
+	 *            The non-zero values. Not copied.
+	 * @param paraColumns
+	 *            The column indices. Not copied.
+	 * @param paraRowStarts
+	 *            The row start positions. Not copied.
+	 **********************
+	 */
+	public SparseMatrix(int paraNumRows, int paraNumColumns, double[] paraValues,
+			int[] paraColumns, int[] paraRowStarts) {
+		numRows = paraNumRows;
+		numColumns = paraNumColumns;
+		values = paraValues;
+		columns = paraColumns;
+		rowStarts = paraRowStarts;
+	}// Of the first constructor
+
+	/**
+	 **********************
+	 * Getter.
+	 **********************
+	 */
+	public int getNumRows() {
+		return numRows;
+	}// Of getNumRows
+
+	/**
+	 **********************
+	 * Getter.
+	 **********************
+	 */
+	public int getNumColumns() {
+		return numColumns;
+	}// Of getNumColumns
+
+	/**
+	 **********************
+	 * Getter. The number of non-zero values.
+	 **********************
+	 */
+	public int getNumNonZeros() {
+		return rowStarts[numRows];
+	}// Of getNumNonZeros
+
+	/**
+	 **********************
+	 * Getter. The array is shared, do not change it.
+	 **********************
+	 */
+	public double[] getValues() {
+		return values;
+	}// Of getValues
+
+	/**
+	 **********************
+	 * Getter. The array is shared, do not change it.
+	 **********************
+	 */
+	public int[] getColumns() {
+		return columns;
+	}// Of getColumns
+
+	/**
+	 **********************
+	 * Getter. The array is shared, do not change it.
+	 **********************
+	 */
+	public int[] getRowStarts() {
+		return rowStarts;
+	}// Of getRowStarts
+
+	/**
+	 **********************
+	 * Get one value. Binary search in the row.
+	 *
+	 * @param paraRow
+	 *            The row index.
+	 * @param paraColumn
+	 *            The column index.
+	 **********************
+	 */
+	public double get(int paraRow, int paraColumn) {
+		int tempPosition = Arrays.binarySearch(columns, rowStarts[paraRow],
+				rowStarts[paraRow + 1], paraColumn);
+		if (tempPosition < 0) {
+			return 0;
+		} // Of if
+		return values[tempPosition];
+	}// Of get
+
+	/**
+	 **********************
+	 * Get one row in the dense form.
+	 *
+	 * @param paraRow
+	 *            The row index.
+	 * @return A new array.
+	 **********************
+	 */
+	public double[] getDenseRow(int paraRow) {
+		double[] resultArray = new double[numColumns];
+		for (int i = rowStarts[paraRow]; i < rowStarts[paraRow + 1]; i++) {
+			resultArray[columns[i]] = values[i];
+		} // Of for i
+		return resultArray;
+	}// Of getDenseRow
+
+	/**
+	 **********************
+	 * Normalize each column through dividing by its max absolute value. Zeros
+	 * stay zeros, so the sparsity is kept. For non-negative columns with at
+	 * least one zero it is the same as the min-max normalization.
+	 **********************
+	 */
+	public void normalize() {
+		double[] tempMaxArray = new double[numColumns];
+		int tempEnd = rowStarts[numRows];
+		for (int i = 0; i < tempEnd; i++) {
+			tempMaxArray[columns[i]] = Math.max(tempMaxArray[columns[i]], Math.abs(values[i]));
+		} // Of for i
+
+		for (int i = 0; i < tempEnd; i++) {
+			if (tempMaxArray[columns[i]] > 0) {
+				values[i] /= tempMaxArray[columns[i]];
+			} // Of if
+		} // Of for i
+	}// Of normalize
+
+	/**
+	 **********************
+	 * The Manhattan distance between two rows. Only non-zeros are visited.
+	 *
+	 * @param paraI
+	 *            The first row.
+	 * @param paraJ
+	 *            The second row.
+	 **********************
+	 */
+	public double manhattan(int paraI, int paraJ) {
+		double resultDistance = 0;
+		int tempFirst = rowStarts[paraI];
+		int tempFirstEnd = rowStarts[paraI + 1];
+		int tempSecond = rowStarts[paraJ];
+		int tempSecondEnd = rowStarts[paraJ + 1];
+		while (tempFirst < tempFirstEnd && tempSecond < tempSecondEnd) {
+			if (columns[tempFirst] == columns[tempSecond]) {
+				resultDistance += Math.abs(values[tempFirst] - values[tempSecond]);
+				tempFirst++;
+				tempSecond++;
+			} else if (columns[tempFirst] < columns[tempSecond]) {
+				resultDistance += Math.abs(values[tempFirst]);
+				tempFirst++;
+			} else {
+				resultDistance += Math.abs(values[tempSecond]);
+				tempSecond++;
+			} // Of if
+		} // Of while
+
+		for (; tempFirst < tempFirstEnd; tempFirst++) {
+			resultDistance += Math.abs(values[tempFirst]);
+		} // Of for tempFirst
+		for (; tempSecond < tempSecondEnd; tempSecond++) {
+			resultDistance += Math.abs(values[tempSecond]);
+		} // Of for tempSecond
+
+		return resultDistance;
+	}// Of manhattan
+
+	/**
+	 **********************
+	 * The squared Euclidean distance between two rows. Only non-zeros are
+	 * visited.
+	 *
+	 * @param paraI
+	 *            The first row.
+	 * @param paraJ
+	 *            The second row.
+	 **********************
+	 */
+	public double squaredEuclidean(int paraI, int paraJ) {
+		double resultDistance = 0;
+		double tempDifference;
+		int tempFirst = rowStarts[paraI];
+		int tempFirstEnd = rowStarts[paraI + 1];
+		int tempSecond = rowStarts[paraJ];
+		int tempSecondEnd = rowStarts[paraJ + 1];
+		while (tempFirst < tempFirstEnd && tempSecond < tempSecondEnd) {
+			if (columns[tempFirst] == columns[tempSecond]) {
+				tempDifference = values[tempFirst] - values[tempSecond];
+				tempFirst++;
+				tempSecond++;
+			} else if (columns[tempFirst] < columns[tempSecond]) {
+				tempDifference = values[tempFirst];
+				tempFirst++;
+			} else {
+				tempDifference = values[tempSecond];
+				tempSecond++;
+			} // Of if
+			resultDistance += tempDifference * tempDifference;
+		} // Of while
+
+		for (; tempFirst < tempFirstEnd; tempFirst++) {
+			resultDistance += values[tempFirst] * values[tempFirst];
+		} // Of for tempFirst
+		for (; tempSecond < tempSecondEnd; tempSecond++) {
+			resultDistance += values[tempSecond] * values[tempSecond];
+		} // Of for tempSecond
+
+		return resultDistance;
+	}// Of squaredEuclidean
+
+	/**
+	 **********************
+	 * Show me.
+	 **********************
+	 */
+	public String toString() {
+		String resultString = "";
+		for (int i = 0; i < numRows; i++) {
+			resultString += "{";
+			for (int j = rowStarts[i]; j < rowStarts[i + 1]; j++) {
+				if (j > rowStarts[i]) {
+					resultString += ", ";
+				} // Of if
+				resultString += columns[j] + " " + values[j];
+			} // Of for j
+			resultString += "}\r\n";
+		} // Of for i
+		return resultString;
+	}// Of toString
+}// Of class SparseMatrix
@@ -0,0 +1,652 @@
+package util;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Sort or select indices of a double array without boxing. The order is the
+ * one of SimpleTools.mergeSortToIndices: descending values, and equal values
+ * in ascending index order. Since ties are broken by the index, the order is
+ * total, and top-k / bottom-k are well defined: top-k is the first k of the
+ * order, and bottom-k is the last k in reverse, i.e., ascending values with
+ * equal values in descending index order. NaN is not supported.
+ * <p>
+ * The buffers are kept between calls, hence an object should not be shared
+ * among threads.
+ *
+ * @author Fan Min. minfanphd@163.com, minfan@swpu.edu.cn.
+ */
+public class IndexSorter {
+	/**
+	 * Ranges up to this length are sorted by insertion.
+	 */
+	static final int INSERTION_LENGTH = 16;
+
+	/**
+	 * Shorter arrays are not sorted in parallel.
+	 */
+	public static final int PARALLEL_THRESHOLD = 1 << 15;
+
+	/**
+	 * The working indices for selection.
+	 */
+	int[] workArray;
+
+	/**
+	 * The scratch of indices for merging.
+	 */
+	int[] scratchArray;
+
+	/**
+	 * The keys for merging, i.e., the values in the order of the indices.
+	 */
+	double[] keyArray;
+
+	/**
+	 * The scratch of keys for merging.
+	 */
+	double[] keyScratchArray;
+
+	/**
+	 **********************
+	 * Sort in descending order to obtain an index array. The result is the same
+	 * as SimpleTools.mergeSortToIndices.
+	 *
+	 * @param paraArray
+	 *            The original array. It is unchanged.
+	 * @return The sorted indices.
+	 **********************
+	 */
+	public int[] sortDescending(double[] paraArray) {
+		return sortDescending(paraArray, new int[paraArray.length]);
+	}// Of sortDescending
+
+	/**
+	 **********************
+	 * Sort in descending order to obtain an index array.
+	 *
+	 * @param paraArray
+	 *            The original array. It is unchanged.
+	 * @param paraResultArray
+	 *            The result, at least as long as the array. Only the first
+	 *            paraArray.length elements are written.
+	 * @return paraResultArray.
+	 **********************
+	 */
+	public int[] sortDescending(double[] paraArray, int[] paraResultArray) {
+		int tempLength = paraArray.length;
+		ensureCapacity(tempLength);
+		for (int i = 0; i < tempLength; i++) {
+			paraResultArray[i] = i;
+		} // Of for i
+		System.arraycopy(paraArray, 0, keyArray, 0, tempLength);
+		mergeSort(keyArray, paraResultArray, keyScratchArray, scratchArray, 0, tempLength);
+		return paraResultArray;
+	}// Of sortDescending
+
+	/**
+	 **********************
+	 * The indices of the k largest values.
+	 *
+	 * @param paraArray
+	 *            The original array. It is unchanged.
+	 * @param paraK
+	 *            The number of indices.
+	 * @return The first k indices of the descending order.
+	 **********************
+	 */
+	public int[] topK(double[] paraArray, int paraK) {
+		return select(paraArray, paraK, true, new int[paraK]);
+	}// Of topK
+
+	/**
+	 **********************
+	 * The indices of the k largest values.
+	 *
+	 * @param paraArray
+	 *            The original array. It is unchanged.
+	 * @param paraK
+	 *            The number of indices.
+	 * @param paraResultArray
+	 *            The result, at least k long.
+	 * @return paraResultArray with the first k indices of the descending order.
+	 **********************
+	 */
+	public int[] topK(double[] paraArray, int paraK, int[] paraResultArray) {
+		return select(paraArray, paraK, true, paraResultArray);
+	}// Of topK
+
+	/**
+	 **********************
+	 * The indices of the k smallest values.
+	 *
+	 * @param paraArray
+	 *            The original array. It is unchanged.
+	 * @param paraK
+	 *            The number of indices.
+	 * @return The last k indices of the descending order, the last one first.
+	 **********************
+	 */
+	public int[] bottomK(double[] paraArray, int paraK) {
+		return select(paraArray, paraK, false, new int[paraK]);
+	}// Of bottomK
+
+	/**
+	 **********************
+	 * The indices of the k smallest values.
+	 *
+	 * @param paraArray
+	 *            The original array. It is unchanged.
+	 * @param paraK
+	 *            The number of indices.
+	 * @param paraResultArray
+	 *            The result, at least k long.
+	 * @return paraResultArray with the last k indices of the descending order,
+	 *         the last one first.
+	 **********************
+	 */
+	public int[] bottomK(double[] paraArray, int paraK, int[] paraResultArray) {
+		return select(paraArray, paraK, false, paraResultArray);
+	}// Of bottomK
+
+	/**
+	 **********************
+	 * Select the first k indices of the given order by introselect, i.e.,
+	 * quickselect with median-of-three pivots which falls back to merge sort
+	 * when the partitions are unbalanced for too long. Then sort them.
+	 *
+	 * @param paraArray
+	 *            The original array.
+	 * @param paraK
+	 *            The number of indices.
+	 * @param paraDescending
+	 *            Descending order (top-k) or ascending (bottom-k).
+	 * @param paraResultArray
+	 *            The result.
+	 * @return paraResultArray.
+	 **********************
+	 */
+	int[] select(double[] paraArray, int paraK, boolean paraDescending, int[] paraResultArray) {
+		int tempLength = paraArray.length;
+		if (paraK < 0 || paraK > tempLength) {
+			throw new IllegalArgumentException(
+					"Cannot select " + paraK + " of " + tempLength + " values.");
+		} // Of if
+		if (paraK == 0) {
+			return paraResultArray;
+		} // Of if
+
+		ensureCapacity(tempLength);
+		int[] tempWork = workArray;
+		for (int i = 0; i < tempLength; i++) {
+			tempWork[i] = i;
+		} // Of for i
+
+		// Step 1. Move the first k to the front.
+		int tempLow = 0;
+		int tempHigh = tempLength;
+		int tempDepth = 2 * (31 - Integer.numberOfLeadingZeros(tempLength));
+		while (tempHigh - tempLow > INSERTION_LENGTH) {
+			if (tempDepth == 0) {
+				sortIndices(paraArray, tempWork, tempLow, tempHigh, paraDescending);
+				break;
+			} // Of if
+			tempDepth--;
+
+			int tempPosition = partition(paraArray, tempWork, tempLow, tempHigh, paraDescending);
+			if (tempPosition == paraK || tempPosition == paraK - 1) {
+				break;
+			} else if (tempPosition < paraK) {
+				tempLow = tempPosition + 1;
+			} else {
+				tempHigh = tempPosition;
+			} // Of if
+		} // Of while
+		if (tempHigh - tempLow <= INSERTION_LENGTH) {
+			insertionSortByOrder(paraArray, tempWork, tempLow, tempHigh, paraDescending);
+		} // Of if
+
+		// Step 2. Sort the first k.
+		sortIndices(paraArray, tempWork, 0, paraK, paraDescending);
+		System.arraycopy(tempWork, 0, paraResultArray, 0, paraK);
+		return paraResultArray;
+	}// Of select
+
+	/**
+	 **********************
+	 * Partition a range around the median of its first, middle and last
+	 * elements.
+	 *
+	 * @return The final position of the pivot.
+	 **********************
+	 */
+	static int partition(double[] paraArray, int[] paraIndices, int paraLow, int paraHigh,
+			boolean paraDescending) {
+		int tempLast = paraHigh - 1;
+		int tempMiddle = (paraLow + tempLast) >>> 1;
+
+		// Step 1. Median of three, then move it to the end.
+		if (precedes(paraArray, paraIndices[tempMiddle], paraIndices[paraLow], paraDescending)) {
+			swap(paraIndices, tempMiddle, paraLow);
+		} // Of if
+		if (precedes(paraArray, paraIndices[tempLast], paraIndices[paraLow], paraDescending)) {
+			swap(paraIndices, tempLast, paraLow);
+		} // Of if
+		if (precedes(paraArray, paraIndices[tempMiddle], paraIndices[tempLast], paraDescending)) {
+			swap(paraIndices, tempMiddle, tempLast);
+		} // Of if
+		int tempPivot = paraIndices[tempLast];
+
+		// Step 2. Those preceding the pivot go to the front.
+		int tempStore = paraLow;
+		for (int i = paraLow; i < tempLast; i++) {
+			if (precedes(paraArray, paraIndices[i], tempPivot, paraDescending)) {
+				swap(paraIndices, i, tempStore);
+				tempStore++;
+			} // Of if
+		} // Of for i
+		swap(paraIndices, tempStore, tempLast);
+		return tempStore;
+	}// Of partition
+
+	/**
+	 **********************
+	 * Does the first index precede the second one in the order?
+	 **********************
+	 */
+	static boolean precedes(double[] paraArray, int paraFirst, int paraSecond,
+			boolean paraDescending) {
+		double tempFirst = paraArray[paraFirst];
+		double tempSecond = paraArray[paraSecond];
+		if (tempFirst == tempSecond) {
+			return paraDescending == (paraFirst < paraSecond);
+		} // Of if
+		return paraDescending == (tempFirst > tempSecond);
+	}// Of precedes
+
+	/**
+	 **********************
+	 * Swap two elements.
+	 **********************
+	 */
+	static void swap(int[] paraIndices, int paraFirst, int paraSecond) {
+		int tempValue = paraIndices[paraFirst];
+		paraIndices[paraFirst] = paraIndices[paraSecond];
+		paraIndices[paraSecond] = tempValue;
+	}// Of swap
+
+	/**
+	 **********************
+	 * Sort a short range of indices in the given order by insertion.
+	 **********************
+	 */
+	static void insertionSortByOrder(double[] paraArray, int[] paraIndices, int paraStart,
+			int paraEnd, boolean paraDescending) {
+		for (int i = paraStart + 1; i < paraEnd; i++) {
+			int tempIndex = paraIndices[i];
+			int j = i - 1;
+			while (j >= paraStart
+					&& precedes(paraArray, tempIndex, paraIndices[j], paraDescending)) {
+				paraIndices[j + 1] = paraIndices[j];
+				j--;
+			} // Of while
+			paraIndices[j + 1] = tempIndex;
+		} // Of for i
+	}// Of insertionSort
+
+	/**
+	 **********************
+	 * Sort a range in descending order by insertion for short runs and
+	 * bottom-up merging. Keys move together with their indices, so that merging
+	 * reads them sequentially instead of through the indices. It is stable.
+	 *
+	 * @param paraKeys
+	 *            The keys, i.e., the values of the indices.
+	 * @param paraIndices
+	 *            The indices to sort. The range is sorted in place.
+	 * @param paraKeyScratch
+	 *            The scratch of keys, the same range is used.
+	 * @param paraIndexScratch
+	 *            The scratch of indices, the same range is used.
+	 * @param paraStart
+	 *            The first position.
+	 * @param paraEnd
+	 *            The last position, exclusive.
+	 **********************
+	 */
+	static void mergeSort(double[] paraKeys, int[] paraIndices, double[] paraKeyScratch,
+			int[] paraIndexScratch, int paraStart, int paraEnd) {
+		for (int tempRunStart = paraStart; tempRunStart < paraEnd;
+				tempRunStart += INSERTION_LENGTH) {
+			insertionSort(paraKeys, paraIndices, tempRunStart,
+					Math.min(tempRunStart + INSERTION_LENGTH, paraEnd));
+		} // Of for tempRunStart
+
+		double[] tempKeySource = paraKeys;
+		double[] tempKeyDestination = paraKeyScratch;
+		int[] tempSource = paraIndices;
+		int[] tempDestination = paraIndexScratch;
+		double[] tempKeySwap;
+		int[] tempSwap;
+		for (int tempWidth = INSERTION_LENGTH; tempWidth < paraEnd - paraStart; tempWidth *= 2) {
+			for (int tempGroupStart = paraStart; tempGroupStart < paraEnd;
+					tempGroupStart += 2 * tempWidth) {
+				merge(tempKeySource, tempSource, tempKeyDestination, tempDestination,
+						tempGroupStart, Math.min(tempGroupStart + tempWidth, paraEnd),
+						Math.min(tempGroupStart + 2 * tempWidth, paraEnd));
+			} // Of for tempGroupStart
+			tempKeySwap = tempKeySource;
+			tempKeySource = tempKeyDestination;
+			tempKeyDestination = tempKeySwap;
+			tempSwap = tempSource;
+			tempSource = tempDestination;
+			tempDestination = tempSwap;
+		} // Of for tempWidth
+
+		if (tempSource != paraIndices) {
+			System.arraycopy(tempKeySource, paraStart, paraKeys, paraStart, paraEnd - paraStart);
+			System.arraycopy(tempSource, paraStart, paraIndices, paraStart, paraEnd - paraStart);
+		} // Of if
+	}// Of mergeSort
+
+	/**
+	 **********************
+	 * Sort a short range in descending order of keys by insertion. It is
+	 * stable.
+	 **********************
+	 */
+	static void insertionSort(double[] paraKeys, int[] paraIndices, int paraStart,
+			int paraEnd) {
+		for (int i = paraStart + 1; i < paraEnd; i++) {
+			double tempKey = paraKeys[i];
+			int tempIndex = paraIndices[i];
+			int j = i - 1;
+			while (j >= paraStart && paraKeys[j] < tempKey) {
+				paraKeys[j + 1] = paraKeys[j];
+				paraIndices[j + 1] = paraIndices[j];
+				j--;
+			} // Of while
+			paraKeys[j + 1] = tempKey;
+			paraIndices[j + 1] = tempIndex;
+		} // Of for i
+	}// Of insertionSort
+
+	/**
+	 **********************
+	 * Merge two sorted neighboring ranges to the same positions of other
+	 * arrays. The first range wins ties.
+	 **********************
+	 */
+	static void merge(double[] paraKeySource, int[] paraSource, double[] paraKeyDestination,
+			int[] paraDestination, int paraStart, int paraMiddle, int paraEnd) {
+		// Already in order, e.g., the last lonely range.
+		if (paraMiddle >= paraEnd || paraKeySource[paraMiddle - 1] >= paraKeySource[paraMiddle]) {
+			System.arraycopy(paraKeySource, paraStart, paraKeyDestination, paraStart,
+					paraEnd - paraStart);
+			System.arraycopy(paraSource, paraStart, paraDestination, paraStart,
+					paraEnd - paraStart);
+			return;
+		} // Of if
+
+		int tempFirst = paraStart;
+		int tempSecond = paraMiddle;
+		int tempCurrent = paraStart;
+		double tempFirstKey = paraKeySource[tempFirst];
+		double tempSecondKey = paraKeySource[tempSecond];
+		while (true) {
+			if (tempFirstKey >= tempSecondKey) {
+				paraKeyDestination[tempCurrent] = tempFirstKey;
+				paraDestination[tempCurrent] = paraSource[tempFirst];
+				tempCurrent++;
+				tempFirst++;
+				if (tempFirst == paraMiddle) {
+					break;
+				} // Of if
+				tempFirstKey = paraKeySource[tempFirst];
+			} else {
+				paraKeyDestination[tempCurrent] = tempSecondKey;
+				paraDestination[tempCurrent] = paraSource[tempSecond];
+				tempCurrent++;
+				tempSecond++;
+				if (tempSecond == paraEnd) {
+					break;
+				} // Of if
+				tempSecondKey = paraKeySource[tempSecond];
+			} // Of if
+		} // Of while
+
+		// Remaining part, at most one of them is not empty.
+		System.arraycopy(paraKeySource, tempFirst, paraKeyDestination, tempCurrent,
+				paraMiddle - tempFirst);
+		System.arraycopy(paraSource, tempFirst, paraDestination, tempCurrent,
+				paraMiddle - tempFirst);
+		tempCurrent += paraMiddle - tempFirst;
+		System.arraycopy(paraKeySource, tempSecond, paraKeyDestination, tempCurrent,
+				paraEnd - tempSecond);
+		System.arraycopy(paraSource, tempSecond, paraDestination, tempCurrent,
+				paraEnd - tempSecond);
+	}// Of merge
+
+	/**
+	 **********************
+	 * Sort a range of indices in the given order. The indices are first put in
+	 * ascending order, so that the stable sort breaks ties by index.
+	 *
+	 * @param paraArray
+	 *            The values.
+	 * @param paraIndices
+	 *            The indices to sort.
+	 * @param paraStart
+	 *            The first position.
+	 * @param paraEnd
+	 *            The last position, exclusive.
+	 * @param paraDescending
+	 *            Descending or ascending.
+	 **********************
+	 */
+	void sortIndices(double[] paraArray, int[] paraIndices, int paraStart, int paraEnd,
+			boolean paraDescending) {
+		Arrays.sort(paraIndices, paraStart, paraEnd);
+		for (int i = paraStart; i < paraEnd; i++) {
+			keyArray[i] = paraArray[paraIndices[i]];
+		} // Of for i
+		mergeSort(keyArray, paraIndices, keyScratchArray, scratchArray, paraStart, paraEnd);
+
+		// The ascending order is the reverse of the descending one.
+		if (!paraDescending) {
+			for (int i = paraStart, j = paraEnd - 1; i < j; i++, j--) {
+				swap(paraIndices, i, j);
+			} // Of for i
+		} // Of if
+	}// Of sortIndices
+
+	/**
+	 **********************
+	 * Make the buffers long enough.
+	 **********************
+	 */
+	void ensureCapacity(int paraLength) {
+		if (workArray == null || workArray.length < paraLength) {
+			workArray = new int[paraLength];
+			scratchArray = new int[paraLength];
+			keyArray = new double[paraLength];
+			keyScratchArray = new double[paraLength];
+		} // Of if
+	}// Of ensureCapacity
+
+	/**
+	 **********************
+	 * Sort in descending order in parallel. Blocks are sorted independently, and
+	 * then merged pairwise level by level. The result is the same as the
+	 * sequential one.
+	 *
+	 * @param paraArray
+	 *            The original array. It is unchanged.
+	 * @param paraNumThreads
+	 *            The number of threads. Non-positive for all processors.
+	 * @return The sorted indices.
+	 **********************
+	 */
+	public static int[] parallelSortDescending(double[] paraArray, int paraNumThreads) {
+		if (paraArray.length < PARALLEL_THRESHOLD) {
+			return new IndexSorter().sortDescending(paraArray);
+		} // Of if
+
+		ForkJoinPool tempPool = ParallelTools.createPool(paraNumThreads);
+		try {
+			return parallelSortDescending(paraArray, tempPool);
+		} finally {
+			ParallelTools.shutdown(tempPool);
+		} // Of try
+	}// Of parallelSortDescending
+
+	/**
+	 **********************
+	 * Sort in descending order in parallel.
+	 *
+	 * @param paraArray
+	 *            The original array. It is unchanged.
+	 * @param paraPool
+	 *            The pool. If it is null, sort in the current thread.
+	 * @return The sorted indices.
+	 **********************
+	 */
+	public static int[] parallelSortDescending(double[] paraArray, ForkJoinPool paraPool) {
+		int tempLength = paraArray.length;
+		if (paraPool == null || tempLength < PARALLEL_THRESHOLD) {
+			return new IndexSorter().sortDescending(paraArray);
+		} // Of if
+
+		int[] resultArray = new int[tempLength];
+		for (int i = 0; i < tempLength; i++) {
+			resultArray[i] = i;
+		} // Of for i
+		int[] tempScratch = new int[tempLength];
+		double[] tempKeys = paraArray.clone();
+		double[] tempKeyScratch = new double[tempLength];
+
+		// Step 1. Sort blocks.
+		int tempParallelism = paraPool.getParallelism();
+		int tempBlockLength = Math.max(PARALLEL_THRESHOLD / 4,
+				(tempLength + tempParallelism - 1) / tempParallelism);
+		int tempNumBlocks = (tempLength + tempBlockLength - 1) / tempBlockLength;
+		ParallelTools.forEachBlock(paraPool, tempNumBlocks,
+				paraBlock -> mergeSort(tempKeys, resultArray, tempKeyScratch, tempScratch,
+						paraBlock * tempBlockLength,
+						Math.min(paraBlock * tempBlockLength + tempBlockLength, tempLength)));
+
+		// Step 2. Merge pairs of sorted ranges.
+		double[] tempKeySource = tempKeys;
+		double[] tempKeyDestination = tempKeyScratch;
+		int[] tempSource = resultArray;
+		int[] tempDestination = tempScratch;
+		for (int tempWidth = tempBlockLength; tempWidth < tempLength; tempWidth *= 2) {
+			int tempFinalWidth = tempWidth;
+			double[] tempFinalKeySource = tempKeySource;
+			double[] tempFinalKeyDestination = tempKeyDestination;
+			int[] tempFinalSource = tempSource;
+			int[] tempFinalDestination = tempDestination;
+			int tempNumGroups = (tempLength + 2 * tempWidth - 1) / (2 * tempWidth);
+			ParallelTools.forEachBlock(paraPool, tempNumGroups, paraGroup -> {
+				int tempStart = paraGroup * 2 * tempFinalWidth;
+				merge(tempFinalKeySource, tempFinalSource, tempFinalKeyDestination,
+						tempFinalDestination, tempStart,
+						Math.min(tempStart + tempFinalWidth, tempLength),
+						Math.min(tempStart + 2 * tempFinalWidth, tempLength));
+			});
+			tempKeySource = tempFinalKeyDestination;
+			tempKeyDestination = tempFinalKeySource;
+			tempSource = tempFinalDestination;
+			tempDestination = tempFinalSource;
+		} // Of for tempWidth
+
+		if (tempSource != resultArray) {
+			System.arraycopy(tempSource, 0, resultArray, 0, tempLength);
+		} // Of if
+		return resultArray;
+	}// Of parallelSortDescending
+
+	/**
+	 **********************
+	 * Compare with SimpleTools.mergeSortToIndices on random values with many
+	 * ties. The best time of a number of rounds is reported.
+	 *
+	 * @param paraLength
+	 *            The length of the array.
+	 * @param paraK
+	 *            The k for top-k and bottom-k.
+	 * @param paraNumThreads
+	 *            The number of threads for the parallel sort.
+	 * @param paraNumRounds
+	 *            The number of rounds.
+	 **********************
+	 */
+	public static void benchmark(int paraLength, int paraK, int paraNumThreads,
+			int paraNumRounds) {
+		java.util.Random tempRandom = new java.util.Random(paraLength);
+		double[] tempArray = new double[paraLength];
+		for (int i = 0; i < paraLength; i++) {
+			tempArray[i] = tempRandom.nextInt(paraLength / 4 + 1) / 8.0;
+		} // Of for i
+
+		IndexSorter tempSorter = new IndexSorter();
+		int[] tempResultArray = new int[paraLength];
+		int[] tempKArray = new int[paraK];
+		ForkJoinPool tempPool = ParallelTools.createPool(paraNumThreads);
+		long[] tempBestTimes = new long[5];
+		Arrays.fill(tempBestTimes, Long.MAX_VALUE);
+		boolean tempSame = true;
+		try {
+			for (int r = 0; r < paraNumRounds; r++) {
+				long tempStartTime = System.nanoTime();
+				int[] tempExpected = SimpleTools.mergeSortToIndices(tempArray);
+				tempBestTimes[0] = Math.min(tempBestTimes[0], System.nanoTime() - tempStartTime);
+
+				tempStartTime = System.nanoTime();
+				tempSorter.sortDescending(tempArray, tempResultArray);
+				tempBestTimes[1] = Math.min(tempBestTimes[1], System.nanoTime() - tempStartTime);
+				tempSame &= Arrays.equals(tempExpected, tempResultArray);
+
+				tempStartTime = System.nanoTime();
+				int[] tempParallel = parallelSortDescending(tempArray, tempPool);
+				tempBestTimes[2] = Math.min(tempBestTimes[2], System.nanoTime() - tempStartTime);
+				tempSame &= Arrays.equals(tempExpected, tempParallel);
+
+				tempStartTime = System.nanoTime();
+				tempSorter.topK(tempArray, paraK, tempKArray);
+				tempBestTimes[3] = Math.min(tempBestTimes[3], System.nanoTime() - tempStartTime);
+				for (int i = 0; i < paraK; i++) {
+					tempSame &= tempKArray[i] == tempExpected[i];
+				} // Of for i
+
+				tempStartTime = System.nanoTime();
+				tempSorter.bottomK(tempArray, paraK, tempKArray);
+				tempBestTimes[4] = Math.min(tempBestTimes[4], System.nanoTime() - tempStartTime);
+				for (int i = 0; i < paraK; i++) {
+					tempSame &= tempKArray[i] == tempExpected[paraLength - 1 - i];
+				} // Of for i
+			} // Of for r
+		} finally {
+			ParallelTools.shutdown(tempPool);
+		} // Of try
+
+		System.out.println("Length " + paraLength + ", k = " + paraK + ", same results: "
+				+ tempSame);
+		String[] tempNames = { "mergeSortToIndices", "sortDescending", "parallel ("
+				+ paraNumThreads + " threads)", "topK", "bottomK" };
+		for (int i = 0; i < tempNames.length; i++) {
+			System.out.println("  " + tempNames[i] + ": " + tempBestTimes[i] + " ns");
+		} // Of for i
+	}// Of benchmark
+
+	/**
+	 **********************
+	 * The entrance.
+	 **********************
+	 */
+	public static void main(String[] args) {
+		benchmark(12, 3, 0, 20000);
+		benchmark(2417, 20, 0, 2000);
+		benchmark(1 << 20, 100, 0, 10);
+	}// Of main
+}// Of class IndexSorter
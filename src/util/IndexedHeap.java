@@ -0,0 +1,262 @@
+package util;
+
+import java.util.Arrays;
+
+/**
+ * An indexed binary min-heap over the items 0, 1, ..., n - 1 with double
+ * keys. The order is the one of IndexSorter.bottomK: ascending keys, and equal
+ * keys in descending item order. The key of any item can be changed in O(log
+ * n), and the first k items can be read in order in O(k log k) without
+ * changing the heap.
+ *
+ * @author Fan Min. minfanphd@163.com, minfan@swpu.edu.cn.
+ */
+public class IndexedHeap {
+	/**
+	 * The number of items.
+	 */
+	int numItems;
+
+	/**
+	 * The key of each item.
+	 */
+	double[] keyArray;
+
+	/**
+	 * The item at each heap position.
+	 */
+	int[] heapArray;
+
+	/**
+	 * The heap position of each item.
+	 */
+	int[] positionArray;
+
+	/**
+	 * The candidate positions when reading the first k items. It is a heap too.
+	 */
+	int[] candidateArray;
+
+	/**
+	 **********************
+	 * The first constructor. All keys are 0.
+	 *
+	 * @param paraNumItems
+	 *            The number of items.
+	 **********************
+	 */
+	public IndexedHeap(int paraNumItems) {
+		numItems = paraNumItems;
+		keyArray = new double[numItems];
+		heapArray = new int[numItems];
+		positionArray = new int[numItems];
+		candidateArray = new int[numItems + 1];
+		reset();
+	}// Of the first constructor
+
+	/**
+	 **********************
+	 * Set all keys to 0. Items in descending order form a valid heap.
+	 **********************
+	 */
+	public void reset() {
+		Arrays.fill(keyArray, 0);
+		for (int i = 0; i < numItems; i++) {
+			heapArray[i] = numItems - 1 - i;
+			positionArray[numItems - 1 - i] = i;
+		} // Of for i
+	}// Of reset
+
+	/**
+	 **********************
+	 * Getter.
+	 *
+	 * @param paraItem
+	 *            The item.
+	 * @return The key of the item.
+	 **********************
+	 */
+	public double getKey(int paraItem) {
+		return keyArray[paraItem];
+	}// Of getKey
+
+	/**
+	 **********************
+	 * Change the key of an item.
+	 *
+	 * @param paraItem
+	 *            The item.
+	 * @param paraKey
+	 *            The new key.
+	 **********************
+	 */
+	public void setKey(int paraItem, double paraKey) {
+		double tempOldKey = keyArray[paraItem];
+		keyArray[paraItem] = paraKey;
+		if (paraKey < tempOldKey) {
+			siftUp(positionArray[paraItem]);
+		} else if (paraKey > tempOldKey) {
+			siftDown(positionArray[paraItem]);
+		} // Of if
+	}// Of setKey
+
+	/**
+	 **********************
+	 * Get the first k items in order. The children of each taken position
+	 * become candidates, so only O(k) positions are visited.
+	 *
+	 * @param paraK
+	 *            The number of items.
+	 * @return The first k items.
+	 **********************
+	 */
+	public int[] getFirst(int paraK) {
+		if (paraK < 0 || paraK > numItems) {
+			throw new IllegalArgumentException(
+					"Cannot get " + paraK + " of " + numItems + " items.");
+		} // Of if
+
+		int[] resultArray = new int[paraK];
+		if (paraK == 0) {
+			return resultArray;
+		} // Of if
+
+		int tempNumCandidates = 1;
+		candidateArray[0] = 0;
+		for (int i = 0; i < paraK; i++) {
+			// Take the best candidate.
+			int tempPosition = candidateArray[0];
+			resultArray[i] = heapArray[tempPosition];
+			tempNumCandidates--;
+			candidateArray[0] = candidateArray[tempNumCandidates];
+			siftDownCandidate(0, tempNumCandidates);
+
+			// Its children are candidates now.
+			for (int tempChild = 2 * tempPosition + 1; tempChild <= 2 * tempPosition + 2
+					&& tempChild < numItems; tempChild++) {
+				candidateArray[tempNumCandidates] = tempChild;
+				siftUpCandidate(tempNumCandidates);
+				tempNumCandidates++;
+			} // Of for tempChild
+		} // Of for i
+
+		return resultArray;
+	}// Of getFirst
+
+	/**
+	 **********************
+	 * Does the first item precede the second one?
+	 **********************
+	 */
+	boolean precedes(int paraFirst, int paraSecond) {
+		if (keyArray[paraFirst] == keyArray[paraSecond]) {
+			return paraFirst > paraSecond;
+		} // Of if
+		return keyArray[paraFirst] < keyArray[paraSecond];
+	}// Of precedes
+
+	/**
+	 **********************
+	 * Put an item at a position.
+	 **********************
+	 */
+	void place(int paraPosition, int paraItem) {
+		heapArray[paraPosition] = paraItem;
+		positionArray[paraItem] = paraPosition;
+	}// Of place
+
+	/**
+	 **********************
+	 * Move the item at a position up until its parent precedes it.
+	 **********************
+	 */
+	void siftUp(int paraPosition) {
+		int tempItem = heapArray[paraPosition];
+		while (paraPosition > 0) {
+			int tempParent = (paraPosition - 1) >>> 1;
+			if (!precedes(tempItem, heapArray[tempParent])) {
+				break;
+			} // Of if
+			place(paraPosition, heapArray[tempParent]);
+			paraPosition = tempParent;
+		} // Of while
+		place(paraPosition, tempItem);
+	}// Of siftUp
+
+	/**
+	 **********************
+	 * Move the item at a position down until it precedes its children.
+	 **********************
+	 */
+	void siftDown(int paraPosition) {
+		int tempItem = heapArray[paraPosition];
+		while (true) {
+			int tempChild = 2 * paraPosition + 1;
+			if (tempChild >= numItems) {
+				break;
+			} // Of if
+			if (tempChild + 1 < numItems
+					&& precedes(heapArray[tempChild + 1], heapArray[tempChild])) {
+				tempChild++;
+			} // Of if
+			if (!precedes(heapArray[tempChild], tempItem)) {
+				break;
+			} // Of if
+			place(paraPosition, heapArray[tempChild]);
+			paraPosition = tempChild;
+		} // Of while
+		place(paraPosition, tempItem);
+	}// Of siftDown
+
+	/**
+	 **********************
+	 * Sift up in the candidate heap.
+	 **********************
+	 */
+	void siftUpCandidate(int paraIndex) {
+		int tempCandidate = candidateArray[paraIndex];
+		while (paraIndex > 0) {
+			int tempParent = (paraIndex - 1) >>> 1;
+			if (!precedes(heapArray[tempCandidate], heapArray[candidateArray[tempParent]])) {
+				break;
+			} // Of if
+			candidateArray[paraIndex] = candidateArray[tempParent];
+			paraIndex = tempParent;
+		} // Of while
+		candidateArray[paraIndex] = tempCandidate;
+	}// Of siftUpCandidate
+
+	/**
+	 **********************
+	 * Sift down in the candidate heap.
+	 *
+	 * @param paraIndex
+	 *            The index in the candidate heap.
+	 * @param paraNumCandidates
+	 *            The number of candidates.
+	 **********************
+	 */
+	void siftDownCandidate(int paraIndex, int paraNumCandidates) {
+		if (paraIndex >= paraNumCandidates) {
+			return;
+		} // Of if
+
+		int tempCandidate = candidateArray[paraIndex];
+		while (true) {
+			int tempChild = 2 * paraIndex + 1;
+			if (tempChild >= paraNumCandidates) {
+				break;
+			} // Of if
+			if (tempChild + 1 < paraNumCandidates && precedes(
+					heapArray[candidateArray[tempChild + 1]], heapArray[candidateArray[tempChild]])) {
+				tempChild++;
+			} // Of if
+			if (!precedes(heapArray[candidateArray[tempChild]], heapArray[tempCandidate])) {
+				break;
+			} // Of if
+			candidateArray[paraIndex] = candidateArray[tempChild];
+			paraIndex = tempChild;
+		} // Of while
+		candidateArray[paraIndex] = tempCandidate;
+	}// Of siftDownCandidate
+}// Of class IndexedHeap
@@ -0,0 +1,129 @@
+package util;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Parallel tools based on fork-join.
+ *
+ * @author Fan Min. minfanphd@163.com, minfan@swpu.edu.cn.
+ */
+public class ParallelTools {
+	/**
+	 **********************************
+	 * The work of one block.
+	 **********************************
+	 */
+	public interface BlockBody {
+		/**
+		 * Process one block.
+		 *
+		 * @param paraBlock
+		 *            The block index.
+		 */
+		void run(int paraBlock);
+	}// Of interface BlockBody
+
+	/**
+	 **********************************
+	 * Split the block range in halves until one block is left.
+	 **********************************
+	 */
+	static class BlockAction extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * The first block.
+		 */
+		int start;
+
+		/**
+		 * The last block, exclusive.
+		 */
+		int end;
+
+		/**
+		 * The work.
+		 */
+		BlockBody body;
+
+		/**
+		 * The constructor.
+		 */
+		BlockAction(int paraStart, int paraEnd, BlockBody paraBody) {
+			start = paraStart;
+			end = paraEnd;
+			body = paraBody;
+		}// Of the constructor
+
+		/**
+		 * Compute or split.
+		 */
+		protected void compute() {
+			if (end - start == 1) {
+				body.run(start);
+				return;
+			} // Of if
+
+			int tempMiddle = (start + end) >>> 1;
+			invokeAll(new BlockAction(start, tempMiddle, body),
+					new BlockAction(tempMiddle, end, body));
+		}// Of compute
+	}// Of class BlockAction
+
+	/**
+	 **********************************
+	 * Run all blocks. Blocks are independent, and the order is not fixed in the
+	 * parallel mode.
+	 *
+	 * @param paraPool
+	 *            The pool. If it is null, blocks run in the current thread in
+	 *            ascending order.
+	 * @param paraNumBlocks
+	 *            The number of blocks.
+	 * @param paraBody
+	 *            The work of each block.
+	 **********************************
+	 */
+	public static void forEachBlock(ForkJoinPool paraPool, int paraNumBlocks,
+			BlockBody paraBody) {
+		if (paraPool == null || paraNumBlocks <= 1) {
+			for (int i = 0; i < paraNumBlocks; i++) {
+				paraBody.run(i);
+			} // Of for i
+			return;
+		} // Of if
+
+		paraPool.invoke(new BlockAction(0, paraNumBlocks, paraBody));
+	}// Of forEachBlock
+
+	/**
+	 **********************************
+	 * Create a pool.
+	 *
+	 * @param paraNumThreads
+	 *            The number of threads. Non-positive for all processors.
+	 * @return The pool, or null for one thread.
+	 **********************************
+	 */
+	public static ForkJoinPool createPool(int paraNumThreads) {
+		if (paraNumThreads <= 0) {
+			paraNumThreads = Runtime.getRuntime().availableProcessors();
+		} // Of if
+		if (paraNumThreads == 1) {
+			return null;
+		} // Of if
+		return new ForkJoinPool(paraNumThreads);
+	}// Of createPool
+
+	/**
+	 **********************************
+	 * Shut down a pool created by createPool.
+	 **********************************
+	 */
+	public static void shutdown(ForkJoinPool paraPool) {
+		if (paraPool != null) {
+			paraPool.shutdown();
+		} // Of if
+	}// Of shutdown
+}// Of class ParallelTools
@@ -1,5 +1,6 @@
 package util;
 
+import java.util.HashMap;
 import java.util.Random;
 
 /**
@@ -52,7 +53,8 @@ public class SimpleTools {
 	 * Merge sort in descendant order to obtain an index array. The original
 	 * array is unchanged. The method should be tested further. <br>
 	 * Examples: input [1.2, 2.3, 0.4, 0.5], output [1, 0, 3, 2]. <br>
-	 * input [3.1, 5.2, 6.3, 2.1, 4.4], output [2, 1, 4, 0, 3].
+	 * input [3.1, 5.2, 6.3, 2.1, 4.4], output [2, 1, 4, 0, 3]. <br>
+	 * IndexSorter gives the same order with reusable buffers, and also top-k.
 	 * 
 	 * @param paraArray
 	 *            the original array
@@ -169,5 +171,69 @@ public class SimpleTools {
 		} // Of for i
 
 		return resultArray;
-	}// Of getRandomOrder	
+	}// Of getRandomOrder
+
+	/**
+	 ********************************** 
+	 * Sample distinct values from [0, paraRange) in random order. It is a sparse
+	 * Fisher-Yates shuffle: only the swapped positions are stored in a map, so
+	 * time and memory are O(paraNumSamples) however large the range is.
+	 * 
+	 * @param paraRange
+	 *            The number of candidate values.
+	 * @param paraNumSamples
+	 *            The number of samples.
+	 * @param paraRandom
+	 *            The random generator.
+	 * @return The samples.
+	 ********************************** 
+	 */
+	public static long[] sampleDistinct(long paraRange, int paraNumSamples, Random paraRandom) {
+		if (paraNumSamples < 0 || paraNumSamples > paraRange) {
+			throw new IllegalArgumentException(
+					"Cannot sample " + paraNumSamples + " distinct values of " + paraRange + ".");
+		} // Of if
+
+		long[] resultArray = new long[paraNumSamples];
+		// Position -> value, for the swapped positions only.
+		HashMap<Long, Long> tempSwappedMap = new HashMap<Long, Long>(paraNumSamples * 2);
+		for (int i = 0; i < paraNumSamples; i++) {
+			long tempPosition = i + nextLong(paraRandom, paraRange - i);
+			Long tempValue = tempSwappedMap.get(tempPosition);
+			resultArray[i] = (tempValue == null) ? tempPosition : tempValue;
+
+			// The value at i moves to the chosen position.
+			Long tempCurrentValue = tempSwappedMap.remove((long) i);
+			if (tempPosition != i) {
+				tempSwappedMap.put(tempPosition, (tempCurrentValue == null) ? i : tempCurrentValue);
+			} // Of if
+		} // Of for i
+
+		return resultArray;
+	}// Of sampleDistinct
+
+	/**
+	 ********************************** 
+	 * A uniform random long in [0, paraBound).
+	 * 
+	 * @param paraRandom
+	 *            The random generator.
+	 * @param paraBound
+	 *            The bound, positive.
+	 * @return The random value.
+	 ********************************** 
+	 */
+	public static long nextLong(Random paraRandom, long paraBound) {
+		if (paraBound <= Integer.MAX_VALUE) {
+			return paraRandom.nextInt((int) paraBound);
+		} // Of if
+
+		// Reject the incomplete last round to avoid bias.
+		long tempBits, resultValue;
+		do {
+			tempBits = paraRandom.nextLong() >>> 1;
+			resultValue = tempBits % paraBound;
+		} while (tempBits - resultValue + (paraBound - 1) < 0);
+		return resultValue;
+	}// Of nextLong
 }//Of class SimpleTools